@@ -0,0 +1,174 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Array of nodes with an origin, by default 1. Unlike lists, arrays are
+ * mutable and equal only to themselves. The cells of a multi-dimensional
+ * array are stored row by row in one flat array; an item of such an array
+ * is a view of its row, which shares the cells.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public final class Array extends Node {
+
+    private static final List EMPTY = new List();
+
+    private final Node[] cells;
+    private final int offset;
+    private final int[] dimensions;
+    private final int depth;
+    private final int origin;
+
+    public Array(int size, int origin) {
+        this(new int[]{size}, origin);
+    }
+
+    /**
+     * @param dimensions The sizes of the dimensions, none negative and
+     * their product fitting an int
+     * @param origin The index of the first item
+     */
+    public Array(int[] dimensions, int origin) {
+        int cells = 1;
+        for (int dimension : dimensions) {
+            cells *= dimension;
+        }
+        this.cells = new Node[cells];
+        Arrays.fill(this.cells, EMPTY);
+        this.offset = 0;
+        this.dimensions = dimensions.clone();
+        this.depth = 0;
+        this.origin = origin;
+    }
+
+    public Array(java.util.List<Node> nodes, int origin) {
+        this.cells = nodes.toArray(new Node[0]);
+        this.offset = 0;
+        this.dimensions = new int[]{cells.length};
+        this.depth = 0;
+        this.origin = origin;
+    }
+
+    private Array(Array array, int offset) {
+        this.cells = array.cells;
+        this.offset = offset;
+        this.dimensions = array.dimensions;
+        this.depth = array.depth + 1;
+        this.origin = array.origin;
+    }
+
+    public int size() {
+        return dimensions[depth];
+    }
+
+    public int origin() {
+        return origin;
+    }
+
+    /**
+     * @param index An index, counted from the origin
+     * @return The cell, or for a multi-dimensional array a view of the row
+     */
+    public Node item(int index) {
+        int at = offset + position(index) * stride();
+        if (depth == dimensions.length - 1) {
+            return cells[at];
+        }
+        return new Array(this, at);
+    }
+
+    /**
+     * @param index An index, counted from the origin
+     * @param node The new cell
+     * @throws NodeTypeException for a multi-dimensional array, whose rows
+     * are set cell by cell
+     */
+    public void setItem(int index, Node node) {
+        if (depth != dimensions.length - 1) {
+            throw new NodeTypeException(this, NodeType.ARRAY, NodeType.LIST);
+        }
+        cells[offset + position(index)] = node;
+    }
+
+    public Node item(int[] indices) {
+        return cells[cell(indices)];
+    }
+
+    public void setItem(int[] indices, Node node) {
+        cells[cell(indices)] = node;
+    }
+
+    /**
+     * @return The items, rows for a multi-dimensional array
+     */
+    public java.util.List<Node> items() {
+        java.util.List<Node> items = new java.util.ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            items.add(item(origin + i));
+        }
+        return items;
+    }
+
+    private int position(int index) {
+        int position = index - origin;
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Origin: " + origin + ", Size: " + size());
+        }
+        return position;
+    }
+
+    private int stride() {
+        int stride = 1;
+        for (int i = depth + 1; i < dimensions.length; i++) {
+            stride *= dimensions[i];
+        }
+        return stride;
+    }
+
+    private int cell(int[] indices) {
+        if (indices.length != dimensions.length - depth) {
+            throw new IndexOutOfBoundsException(indices.length + " indices for " + (dimensions.length - depth) + " dimensions");
+        }
+        int at = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int dimension = dimensions[depth + i];
+            int position = indices[i] - origin;
+            if (position < 0 || position >= dimension) {
+                throw new IndexOutOfBoundsException("Index: " + indices[i] + ", Origin: " + origin + ", Size: " + dimension);
+            }
+            at = at * dimension + position;
+        }
+        return offset + at;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.ARRAY;
+    }
+
+    @Override
+    public String toString() {
+        String items = items().stream()
+                .map(e -> e.toString())
+                .collect(Collectors.joining(" ", "{", "}"));
+        return origin == 1 || depth > 0 ? items : items + "@" + origin;
+    }
+}
@@ -15,103 +15,83 @@
  */
 package ch.uprisesoft.yali.ast.node;
 
-import ch.uprisesoft.yali.scope.Scope;
-import java.util.ArrayList;
+import ch.uprisesoft.yali.lexer.Symbol;
+import ch.uprisesoft.yali.runtime.interpreter.Code;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
  *
  * @author uprisesoft@gmail.com
  */
-public class Call extends Node implements Iterator {
+public class Call extends Composite implements Iterator {
 
-    private final String name;
-    private final java.util.List<Node> args;
-    private Procedure definition;
-    private Node result;
-    private int callPos = 0;
-    private boolean evaluated = false;
+    private final Symbol name;
 
-    public Call(String name) {
-        super(NodeType.PROCCALL);
-        this.name = name;
-        this.args = new ArrayList<>();
-//        this.result = null;
-    }
+    // Set if the call reads a variable resolved to a slot of its procedure
+    private Procedure owner;
+    private int slot = -1;
 
-    public Procedure definition() {
-        return definition;
-    }
+    // Procedure this call site dispatched to, valid while the definitions
+    // stamp of the environment is unchanged
+    private volatile Dispatch dispatch;
 
-    public void definition(Procedure definition) {
-        this.definition = definition;
-    }
+    // Compiled form of this call when it is scheduled on its own
+    private Code code;
 
-    public void arg(Node arg) {
-        this.args.add(arg);
-    }
-
-    public List<Node> args() {
-        return args;
+    public Call(String name) {
+        this(Symbol.of(name));
     }
 
-    public void args(List<Node> args) {
-        this.args.clear();
-        this.args.addAll(args);
+    public Call(Symbol name) {
+        this.name = name;
     }
 
-    public Node nextParameter() {
-        return children.get(args.size());
+    public String getName() {
+        return name.name();
     }
 
-    public boolean hasMoreCalls() {
-        return callPos <= definition.getChildren().size() - 1;
+    public Symbol symbol() {
+        return name;
     }
 
-    public Call nextCall() {
-        Call next = definition.getChildren().get(callPos++).toProcedureCall();
-        return next;
+    public void slot(Procedure owner, int slot) {
+        this.owner = owner;
+        this.slot = slot;
     }
 
-    public void reset() {
-        callPos = 0;
-        args.clear();
-        evaluated = false;
-//        result = null;
+    public Procedure owner() {
+        return owner;
     }
 
-    /**
-     * Checks if all arguments are evaluated
-     *
-     * @return true if all arguments are evaluated, false otherwise
-     */
-    public boolean hasMoreParameters() {
-        return args.size() < children.size();
+    public int slot() {
+        return slot;
     }
 
-    public void evaluated(boolean e) {
-        this.evaluated = e;
+    public Code code() {
+        return code;
     }
 
-    public boolean evaluated() {
-        return evaluated;
+    public void code(Code code) {
+        this.code = code;
     }
 
-    public Node result() {
-        return result;
+    public Procedure dispatch(long stamp) {
+        Dispatch cached = dispatch;
+        if (cached != null && cached.stamp == stamp) {
+            return cached.procedure;
+        }
+        return null;
     }
 
-    public void result(Node result, Scope scope) {
-//        if(definition.isNative()) {
-//            result = definition.getResultCallback().apply(scope, result);
-//        }
-        this.result = result;
+    public void dispatch(long stamp, Procedure procedure) {
+        dispatch = new Dispatch(stamp, procedure);
     }
 
-    public String getName() {
-        return name;
+    @Override
+    public NodeType type() {
+        return NodeType.PROCCALL;
     }
 
     @Override
@@ -136,7 +116,7 @@ public class Call extends Node implements Iterator {
     public int hashCode() {
         int hash = 7;
 
-        hash = 31 * hash + (name == null ? 0 : name.hashCode());
+        hash = 31 * hash + (name == null ? 0 : name.name().hashCode());
         for (Node n : children) {
             hash = 31 * hash + (n == null ? 0 : n.hashCode());
         }
@@ -154,11 +134,19 @@ public class Call extends Node implements Iterator {
 
         final Call other = (Call) obj;
 
-        if (this.hashCode() == other.hashCode()) {
-            return true;
-        }
+        return Objects.equals(this.name, other.name)
+                && this.children.equals(other.children);
+    }
+
+    private static final class Dispatch {
 
-        return true;
+        private final long stamp;
+        private final Procedure procedure;
+
+        private Dispatch(long stamp, Procedure procedure) {
+            this.stamp = stamp;
+            this.procedure = procedure;
+        }
     }
 
     @Override
@@ -0,0 +1,105 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.lexer.Tokens;
+import java.util.ArrayList;
+
+/**
+ * Node with children. Composite nodes keep their position and the range of
+ * tokens they were parsed from. They also keep the source map of their
+ * parse alive, through which their leaf nodes are located.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public abstract class Composite extends Node {
+
+    protected java.util.List<Node> children;
+
+    protected int line = 0;
+    protected int col = 0;
+    protected SourceMap map;
+    protected int firstToken = -1;
+    protected int lastToken = -1;
+
+    protected Composite() {
+        this(new ArrayList<>());
+    }
+
+    protected Composite(java.util.List<Node> children) {
+        this.children = children;
+    }
+
+    @Override
+    public void setPosInSource(int line, int col) {
+        this.line = line;
+        this.col = col;
+    }
+
+    /**
+     * Sets the tokens this node was parsed from.
+     *
+     * @param map Source map of the parse
+     * @param first Index of the first token, or -1 if the node has no range
+     * of its own
+     * @param last Index of the last token
+     */
+    public void token(SourceMap map, int first, int last) {
+        this.map = map;
+        this.firstToken = first;
+        this.lastToken = last;
+    }
+
+    @Override
+    public Tokens tokens() {
+        return map == null ? null : map.tokens();
+    }
+
+    @Override
+    public int firstToken() {
+        return firstToken;
+    }
+
+    @Override
+    public int lastToken() {
+        return lastToken;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCol() {
+        return col;
+    }
+
+    @Override
+    public void addChild(Node node) {
+        children.add(node);
+    }
+
+    @Override
+    public void addChildren(java.util.List<Node> nodes) {
+        children.addAll(nodes);
+    }
+
+    @Override
+    public java.util.List<Node> getChildren() {
+        return children;
+    }
+}
@@ -0,0 +1,95 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Dictionary from nodes to nodes, hashed. Keys are equal if equal? says
+ * so, a word spelling a number finds the entry of the number. Like arrays,
+ * dictionaries are mutable and equal only to themselves. Entries keep the
+ * order in which their keys were added.
+ *
+ * A list can be changed by setitem after it became a key, which would leave
+ * its entry under the old hash. Entries keep a copy of list keys instead,
+ * and keys hands out copies, so keys never change.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public final class Dictionary extends Node {
+
+    private final Map<Node, Node> entries = new LinkedHashMap<>();
+
+    /**
+     * @param key A key
+     * @return The value of the key, null if there is none
+     */
+    public Node get(Node key) {
+        return entries.get(key);
+    }
+
+    public void put(Node key, Node value) {
+        // An entry already there keeps its key
+        entries.put(entries.containsKey(key) ? key : frozen(key), value);
+    }
+
+    public Node remove(Node key) {
+        return entries.remove(key);
+    }
+
+    public boolean contains(Node key) {
+        return entries.containsKey(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public java.util.List<Node> keys() {
+        java.util.List<Node> keys = new ArrayList<>(entries.size());
+        for (Node key : entries.keySet()) {
+            keys.add(frozen(key));
+        }
+        return keys;
+    }
+
+    // A copy of a list, and of the lists in it, nobody else refers to
+    private static Node frozen(Node key) {
+        if (key.type() != NodeType.LIST) {
+            return key;
+        }
+        java.util.List<Node> children = new ArrayList<>(key.getChildren().size());
+        for (Node child : key.getChildren()) {
+            children.add(frozen(child));
+        }
+        return new List(children);
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.DICTIONARY;
+    }
+
+    @Override
+    public String toString() {
+        return entries.entrySet().stream()
+                .map(e -> e.getKey() + ": " + e.getValue())
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+}
@@ -15,36 +15,88 @@
  */
 package ch.uprisesoft.yali.ast.node;
 
-import java.util.Collections;
+import ch.uprisesoft.yali.runtime.interpreter.Code;
 import java.util.stream.Collectors;
 
 /**
  *
  * @author uprisesoft@gmail.com
  */
-public class List extends Node {
+public class List extends Composite {
     
-    private String source = "";
+    private CharSequence source = "";
+
+    // Compiled form of this list when it is run as code, see
+    // Interpreter.readBlock. Kept with its version in one object, as
+    // interpreters on other threads may run the same list.
+    private volatile Block block;
+    // Procedure whose body contains this list, if any
+    private Procedure owner;
 
     public List() {
-        super(NodeType.LIST);
+        super(new Nodes());
     }
     
     public List(java.util.List<Node> nodes) {
-        super(NodeType.LIST);
-        super.addChildren(nodes);
+        super(nodes instanceof Nodes ? ((Nodes) nodes).share() : new Nodes(nodes));
+    }
+
+    // Takes over a sequence no other list has
+    private List(Nodes nodes) {
+        super(nodes);
+    }
+
+    public List fput(Node node) {
+        return new List(nodes().fput(node));
+    }
+
+    public List lput(Node node) {
+        return new List(nodes().lput(node));
+    }
+
+    public List butfirst() {
+        return new List(nodes().butfirst());
     }
 
-    public String source() {
+    public List butlast() {
+        return new List(nodes().butlast());
+    }
+
+    private Nodes nodes() {
+        return (Nodes) children;
+    }
+
+    public CharSequence source() {
         return source;
     }
 
-    public void source(String source) {
+    public void source(CharSequence source) {
         this.source = source;
     }
 
-    public void reverse() {
-        Collections.reverse(children);
+    public Code block(int version) {
+        Block cached = block;
+        if (cached == null || cached.version != version) {
+            return null;
+        }
+        return cached.code;
+    }
+
+    public void block(Code block, int version) {
+        this.block = new Block(block, version);
+    }
+
+    public Procedure owner() {
+        return owner;
+    }
+
+    public void owner(Procedure owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.LIST;
     }
 
     @Override
@@ -61,13 +113,12 @@ public class List extends Node {
         return sb.toString();
     }
 
+    /**
+     * Cached by the children, see {@link Nodes}.
+     */
     @Override
     public int hashCode() {
-        int hash = 7;
-        for (Node n : children) {
-            hash = 31 * hash + (n == null ? 0 : n.hashCode());
-        }
-        return hash;
+        return children.hashCode();
     }
 
     @Override
@@ -81,15 +132,18 @@ public class List extends Node {
         }
         
         final List other = (List) obj;
-        
-        if(this.children.size() != other.children.size()) {
-            return false;
-        }
 
-        if (this.hashCode() == other.hashCode()) {
-            return true;
-        }
+        return this.children.equals(other.children);
+    }
+
+    private static final class Block {
 
-        return false;
+        private final Code code;
+        private final int version;
+
+        private Block(Code code, int version) {
+            this.code = code;
+            this.version = version;
+        }
     }
 }
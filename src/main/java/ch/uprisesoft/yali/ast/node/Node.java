@@ -16,6 +16,7 @@
 package ch.uprisesoft.yali.ast.node;
 
 import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.ast.node.word.BigIntegerWord;
 import ch.uprisesoft.yali.ast.node.word.BooleanWord;
 import ch.uprisesoft.yali.ast.node.word.FloatWord;
 import ch.uprisesoft.yali.ast.node.word.IntegerWord;
@@ -24,66 +25,75 @@ import ch.uprisesoft.yali.ast.node.word.NoWord;
 import ch.uprisesoft.yali.ast.node.word.QuotedWord;
 import ch.uprisesoft.yali.ast.node.word.ReferenceWord;
 import ch.uprisesoft.yali.ast.node.word.SymbolWord;
+import ch.uprisesoft.yali.ast.node.word.Word;
 import ch.uprisesoft.yali.lexer.Token;
-import java.util.ArrayList;
+import ch.uprisesoft.yali.lexer.Tokens;
+import java.math.BigInteger;
+import java.util.Collections;
 //import org.ainslec.picocog.PicoWriter;
 
+/**
+ * Base of all nodes. A node has no fields of its own, so values like the
+ * words produced by arithmetic are a single small object. Nodes with
+ * children derive from Composite. Leaf nodes parsed from source are
+ * located through the SourceMap of their parse.
+ */
 public abstract class Node {
 
-    protected int line = 0;
-    protected int col = 0;
-    protected NodeType type;
-    protected java.util.List<Node> children = new ArrayList<>();
-    protected java.util.List<Token> token = new ArrayList<>();
-//    protected Token token;
-
-    public Node(NodeType type) {
-        this.type = type;
-    }
+    public abstract NodeType type();
 
+    /**
+     * Sets the position of a node. Leaf nodes take their position from the
+     * source map and ignore it, see Composite.
+     *
+     * @param line Line in the source
+     * @param col Column in the source
+     */
     public void setPosInSource(int line, int col) {
-        this.line = line;
-        this.col = col;
     }
 
     public java.util.List<Token> token() {
-        return token;
+        Tokens tokens = tokens();
+        if (tokens == null || firstToken() < 0) {
+            return Collections.emptyList();
+        }
+        return tokens.list(firstToken(), lastToken() + 1);
+    }
+
+    public Tokens tokens() {
+        SourceMap map = SourceMap.of(this);
+        return map == null ? null : map.tokens();
     }
 
-    public void token(Token token) {
-        this.token.add(token);
-        this.line = token.getLine();
-        this.col = token.getPos();
+    public int firstToken() {
+        SourceMap map = SourceMap.of(this);
+        return map == null ? -1 : map.indexOf(this);
     }
-    
-    public void token(java.util.List<Token> token) {
-        this.token.addAll(token);
-//        this.line = token.getLine();
-//        this.col = token.getPos();
+
+    public int lastToken() {
+        return firstToken();
     }
 
     public int getLine() {
-        return line;
+        Tokens tokens = tokens();
+        return tokens == null ? 0 : tokens.line(firstToken());
     }
 
     public int getCol() {
-        return col;
+        Tokens tokens = tokens();
+        return tokens == null ? 0 : tokens.pos(firstToken());
     }
 
     public void addChild(Node node) {
-        children.add(node);
+        throw new UnsupportedOperationException(type() + " has no children");
     }
 
     public void addChildren(java.util.List<Node> nodes) {
-        children.addAll(nodes);
+        throw new UnsupportedOperationException(type() + " has no children");
     }
 
     public java.util.List<Node> getChildren() {
-        return children;
-    }
-
-    public NodeType type() {
-        return type;
+        return Collections.emptyList();
     }
 
     @Override
@@ -110,6 +120,13 @@ public abstract class Node {
         return (IntegerWord) this;
     }
 
+    public BigIntegerWord toBigIntegerWord() throws NodeTypeException {
+        if (this.type() != NodeType.BIGINTEGER) {
+            throw new NodeTypeException(this, this.type(), NodeType.BIGINTEGER);
+        }
+        return (BigIntegerWord) this;
+    }
+
     public NilWord toNilWord() throws NodeTypeException {
         if (this.type() != NodeType.NIL) {
             throw new NodeTypeException(this, this.type(), NodeType.NIL);
@@ -159,6 +176,20 @@ public abstract class Node {
         return (List) this;
     }
 
+    public Array toArray() throws NodeTypeException {
+        if (this.type() != NodeType.ARRAY) {
+            throw new NodeTypeException(this, this.type(), NodeType.ARRAY);
+        }
+        return (Array) this;
+    }
+
+    public Dictionary toDictionary() throws NodeTypeException {
+        if (this.type() != NodeType.DICTIONARY) {
+            throw new NodeTypeException(this, this.type(), NodeType.DICTIONARY);
+        }
+        return (Dictionary) this;
+    }
+
     public NoWord toNoWord() throws NodeTypeException {
         if (this.type() != NodeType.NONE) {
             throw new NodeTypeException(this, this.type(), NodeType.NONE);
@@ -167,7 +198,7 @@ public abstract class Node {
     }
 
     public static BooleanWord bool(Boolean bool) {
-        return new BooleanWord(bool);
+        return BooleanWord.of(bool);
     }
 
     public static SymbolWord string(String str) {
@@ -178,20 +209,24 @@ public abstract class Node {
         return new SymbolWord(str);
     }
 
-    public static FloatWord flt(Double f) {
+    public static FloatWord flt(double f) {
         return new FloatWord(f);
     }
 
-    public static IntegerWord integer(Integer i) {
-        return new IntegerWord(i);
+    public static IntegerWord integer(long i) {
+        return IntegerWord.valueOf(i);
+    }
+
+    public static Word integer(BigInteger i) {
+        return BigIntegerWord.valueOf(i);
     }
 
     public static NilWord nil() {
-        return new NilWord();
+        return NilWord.NIL;
     }
 
     public static NoWord none() {
-        return new NoWord();
+        return NoWord.NONE;
     }
 
     public static QuotedWord quote(String quote) {
@@ -16,5 +16,5 @@
 package ch.uprisesoft.yali.ast.node;
 
 public enum NodeType {
-        REFERENCE, QUOTE, FLOAT, INTEGER, SYMBOL, BOOLEAN, NIL, EXPRESSION, LIST, PROCCALL, PROCEDURE, NONE, NAME, NUMBER;
+        REFERENCE, QUOTE, FLOAT, INTEGER, SYMBOL, BOOLEAN, NIL, EXPRESSION, LIST, PROCCALL, PROCEDURE, NONE, NAME, NUMBER, BIGINTEGER, ARRAY, DICTIONARY;
     }
\ No newline at end of file
@@ -0,0 +1,276 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.ast.node.word.Word;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Children of a list. A sequence of nodes is a range of a buffer, which is
+ * shared with the sequences derived from it. fput and lput write into free
+ * room in front of or behind the range, if no other sequence has claimed
+ * it yet, butfirst, butlast and subList narrow the range. All of them, and
+ * item, take constant time; only a sequence that finds its room taken is
+ * copied, with room to grow.
+ *
+ * Derived sequences never see each other's elements. The only mutations
+ * are add, which appends to this sequence, and set, which copies the
+ * sequence first if its buffer is shared.
+ *
+ * The hash of a sequence of words is cached until the sequence is
+ * mutated. The hash of a sequence containing lists isn't, as the lists in
+ * it can be mutated on their own; it is computed from their cached hashes.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public final class Nodes extends AbstractList<Node> implements RandomAccess {
+
+    private static final int ROOM = 8;
+
+    // Marks a cached hash, in the high half of the hash field
+    private static final long CACHED = 1L << 32;
+
+    private static final class Buffer {
+
+        final Node[] array;
+        // Range claimed by the sequences on this buffer
+        int head;
+        int tail;
+        boolean shared;
+
+        Buffer(Node[] array, int head, int tail) {
+            this.array = array;
+            this.head = head;
+            this.tail = tail;
+        }
+
+        synchronized boolean claimFront(int from, Node node) {
+            if (from != head || head == 0) {
+                return false;
+            }
+            array[--head] = node;
+            shared = true;
+            return true;
+        }
+
+        synchronized boolean claimBack(int to, Node node, boolean share) {
+            if (to != tail || tail == array.length) {
+                return false;
+            }
+            array[tail++] = node;
+            shared |= share;
+            return true;
+        }
+
+        synchronized void share() {
+            shared = true;
+        }
+    }
+
+    private Buffer buffer;
+    private int from;
+    private int to;
+    // Hash in the low half, CACHED if it is valid
+    private volatile long hash;
+
+    public Nodes() {
+        this(new Buffer(new Node[ROOM], 0, 0), 0, 0);
+    }
+
+    public Nodes(Collection<? extends Node> nodes) {
+        this();
+        addAll(nodes);
+    }
+
+    private Nodes(Buffer buffer, int from, int to) {
+        this.buffer = buffer;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public Node get(int index) {
+        if (index < 0 || index >= to - from) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return buffer.array[from + index];
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * @param node A node
+     * @return A sequence of the node followed by this sequence
+     */
+    public Nodes fput(Node node) {
+        if (buffer.claimFront(from, node)) {
+            return new Nodes(buffer, from - 1, to);
+        }
+        Nodes copy = copy(Math.max(size(), ROOM), 0);
+        copy.buffer.claimFront(copy.from, node);
+        return new Nodes(copy.buffer, copy.from - 1, copy.to);
+    }
+
+    /**
+     * @param node A node
+     * @return A sequence of this sequence followed by the node
+     */
+    public Nodes lput(Node node) {
+        if (buffer.claimBack(to, node, true)) {
+            return new Nodes(buffer, from, to + 1);
+        }
+        Nodes copy = copy(0, Math.max(size(), ROOM));
+        copy.buffer.claimBack(copy.to, node, true);
+        return new Nodes(copy.buffer, copy.from, copy.to + 1);
+    }
+
+    public Nodes butfirst() {
+        return subList(1, size());
+    }
+
+    public Nodes butlast() {
+        return subList(0, size() - 1);
+    }
+
+    /**
+     * @return A sequence of the same nodes, independent of this one
+     */
+    public Nodes share() {
+        return subList(0, size());
+    }
+
+    @Override
+    public Nodes subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size());
+        }
+        buffer.share();
+        return new Nodes(buffer, from + fromIndex, from + toIndex);
+    }
+
+    @Override
+    public boolean add(Node node) {
+        if (!buffer.claimBack(to, node, false)) {
+            Nodes copy = copy(0, Math.max(size(), ROOM));
+            copy.buffer.claimBack(copy.to, node, false);
+            buffer = copy.buffer;
+            from = copy.from;
+            to = copy.to;
+        }
+        to++;
+        modCount++;
+        mutated();
+        return true;
+    }
+
+    @Override
+    public Node set(int index, Node node) {
+        Node previous = get(index);
+        synchronized (buffer) {
+            if (buffer.shared) {
+                Nodes copy = copy(0, 0);
+                buffer = copy.buffer;
+                from = copy.from;
+                to = copy.to;
+            }
+        }
+        buffer.array[from + index] = node;
+        mutated();
+        return previous;
+    }
+
+    private void mutated() {
+        hash = 0;
+    }
+
+    /**
+     * The hash of java.util.List.
+     */
+    @Override
+    public int hashCode() {
+        long cached = hash;
+        if (cached != 0) {
+            return (int) cached;
+        }
+
+        int h = 1;
+        boolean words = true;
+        for (int i = from; i < to; i++) {
+            Node node = buffer.array[i];
+            h = 31 * h + (node == null ? 0 : node.hashCode());
+            words &= node instanceof Word;
+        }
+        if (words) {
+            hash = CACHED | (h & 0xffffffffL);
+        }
+        return h;
+    }
+
+    /**
+     * Element by element, after checking the sizes, the ranges and, where
+     * both sequences have one, the cached hashes.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Nodes)) {
+            return super.equals(obj);
+        }
+
+        final Nodes other = (Nodes) obj;
+
+        if (size() != other.size()) {
+            return false;
+        }
+        if (buffer == other.buffer && from == other.from) {
+            return true;
+        }
+
+        long mine = hash;
+        long theirs = other.hash;
+        if (mine != 0 && theirs != 0 && (int) mine != (int) theirs) {
+            return false;
+        }
+
+        for (int i = 0; i < size(); i++) {
+            Node left = buffer.array[from + i];
+            Node right = other.buffer.array[other.from + i];
+            if (left != right && (left == null || !left.equals(right))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Nodes copy(int front, int back) {
+        Node[] array = new Node[front + size() + back];
+        System.arraycopy(buffer.array, from, array, front, size());
+        return new Nodes(new Buffer(array, front, front + size()), front, front + size());
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOfRange(buffer.array, from, to, Object[].class);
+    }
+}
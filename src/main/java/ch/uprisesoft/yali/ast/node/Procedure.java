@@ -15,42 +15,75 @@
  */
 package ch.uprisesoft.yali.ast.node;
 
+import ch.uprisesoft.yali.lexer.Symbol;
+import ch.uprisesoft.yali.runtime.interpreter.Code;
+import ch.uprisesoft.yali.runtime.interpreter.Compiled;
 import ch.uprisesoft.yali.runtime.procedures.FunctionType;
+import ch.uprisesoft.yali.runtime.procedures.NativeCall;
+import ch.uprisesoft.yali.runtime.procedures.Operator;
 import ch.uprisesoft.yali.scope.Scope;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 /**
  *
  * @author uprisesoft@gmail.com
  */
-public class Procedure extends Node {
+public class Procedure extends Composite {
 
-    private String name;
+    private static final Symbol THING = Symbol.of("thing");
+    private static final Symbol LOCAL = Symbol.of("local");
+    private static final Symbol LOCALMAKE = Symbol.of("localmake");
+
+    private Symbol name;
     private java.util.List<String> args = new ArrayList<>();
-    private BiFunction<Scope, java.util.List<Node>, Node> nativeCall;
+    private NativeCall nativeCall;
     private BiFunction<Scope, Node, Node> hasMoreCallback;
-    private String source;
+    private CharSequence source;
+
+    // Parameters and local variables, resolved to slots of the procedure scope
+    private Map<Symbol, Integer> slots = new HashMap<>();
+
+    // Compiled body, created by the interpreter on the first call
+    private Code code;
+    // Second tier, see Interpreter.hotThreshold
+    private Compiled compiled;
+    private int calls = 0;
+    // Native procedure scheduling calls or pausing the interpreter
+    private boolean control = false;
+    private Operator operator;
 
     FunctionType funType = FunctionType.YALI;
 
     public Procedure() {
-        super(NodeType.PROCEDURE);
     }
 
     public Procedure(String name) {
         this();
-        this.name = name;
+        this.name = Symbol.of(name);
     }
     
     public Procedure(String name, 
             BiFunction<Scope, java.util.List<Node>, Node> nativeCall, 
             BiFunction<Scope, Node, Node> hasMoreCallback, 
             String... args) {
+        this(name, (NativeCall) (it, scope, val) -> nativeCall.apply(scope, val), hasMoreCallback, args);
+    }
+
+    /**
+     * A native procedure getting the interpreter that applies it. Keeping no
+     * state of its own, it can be shared by forks of an interpreter.
+     */
+    public Procedure(String name, 
+            NativeCall nativeCall, 
+            BiFunction<Scope, Node, Node> hasMoreCallback, 
+            String... args) {
         this();
         this.funType = FunctionType.NATIVE;
-        this.name = name;
+        this.name = Symbol.of(name);
         this.nativeCall = nativeCall;
         this.hasMoreCallback = hasMoreCallback;
         for(String arg: args) {
@@ -63,7 +96,39 @@ public class Procedure extends Node {
         return this;
     }
 
-    public BiFunction<Scope, java.util.List<Node>, Node> getNativeCall() {
+    /**
+     * Marks a native procedure that schedules calls or controls the
+     * interpreter. Such procedures are only applied by the interpreter
+     * itself, never called directly by compiled code.
+     *
+     * @return this procedure
+     */
+    public Procedure control() {
+        this.control = true;
+        return this;
+    }
+
+    public boolean isControl() {
+        return control;
+    }
+
+    /**
+     * Marks a native procedure of two numbers. Call sites apply the
+     * operator directly, see Interpreter.
+     *
+     * @param operator the operator
+     * @return this procedure
+     */
+    public Procedure operator(Operator operator) {
+        this.operator = operator;
+        return this;
+    }
+
+    public Operator operator() {
+        return operator;
+    }
+
+    public NativeCall getNativeCall() {
         return nativeCall;
     }
     
@@ -81,6 +146,10 @@ public class Procedure extends Node {
 
     public void setArgs(List<String> args) {
         this.args = args;
+        this.slots.clear();
+        for (String arg : args) {
+            declare(Symbol.of(arg));
+        }
     }
 
     public int getArity() {
@@ -88,6 +157,10 @@ public class Procedure extends Node {
     }
 
     public String getName() {
+        return name.name();
+    }
+
+    public Symbol symbol() {
         return name;
     }
 
@@ -95,14 +168,140 @@ public class Procedure extends Node {
         return args;
     }
 
+    public Code code() {
+        return code;
+    }
+
+    public void code(Code code) {
+        this.code = code;
+    }
+
+    public Compiled compiled() {
+        return compiled;
+    }
+
+    public void compiled(Compiled compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Counts a call of this procedure.
+     *
+     * @return the number of calls so far
+     */
+    public int called() {
+        if (calls < Integer.MAX_VALUE) {
+            calls++;
+        }
+        return calls;
+    }
+
+    public int slot(Symbol name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public int slotCount() {
+        return slots.size();
+    }
+
+    public java.util.Set<Symbol> slotNames() {
+        return java.util.Collections.unmodifiableSet(slots.keySet());
+    }
+
+    /**
+     * Resolves the variables of the body. Names made local with local or
+     * localmake get a slot after the parameters, and variable reads of
+     * parameters and locals are tagged with their slot. Lists in the body
+     * are tagged with this procedure, so statements read from them later
+     * can be resolved as well.
+     */
+    public void resolve() {
+        declareLocals(children);
+        resolve(children);
+    }
+
+    /**
+     * Tags variable reads in statements belonging to this procedure.
+     *
+     * @param statements Statements of the body or of a list in the body
+     */
+    public void resolve(java.util.List<Node> statements) {
+        for (Node node : statements) {
+            if (node.type().equals(NodeType.PROCCALL)) {
+                Call call = node.toProcedureCall();
+                Symbol name = variableName(call, THING);
+                if (name != null && slot(name) >= 0) {
+                    call.slot(this, slot(name));
+                }
+                resolve(call.getChildren());
+            } else if (node.type().equals(NodeType.LIST)) {
+                node.toList().owner(this);
+            }
+        }
+    }
+
+    private void declareLocals(java.util.List<Node> nodes) {
+        for (Node node : nodes) {
+            if (node.type().equals(NodeType.PROCCALL)) {
+                Call call = node.toProcedureCall();
+                Symbol name = variableName(call, LOCAL, LOCALMAKE);
+                if (name != null) {
+                    declare(name);
+                }
+                declareLocals(call.getChildren());
+            } else if (node.type().equals(NodeType.LIST)) {
+                // Lists are not parsed yet, look for local and localmake
+                // followed by a quoted name
+                java.util.List<Node> data = node.getChildren();
+                for (int i = 0; i < data.size(); i++) {
+                    Node word = data.get(i);
+                    if (word.type().equals(NodeType.LIST)) {
+                        declareLocals(java.util.Collections.singletonList(word));
+                    } else if (i + 1 < data.size()
+                            && (Symbol.of(word.toString()) == LOCAL || Symbol.of(word.toString()) == LOCALMAKE)
+                            && data.get(i + 1).toString().startsWith("\"")) {
+                        declare(Symbol.of(data.get(i + 1).toString().substring(1)));
+                    }
+                }
+            }
+        }
+    }
+
+    private Symbol variableName(Call call, Symbol... procedures) {
+        for (Symbol procedure : procedures) {
+            if (call.symbol() == procedure && !call.getChildren().isEmpty()) {
+                Node name = call.getChildren().get(0);
+                if (name.type().equals(NodeType.SYMBOL)) {
+                    return name.toSymbolWord().symbol();
+                }
+                if (name.type().equals(NodeType.QUOTE)) {
+                    return name.toQuotedWord().symbol();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void declare(Symbol name) {
+        if (!slots.containsKey(name)) {
+            slots.put(name, slots.size());
+        }
+    }
+
     public String getSource() {
-        return source;
+        return source == null ? null : source.toString();
     }
 
-    public void setSource(String source) {
+    public void setSource(CharSequence source) {
         this.source = source;
     }
 
+    @Override
+    public NodeType type() {
+        return NodeType.PROCEDURE;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -123,7 +322,7 @@ public class Procedure extends Node {
     public int hashCode() {
         int hash = 7;
 
-        hash = 31 * hash + (name == null ? 0 : name.hashCode());
+        hash = 31 * hash + (name == null ? 0 : name.name().hashCode());
         for (Node n : children) {
             hash = 31 * hash + (n == null ? 0 : n.hashCode());
         }
@@ -0,0 +1,98 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.lexer.Tokens;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Side table locating the leaf nodes of a parse in its tokens. Leaf nodes
+ * carry no position, the parser records them here by token index instead.
+ * Maps are kept alive by the composite nodes of their parse and registered
+ * weakly, so a leaf can be located as long as its parse is in use. Looking
+ * a node up scans all maps, which is only done to report errors.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public final class SourceMap {
+
+    private static final Set<Reference<SourceMap>> MAPS = new HashSet<>();
+    private static final ReferenceQueue<SourceMap> COLLECTED = new ReferenceQueue<>();
+
+    private final Tokens tokens;
+    private final Node[] nodes;
+
+    public SourceMap(Tokens tokens) {
+        this.tokens = tokens;
+        this.nodes = new Node[tokens.size()];
+        register(this);
+    }
+
+    public Tokens tokens() {
+        return tokens;
+    }
+
+    /**
+     * Records the token a leaf node was parsed from.
+     *
+     * @param node The node
+     * @param index Index of its token
+     */
+    public void put(Node node, int index) {
+        nodes[index] = node;
+    }
+
+    /**
+     * @param node A node
+     * @return Index of the token the node was parsed from, or -1
+     */
+    public int indexOf(Node node) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the source map a leaf node was recorded in.
+     *
+     * @param node The node
+     * @return The source map, or null if the node was not parsed
+     */
+    public static synchronized SourceMap of(Node node) {
+        for (Reference<SourceMap> ref : MAPS) {
+            SourceMap map = ref.get();
+            if (map != null && map.indexOf(node) >= 0) {
+                return map;
+            }
+        }
+        return null;
+    }
+
+    private static synchronized void register(SourceMap map) {
+        Reference<? extends SourceMap> collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            MAPS.remove(collected);
+        }
+        MAPS.add(new WeakReference<>(map, COLLECTED));
+    }
+}
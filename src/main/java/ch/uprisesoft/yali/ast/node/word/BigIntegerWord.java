@@ -0,0 +1,79 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node.word;
+
+import ch.uprisesoft.yali.ast.node.NodeType;
+import java.math.BigInteger;
+
+/**
+ * Integer beyond the range of a long. Results of arithmetic are only kept
+ * as big integers while they do not fit in a long, see
+ * {@link #valueOf(BigInteger)}.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public class BigIntegerWord extends Word {
+
+    private static final BigInteger MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final BigInteger value;
+
+    public BigIntegerWord(BigInteger value) {
+        this.value = value;
+    }
+
+    /**
+     * @param value An integer
+     * @return An IntegerWord if the value fits in a long, a BigIntegerWord
+     * otherwise
+     */
+    public static Word valueOf(BigInteger value) {
+        if (value.compareTo(MIN) >= 0 && value.compareTo(MAX) <= 0) {
+            return IntegerWord.valueOf(value.longValue());
+        }
+        return new BigIntegerWord(value);
+    }
+
+    public BigInteger bigValue() {
+        return value;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.BIGINTEGER;
+    }
+
+    @Override
+    public Double getFloat() {
+        return value.doubleValue();
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value.doubleValue());
+    }
+
+    @Override
+    public String getString() {
+        return value.toString();
+    }
+
+    @Override
+    public String toString() {
+        return value.toString();
+    }
+}
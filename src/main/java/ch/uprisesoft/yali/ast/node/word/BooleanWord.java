@@ -17,25 +17,53 @@ package ch.uprisesoft.yali.ast.node.word;
 
 import ch.uprisesoft.yali.ast.node.NodeType;
 
-
 public class BooleanWord extends Word {
 
-    public BooleanWord(Boolean bool) {
-        super(NodeType.BOOLEAN);
-        this.booleanWord = bool;
-        this.stringWord = bool.toString();
-        if (bool) {
-            this.floatWord = 0d;
-            this.integerWord = 0;
-        } else {
-            this.floatWord = -1d;
-            this.integerWord = -1;
-        }
+    public static final BooleanWord TRUE = new BooleanWord(true);
+    public static final BooleanWord FALSE = new BooleanWord(false);
+
+    private final boolean value;
+
+    public BooleanWord(boolean value) {
+        this.value = value;
+    }
+
+    public static BooleanWord of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.BOOLEAN;
+    }
+
+    @Override
+    public Boolean getBoolean() {
+        return value;
+    }
+
+    @Override
+    public String getString() {
+        return Boolean.toString(value);
+    }
 
+    @Override
+    public Double getFloat() {
+        return value ? 0d : -1d;
+    }
+
+    @Override
+    public Integer getInteger() {
+        return value ? 0 : -1;
+    }
+
+    @Override
+    public int hashCode() {
+        return Boolean.hashCode(value);
     }
 
     @Override
     public String toString() {
-        return this.booleanWord.toString();
+        return Boolean.toString(value);
     }
 }
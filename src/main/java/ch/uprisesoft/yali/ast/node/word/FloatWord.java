@@ -23,15 +23,43 @@ import ch.uprisesoft.yali.ast.node.NodeType;
  */
 public class FloatWord extends Word {
 
-    public FloatWord(Double floatVal) {
-        super(NodeType.FLOAT);
-        this.floatWord = floatVal;
-        this.stringWord = floatVal.toString();
-        this.integerWord = floatVal.intValue();
+    private final double value;
+
+    public FloatWord(double value) {
+        this.value = value;
+    }
+
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.FLOAT;
+    }
+
+    @Override
+    public Double getFloat() {
+        return value;
+    }
+
+    @Override
+    public Integer getInteger() {
+        return (int) value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+
+    @Override
+    public String getString() {
+        return Double.toString(value);
     }
 
     @Override
     public String toString() {
-        return floatWord.toString();
+        return Double.toString(value);
     }
 }
@@ -16,22 +16,82 @@
 package ch.uprisesoft.yali.ast.node.word;
 
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.exception.NodeTypeException;
 
 /**
+ * Integer fitting in a long. Arithmetic overflowing a long continues with
+ * a BigIntegerWord.
  *
  * @author uprisesoft@gmail.com
  */
 public class IntegerWord extends Word {
 
-    public IntegerWord(Integer intVal) {
-        super(NodeType.INTEGER);
-        this.integerWord = intVal;
-        this.stringWord = intVal.toString();
-        this.floatWord = Double.valueOf(intVal.floatValue());
+    // Counters, indices and turtle coordinates are mostly small
+    private static final int LOW = -128;
+    private static final int HIGH = 1024;
+    private static final IntegerWord[] CACHE = new IntegerWord[HIGH - LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new IntegerWord(i + LOW);
+        }
+    }
+
+    private final long value;
+
+    public IntegerWord(long value) {
+        this.value = value;
+    }
+
+    public static boolean isShared(long value) {
+        return value >= LOW && value <= HIGH;
+    }
+
+    public static IntegerWord valueOf(long value) {
+        if (isShared(value)) {
+            return CACHE[(int) value - LOW];
+        }
+        return new IntegerWord(value);
+    }
+
+    public long longValue() {
+        return value;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.INTEGER;
+    }
+
+    /**
+     * @return The value as an int, for counts and indices
+     * @throws NodeTypeException if the value doesn't fit an int
+     */
+    @Override
+    public Integer getInteger() {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NodeTypeException(this, type(), NodeType.INTEGER);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public Double getFloat() {
+        return (double) value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode((double) value);
+    }
+
+    @Override
+    public String getString() {
+        return Long.toString(value);
     }
 
     @Override
     public String toString() {
-        return integerWord.toString();
+        return Long.toString(value);
     }
 }
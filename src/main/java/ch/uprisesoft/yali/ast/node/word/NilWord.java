@@ -23,12 +23,16 @@ import ch.uprisesoft.yali.ast.node.NodeType;
  */
 public class NilWord extends Word {
 
-    public NilWord() {
-        super(NodeType.NIL);
-        this.stringWord = "nil";
-        this.booleanWord = null;
-        this.floatWord = null;
-        this.integerWord = null;
+    public static final NilWord NIL = new NilWord();
+
+    @Override
+    public NodeType type() {
+        return NodeType.NIL;
+    }
+
+    @Override
+    public String getString() {
+        return "nil";
     }
 
     @Override
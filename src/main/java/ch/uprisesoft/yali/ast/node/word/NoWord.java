@@ -23,12 +23,16 @@ import ch.uprisesoft.yali.ast.node.NodeType;
  */
 public class NoWord extends Word {
 
-    public NoWord() {
-        super(NodeType.NONE);
-        this.stringWord = "";
-        this.booleanWord = null;
-        this.floatWord = null;
-        this.integerWord = null;
+    public static final NoWord NONE = new NoWord();
+
+    @Override
+    public NodeType type() {
+        return NodeType.NONE;
+    }
+
+    @Override
+    public String getString() {
+        return "";
     }
 
     @Override
@@ -16,6 +16,8 @@
 package ch.uprisesoft.yali.ast.node.word;
 
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.lexer.Interner;
+import ch.uprisesoft.yali.lexer.Symbol;
 
 /**
  *
@@ -23,14 +25,53 @@ import ch.uprisesoft.yali.ast.node.NodeType;
  */
 public class QuotedWord extends Word {
 
+    private static final Interner<QuotedWord> ATOMS = new Interner<>();
+
+    private final String quote;
+    private Symbol symbol;
+    private int hash;
+
     public QuotedWord(String quote) {
-        super(NodeType.QUOTE);
-        
-        this.quoteWord = quote.replace("\\ ", " ");
+        this.quote = quote.replace("\\ ", " ");
+    }
+
+    /**
+     * Interned quoted word, see {@link SymbolWord#of(String)}.
+     *
+     * @param quote The word
+     * @return The one quoted word with exactly this spelling
+     */
+    public static QuotedWord of(String quote) {
+        return ATOMS.intern(quote, QuotedWord::new);
+    }
+
+    public Symbol symbol() {
+        if (symbol == null) {
+            symbol = Symbol.of(quote);
+        }
+        return symbol;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.QUOTE;
+    }
+
+    @Override
+    public String getQuote() {
+        return quote;
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = hash(quote);
+        }
+        return hash;
     }
 
     @Override
     public String toString() {
-        return quoteWord.toString();
+        return quote;
     }
 }
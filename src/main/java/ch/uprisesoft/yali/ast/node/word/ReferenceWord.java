@@ -23,13 +23,24 @@ import ch.uprisesoft.yali.ast.node.NodeType;
  */
 public class ReferenceWord extends Word {
 
+    private final String reference;
+
     public ReferenceWord(String reference) {
-        super(NodeType.REFERENCE);
-        this.referenceWord = reference;
+        this.reference = reference;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.REFERENCE;
+    }
+
+    @Override
+    public String getReference() {
+        return reference;
     }
 
     @Override
     public String toString() {
-        return referenceWord.toString();
+        return reference;
     }
 }
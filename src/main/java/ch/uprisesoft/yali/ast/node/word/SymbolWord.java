@@ -16,6 +16,8 @@
 package ch.uprisesoft.yali.ast.node.word;
 
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.lexer.Interner;
+import ch.uprisesoft.yali.lexer.Symbol;
 
 /**
  *
@@ -23,14 +25,54 @@ import ch.uprisesoft.yali.ast.node.NodeType;
  */
 public class SymbolWord extends Word {
 
-    public SymbolWord(String string) {
-        super(NodeType.SYMBOL);
-        this.symbolWord = string;
-        
-    }    
-    
+    private static final Interner<SymbolWord> ATOMS = new Interner<>();
+
+    private final String name;
+    private Symbol symbol;
+    private int hash;
+
+    public SymbolWord(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Interned symbol word. Words are kept in the table only while in use,
+     * see Interner, so words computed at runtime don't pile up.
+     *
+     * @param name The word
+     * @return The one symbol word with exactly this spelling
+     */
+    public static SymbolWord of(String name) {
+        return ATOMS.intern(name, SymbolWord::new);
+    }
+
+    public Symbol symbol() {
+        if (symbol == null) {
+            symbol = Symbol.of(name);
+        }
+        return symbol;
+    }
+
+    @Override
+    public NodeType type() {
+        return NodeType.SYMBOL;
+    }
+
+    @Override
+    public String getSymbol() {
+        return name;
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = hash(name);
+        }
+        return hash;
+    }
+
     @Override
     public String toString() {
-        return symbolWord.toString();
+        return name;
     }
 }
@@ -18,130 +18,123 @@ package ch.uprisesoft.yali.ast.node.word;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
 
+/**
+ * Base of all words. Each kind of word only holds its own value; the
+ * getters of other kinds return null, or a conversion where a word has
+ * always offered one.
+ */
 public abstract class Word extends Node {
 
-    protected Double floatWord;
-    protected Integer integerWord;
-    protected String stringWord;
-    protected String symbolWord;
-    protected String quoteWord;
-    protected String referenceWord;
-    protected Boolean booleanWord;
-    protected String nilWord = "nil";
-
-    public Word(NodeType type) {
-        super(type);
-    }
-
     public NodeType getType() {
-        return type;
+        return type();
     }
 
     public String getString() {
-        return stringWord;
+        return null;
     }
-    
+
     public String getQuote() {
-        return quoteWord;
+        return null;
     }
 
     public Boolean getBoolean() {
-        return booleanWord;
+        return null;
     }
 
     public Double getFloat() {
-        return floatWord;
+        return null;
     }
 
     public Integer getInteger() {
-        return integerWord;
+        return null;
     }
 
     public String getNil() {
-        return nilWord;
+        return "nil";
     }
-    
+
     public String getSymbol() {
-        return symbolWord;
+        return null;
     }
-    
+
     public String getReference() {
-        return referenceWord;
-    }    
+        return null;
+    }
 
+    /**
+     * Numbers hash by value and other words by their text. A word whose
+     * text reads as a number hashes like that number, since the two are
+     * equal.
+     */
     @Override
     public int hashCode() {
-        int hash = 7;
-        hash = 31 * hash + (floatWord == null ? 0 : floatWord.hashCode());
-        hash = 31 * hash + (integerWord == null ? 0 : integerWord.hashCode());
-        hash = 31 * hash + (quoteWord == null ? 0 : quoteWord.hashCode());
-        hash = 31 * hash + (stringWord == null ? 0 : stringWord.hashCode());
-        hash = 31 * hash + (booleanWord == null ? 0 : booleanWord.hashCode());
-        hash = 31 * hash + (referenceWord == null ? 0 : referenceWord.hashCode());
-        hash = 31 * hash + (symbolWord == null ? 0 : symbolWord.hashCode());
-        return hash;
+        return hash(toString());
     }
 
+    protected static int hash(String text) {
+        if (!text.isEmpty()) {
+            char c = text.charAt(0);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'N' || c == 'I') {
+                try {
+                    return Double.hashCode(Double.parseDouble(text));
+                } catch (NumberFormatException e) {
+                    // Not a number, hash the text
+                }
+            }
+        }
+        return text.hashCode();
+    }
+
+    /**
+     * Numbers are equal by value, words by their text, and a number equals
+     * a word spelling it. Nil and none equal nothing but themselves.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
+        if (!(obj instanceof Word)) {
             return false;
         }
 
         final Word other = (Word) obj;
-        
-        if(this.type.equals(NodeType.NIL) || this.type.equals(NodeType.NONE) || other.type.equals(NodeType.NIL) || other.type.equals(NodeType.NONE)) {
-            return false;
-        }
-        
-        if (this.type.equals(NodeType.INTEGER) && other.type.equals(NodeType.INTEGER)) {
-            return this.integerWord.equals(other.integerWord);
-        }
-        
-        if (this.type.equals(NodeType.NAME) && other.type.equals(NodeType.NAME)) {
-            return this.stringWord.equals(other.stringWord);
-        }
-        
-        if (this.type.equals(NodeType.FLOAT) && other.type.equals(NodeType.FLOAT)) {
-            return this.floatWord.equals(other.floatWord);
-        }
-        
-        if (this.type.equals(NodeType.FLOAT) && other.type.equals(NodeType.INTEGER)) {
-            return this.floatWord.equals(Double.valueOf(other.integerWord));
+        final NodeType left = this.type();
+        final NodeType right = other.type();
+
+        if (isNumber(left) && isNumber(right)) {
+            if (left.equals(NodeType.INTEGER) && right.equals(NodeType.INTEGER)) {
+                return ((IntegerWord) this).longValue() == ((IntegerWord) other).longValue();
+            }
+            if (left.equals(NodeType.BIGINTEGER) && right.equals(NodeType.BIGINTEGER)) {
+                return ((BigIntegerWord) this).bigValue().equals(((BigIntegerWord) other).bigValue());
+            }
+            if (left.equals(NodeType.BIGINTEGER) || right.equals(NodeType.BIGINTEGER)) {
+                return false;
+            }
+            return this.getFloat().equals(other.getFloat());
         }
 
-        if (this.type.equals(NodeType.INTEGER) && other.type.equals(NodeType.FLOAT)) {
-            return Double.valueOf(this.integerWord).equals(other.floatWord);
-        }
-        
-        if (this.type.equals(NodeType.SYMBOL) && other.type.equals(NodeType.QUOTE)) {
-            return this.getString().equals(other.getQuote());
-        }
-        
-        if (this.type.equals(NodeType.QUOTE) && other.type.equals(NodeType.SYMBOL)) {
-            return this.getQuote().equals(other.getString());
-        }
-        
-        if (this.type.equals(NodeType.QUOTE) && other.type.equals(NodeType.QUOTE)) {
-            return this.getQuote().equals(other.getQuote());
-        }
-        
-        if (this.type.equals(NodeType.SYMBOL) && other.type.equals(NodeType.SYMBOL)) {
-            return this.getString().equals(other.getString());
-        }
-        
-        if (((this.type.equals(NodeType.QUOTE) || this.type.equals(NodeType.SYMBOL)) && (other.type.equals(NodeType.INTEGER) || other.type.equals(NodeType.FLOAT)))
-                || ((this.type.equals(NodeType.INTEGER) || this.type.equals(NodeType.FLOAT)) && (other.type.equals(NodeType.QUOTE) || other.type.equals(NodeType.SYMBOL)))) {
+        if ((isText(left) || isNumber(left)) && (isText(right) || isNumber(right))) {
             return this.toString().equals(other.toString());
         }
 
-        if (getClass() != obj.getClass()) {
-            return false;
+        if (left.equals(NodeType.BOOLEAN) && right.equals(NodeType.BOOLEAN)) {
+            return this.getBoolean().equals(other.getBoolean());
         }
 
-        return true;
+        if (left.equals(NodeType.REFERENCE) && right.equals(NodeType.REFERENCE)) {
+            return this.getReference().equals(other.getReference());
+        }
+
+        return false;
+    }
+
+    private static boolean isNumber(NodeType type) {
+        return type.equals(NodeType.INTEGER) || type.equals(NodeType.BIGINTEGER) || type.equals(NodeType.FLOAT);
+    }
+
+    private static boolean isText(NodeType type) {
+        return type.equals(NodeType.QUOTE) || type.equals(NodeType.SYMBOL);
     }
 }
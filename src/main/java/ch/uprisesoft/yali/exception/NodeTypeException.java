@@ -33,7 +33,17 @@ public class NodeTypeException extends RuntimeException {
     private Node node;
     
     public NodeTypeException(Node node, NodeType received, NodeType... expected) {
-        super("Expected node of type " + Stream.of(expected).map(nodetype -> nodetype.toString()).collect(Collectors.joining(", ")) + ", but received node of type " + received);
+        this((String) null, node, received, expected);
+    }
+
+    /**
+     * @param procedure Name of the procedure the message starts with, or null
+     * @param node The node of the wrong type
+     * @param received The type of the node
+     * @param expected The types the procedure accepts
+     */
+    public NodeTypeException(String procedure, Node node, NodeType received, NodeType... expected) {
+        super((procedure == null ? "" : procedure + ": ") + "Expected node of type " + Stream.of(expected).map(nodetype -> nodetype.toString()).collect(Collectors.joining(", ")) + ", but received node of type " + received);
         for(NodeType e: expected) {
             this.expected.add(e);
         }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Table of canonical instances by spelling, holding them weakly. An instance
+ * stays in the table as long as something else refers to it, like a parsed
+ * program or a scope. Names made up at runtime are dropped once they are no
+ * longer used, so the table doesn't grow with every string a program
+ * computes. Can be used from several threads.
+ *
+ * @param <T> the type of the instances
+ * @author rma
+ */
+public final class Interner<T> {
+
+    private final ConcurrentMap<String, Entry<T>> table = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+
+    /**
+     * Looks up the instance of a spelling, creating it if there is none.
+     *
+     * @param key the spelling
+     * @param create creates the instance of a spelling not in the table
+     * @return the one instance with this spelling
+     */
+    public T intern(String key, Function<String, T> create) {
+        purge();
+        while (true) {
+            Entry<T> entry = table.get(key);
+            T value = entry == null ? null : entry.get();
+            if (value != null) {
+                return value;
+            }
+
+            value = create.apply(key);
+            Entry<T> fresh = new Entry<>(key, value, collected);
+            if (entry == null ? table.putIfAbsent(key, fresh) == null : table.replace(key, entry, fresh)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @return the number of spellings in the table, including ones whose
+     * instance is about to be dropped
+     */
+    public int size() {
+        purge();
+        return table.size();
+    }
+
+    private void purge() {
+        Entry<?> entry;
+        while ((entry = (Entry<?>) collected.poll()) != null) {
+            table.remove(entry.key, entry);
+        }
+    }
+
+    private static final class Entry<T> extends WeakReference<T> {
+
+        final String key;
+
+        Entry(String key, T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
@@ -15,7 +15,10 @@
  */
 package ch.uprisesoft.yali.lexer;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -23,22 +26,550 @@ import java.util.List;
  */
 public class Lexer {
 
-    protected String source;
+    static final Symbol TRUE = Symbol.of("true");
+    static final Symbol FALSE = Symbol.of("false");
+    static final Symbol NIL = Symbol.of("nil");
+    static final Symbol TO = Symbol.of("to");
+    static final Symbol END = Symbol.of("end");
 
-    private Scanner scanner;
+    // Character classes, looked up in a table for ASCII characters
+    private static final byte ALPHA = 1;
+    private static final byte DIGIT = 2;
+    // Ends words in code
+    private static final byte DELIMITER = 4;
+    // Ends words in lists
+    private static final byte LIST_DELIMITER = 8;
+
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] = ALPHA;
+            CLASSES[Character.toUpperCase(c)] = ALPHA;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+        }
+        for (char c : "_-!?".toCharArray()) {
+            CLASSES[c] = ALPHA;
+        }
+        for (char c : " :{}[]()\t\r\n".toCharArray()) {
+            CLASSES[c] = DELIMITER;
+        }
+        CLASSES[' '] |= LIST_DELIMITER;
+        CLASSES[']'] |= LIST_DELIMITER;
+    }
+
+    private static final int NO_KEYWORD = 0;
+    private static final int TRUE_KEYWORD = 1;
+    private static final int FALSE_KEYWORD = 2;
+    private static final int NIL_KEYWORD = 3;
+    private static final int TO_KEYWORD = 4;
+    private static final int END_KEYWORD = 5;
+
+    private static final Map<String, TokenType> OPERATORS = new HashMap<>();
+
+    static {
+        OPERATORS.put("(", TokenType.LEFT_PAREN);
+        OPERATORS.put(")", TokenType.RIGHT_PAREN);
+        OPERATORS.put("{", TokenType.LEFT_BRACE);
+        OPERATORS.put("}", TokenType.RIGHT_BRACE);
+        OPERATORS.put("-", TokenType.MINUS);
+        OPERATORS.put("+", TokenType.PLUS);
+        OPERATORS.put("*", TokenType.STAR);
+        OPERATORS.put("/", TokenType.SLASH);
+        OPERATORS.put("!", TokenType.BANG);
+        OPERATORS.put("!=", TokenType.BANG_EQUAL);
+        OPERATORS.put("=", TokenType.EQUAL);
+        OPERATORS.put("==", TokenType.EQUAL_EQUAL);
+        OPERATORS.put("<", TokenType.LESS);
+        OPERATORS.put("<=", TokenType.LESS_EQUAL);
+        OPERATORS.put(">", TokenType.GREATER);
+        OPERATORS.put(">=", TokenType.GREATER_EQUAL);
+    }
+
+    private String source;
+    private Tokens tokens;
+    private int current;
+    private int end;
+    private int line;
+    private int lineStart;
+    // Start of the procedure definition being scanned, or -1
+    private int procStart;
 
     public List<Token> scan(String source) {
-        scanner = new BaseScanner(this, source);
+        return tokenize(source).list();
+    }
+
+    public List<Token> scan(String source, int line) {
+        return tokenize(source, 0, source.length(), line, 0).list();
+    }
+
+    public Tokens tokenize(String source) {
+        return tokenize(source, 0, source.length(), 1, 0);
+    }
+
+    /**
+     * Scans a region of a source as code.
+     *
+     * @param source The source
+     * @param from Offset of the region
+     * @param to Offset after the region
+     * @param line Line the region starts on
+     * @param lineStart Offset of the start of that line
+     * @return The tokens, terminated by EOF
+     */
+    public Tokens tokenize(String source, int from, int to, int line, int lineStart) {
         this.source = source;
+        this.tokens = new Tokens(source, Math.max(16, (to - from) / 3));
+        this.current = from;
+        this.end = to;
+        this.line = line;
+        this.lineStart = lineStart;
+        this.procStart = -1;
+
+        int depth = 0;
+        while (current < end) {
+            if (depth == 0) {
+                depth = scanCode();
+            } else {
+                depth = scanList(depth);
+            }
+        }
+
+        tokens.add(TokenType.EOF, end, end, this.line, end - this.lineStart);
+        return tokens;
+    }
+
+    /**
+     * Scans the members of a list built at runtime as code, without printing
+     * the list and scanning it again. Every word is scanned on its own. A
+     * word with blanks or brackets in it stays one token, a quote, a
+     * reference or a symbol by its first character. A null member stands
+     * for a list and is scanned as an empty pair of brackets, for the caller
+     * to put the list in.
+     *
+     * @param words The words, null for lists
+     * @param line Line the words are on
+     * @return The tokens, terminated by EOF
+     */
+    public Tokens tokenize(List<String> words, int line) {
+        StringBuilder joined = new StringBuilder();
+        for (String word : words) {
+            joined.append(word == null ? "[]" : word).append(' ');
+        }
+        this.source = joined.toString();
+        this.tokens = new Tokens(source, Math.max(16, words.size() + 1));
+        this.line = line;
+        this.lineStart = 0;
+        this.procStart = -1;
+
+        int from = 0;
+        for (String word : words) {
+            int to = from + (word == null ? 2 : word.length());
+            if (word == null) {
+                current = from + 1;
+                add(TokenType.LEFT_BRACKET, from);
+                current = to;
+                add(TokenType.RIGHT_BRACKET, from + 1);
+            } else if (whole(word)) {
+                current = to;
+                add(word.startsWith("\"") ? TokenType.QUOTE : word.startsWith(":") ? TokenType.REFERENCE : TokenType.SYMBOL, from);
+            } else {
+                current = from;
+                end = to;
+                while (current < end) {
+                    scanCode();
+                }
+            }
+            from = to + 1;
+        }
+
+        end = source.length();
+        tokens.add(TokenType.EOF, end, end, this.line, end - this.lineStart);
+        return tokens;
+    }
+
+    // Splitting the word on blanks or brackets would change what it is
+    private static boolean whole(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '[' || c == ']') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int scanCode() {
+        int start = current;
+        char c = source.charAt(current++);
+
+        switch (c) {
+            case '(':
+                add(TokenType.LEFT_PAREN, start);
+                break;
+            case ')':
+                add(TokenType.RIGHT_PAREN, start);
+                break;
+            case '{':
+                add(TokenType.LEFT_BRACE, start);
+                break;
+            case '}':
+                add(TokenType.RIGHT_BRACE, start);
+                break;
+            case '[':
+                add(TokenType.LEFT_BRACKET, start);
+                return 1;
+            case ']':
+                add(TokenType.RIGHT_BRACKET, start);
+                break;
+            case '-':
+                if (is(peek(), DIGIT)) {
+                    number(start);
+                } else {
+                    add(TokenType.MINUS, start);
+                }
+                break;
+            case '+':
+                add(TokenType.PLUS, start);
+                break;
+            case '*':
+                add(TokenType.STAR, start);
+                break;
+            case '/':
+                add(TokenType.SLASH, start);
+                break;
+            case '!':
+                add(match('=') ? TokenType.BANG_EQUAL : TokenType.BANG, start);
+                break;
+            case '=':
+                add(match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL, start);
+                break;
+            case '<':
+                add(match('=') ? TokenType.LESS_EQUAL : TokenType.LESS, start);
+                break;
+            case '>':
+                add(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER, start);
+                break;
+            case ';':
+                if (match(';')) {
+                    // A comment goes until the end of the line.
+                    while (current < end && source.charAt(current) != '\n') {
+                        current++;
+                    }
+                }
+                break;
+            case ' ':
+            case '\r':
+            case '\t':
+                break;
+            case '\n':
+                add(TokenType.NEWLINE, start);
+                line++;
+                lineStart = current;
+                break;
+            case '"':
+                word(TokenType.QUOTE, start);
+                break;
+            case ':':
+                word(TokenType.REFERENCE, start);
+                break;
+            case '?':
+                question(start);
+                break;
+            default:
+                if (is(c, DIGIT)) {
+                    number(start);
+                } else if (is(c, ALPHA)) {
+                    symbol(start);
+                } else {
+                    System.out.println("Unexpected character: " + (start - lineStart) + "/" + line);
+                }
+                break;
+        }
+        return 0;
+    }
+
+    private int scanList(int depth) {
+        int start = current;
+        char c = source.charAt(current++);
+
+        switch (c) {
+            case '[':
+                add(TokenType.LEFT_BRACKET, start);
+                return depth + 1;
+            case ']':
+                add(TokenType.RIGHT_BRACKET, start);
+                return depth - 1;
+            case ' ':
+                return depth;
+            default:
+                // Words in lists are split on spaces only
+                int pos = start - lineStart;
+                int startLine = line;
+                if (c == '\n') {
+                    newLine();
+                }
+                while (current < end && !is(source.charAt(current), LIST_DELIMITER)) {
+                    if (source.charAt(current++) == '\n') {
+                        newLine();
+                    }
+                }
+                tokens.add(TokenType.SYMBOL, start, current, startLine, pos);
+                return depth;
+        }
+    }
+
+    private void word(TokenType type, int start) {
+        while (current < end && !is(source.charAt(current), DELIMITER)) {
+            current++;
+        }
+        add(type, start);
+    }
+
+    private void question(int start) {
+        while (current < end && !is(source.charAt(current), DELIMITER)) {
+            if (is(source.charAt(current), DIGIT)) {
+                current++;
+            } else {
+                symbol(start);
+                return;
+            }
+        }
+        add(TokenType.QUESTION, start);
+    }
+
+    private void number(int start) {
+        while (is(peek(), DIGIT)) {
+            current++;
+        }
 
-        while (!scanner.isAtEnd()) {
-            scanner.scanToken();
+        // Look for a fractional part.
+        if (peek() == '.' && current + 1 < end && is(source.charAt(current + 1), DIGIT)) {
+            current++;
+            while (is(peek(), DIGIT)) {
+                current++;
+            }
         }
 
-        return  scanner.getTokens();
+        add(TokenType.NUMBER, start);
     }
-    
-    public void setScanner(Scanner scanner) {
-        this.scanner = scanner;
+
+    private void symbol(int start) {
+        while (current < end && is(source.charAt(current), (byte) (ALPHA | DIGIT))) {
+            current++;
+        }
+
+        switch (keyword(start, current)) {
+            case TRUE_KEYWORD:
+                add(TokenType.TRUE, start);
+                break;
+            case FALSE_KEYWORD:
+                add(TokenType.FALSE, start);
+                break;
+            case NIL_KEYWORD:
+                add(TokenType.NIL, start);
+                break;
+            case TO_KEYWORD:
+                procStart = start;
+                add(TokenType.TO, start);
+                break;
+            case END_KEYWORD:
+                // The END token carries the whole procedure definition
+                tokens.add(TokenType.END, procStart < 0 ? start : procStart, current, line, start - lineStart);
+                procStart = -1;
+                break;
+            default:
+                add(TokenType.SYMBOL, start);
+                break;
+        }
+    }
+
+    private int keyword(int start, int end) {
+        switch (end - start) {
+            case 2:
+                return source.regionMatches(true, start, "to", 0, 2) ? TO_KEYWORD : NO_KEYWORD;
+            case 3:
+                if (source.regionMatches(true, start, "end", 0, 3)) {
+                    return END_KEYWORD;
+                }
+                return source.regionMatches(true, start, "nil", 0, 3) ? NIL_KEYWORD : NO_KEYWORD;
+            case 4:
+                return source.regionMatches(true, start, "true", 0, 4) ? TRUE_KEYWORD : NO_KEYWORD;
+            case 5:
+                return source.regionMatches(true, start, "false", 0, 5) ? FALSE_KEYWORD : NO_KEYWORD;
+            default:
+                return NO_KEYWORD;
+        }
+    }
+
+    private void add(TokenType type, int start) {
+        tokens.add(type, start, current, line, start - lineStart);
+    }
+
+    private void newLine() {
+        line++;
+        lineStart = current;
+    }
+
+    private boolean match(char expected) {
+        if (current < end && source.charAt(current) == expected) {
+            current++;
+            return true;
+        }
+        return false;
+    }
+
+    private char peek() {
+        return current < end ? source.charAt(current) : '\0';
+    }
+
+    private static boolean is(char c, byte cls) {
+        if (c < 128) {
+            return (CLASSES[c] & cls) != 0;
+        }
+        return ((cls & ALPHA) != 0 && Character.isAlphabetic(c))
+                || ((cls & DIGIT) != 0 && Character.isDigit(c));
+    }
+
+    /**
+     * Turns the tokens of a list into tokens as if the content of the list
+     * had been scanned as code. The list scanner only splits on spaces, so
+     * most list tokens map to exactly one code token and are converted
+     * directly. Only tokens containing delimiters like parens or newlines
+     * are scanned again. Tokens of nested lists are kept as they are.
+     *
+     * @param listTokens Tokens of a list, including the enclosing brackets
+     * @return Tokens of the list content, terminated by EOF
+     */
+    public List<Token> scan(List<Token> listTokens) {
+        List<Token> tokens = new ArrayList<>(listTokens.size());
+        int depth = 0;
+        int procStart = -1;
+
+        for (int i = 1; i < listTokens.size() - 1; i++) {
+            Token t = listTokens.get(i);
+
+            if (t.type().equals(TokenType.LEFT_BRACKET)) {
+                depth++;
+            } else if (t.type().equals(TokenType.RIGHT_BRACKET)) {
+                depth--;
+            }
+
+            if (depth > 0 || !t.type().equals(TokenType.SYMBOL)) {
+                tokens.add(t);
+                continue;
+            }
+
+            int scanned = tokens.size();
+            TokenType type = classify(t.getLexeme());
+            if (type != null) {
+                tokens.add(new Token(type, t.getLexeme(), t.getLine(), t.getPos(), t.getAbsolute()));
+            } else {
+                for (Token sub : new Lexer().scan(t.getLexeme())) {
+                    if (!sub.type().equals(TokenType.EOF)) {
+                        int pos = sub.getLine() == 1 ? t.getPos() + sub.getPos() : sub.getPos();
+                        tokens.add(new Token(sub.type(), sub.getLexeme(), t.getLine() + sub.getLine() - 1, pos, t.getAbsolute() + sub.getAbsolute()));
+                    }
+                }
+            }
+
+            // The END token carries the whole procedure definition
+            for (int j = scanned; j < tokens.size(); j++) {
+                Token added = tokens.get(j);
+                if (added.type().equals(TokenType.TO)) {
+                    procStart = i;
+                } else if (added.type().equals(TokenType.END) && procStart >= 0) {
+                    StringBuilder definition = new StringBuilder();
+                    for (Token d : listTokens.subList(procStart, i + 1)) {
+                        definition.append(d.getLexeme()).append(" ");
+                    }
+                    tokens.set(j, new Token(TokenType.END, definition.toString().trim(), added.getLine(), added.getPos(), added.getAbsolute()));
+                    procStart = -1;
+                }
+            }
+        }
+
+        Token close = listTokens.get(listTokens.size() - 1);
+        tokens.add(new Token(TokenType.EOF, "", close.getLine(), close.getPos(), close.getAbsolute()));
+        return tokens;
+    }
+
+    private TokenType classify(String lexeme) {
+        char first = lexeme.charAt(0);
+
+        if (OPERATORS.containsKey(lexeme)) {
+            return OPERATORS.get(lexeme);
+        }
+
+        if (first == '"' || first == ':') {
+            for (int i = 1; i < lexeme.length(); i++) {
+                if (is(lexeme.charAt(i), DELIMITER)) {
+                    return null;
+                }
+            }
+            return first == '"' ? TokenType.QUOTE : TokenType.REFERENCE;
+        }
+
+        if (first == '?') {
+            for (int i = 1; i < lexeme.length(); i++) {
+                if (!Character.isDigit(lexeme.charAt(i))) {
+                    return null;
+                }
+            }
+            return TokenType.QUESTION;
+        }
+
+        if (Character.isDigit(first) || (first == '-' && lexeme.length() > 1)) {
+            return isNumber(lexeme) ? TokenType.NUMBER : null;
+        }
+
+        if (Character.isAlphabetic(first) || first == '_') {
+            for (int i = 1; i < lexeme.length(); i++) {
+                char c = lexeme.charAt(i);
+                if (!(Character.isAlphabetic(c) || Character.isDigit(c) || c == '_' || c == '-' || c == '!' || c == '?')) {
+                    return null;
+                }
+            }
+
+            Symbol symbol = Symbol.of(lexeme);
+            if (symbol == TRUE) {
+                return TokenType.TRUE;
+            } else if (symbol == FALSE) {
+                return TokenType.FALSE;
+            } else if (symbol == NIL) {
+                return TokenType.NIL;
+            } else if (symbol == TO) {
+                return TokenType.TO;
+            } else if (symbol == END) {
+                return TokenType.END;
+            }
+            return TokenType.SYMBOL;
+        }
+
+        return null;
+    }
+
+    private boolean isNumber(String lexeme) {
+        int i = lexeme.charAt(0) == '-' ? 1 : 0;
+        int digits = 0;
+        while (i < lexeme.length() && Character.isDigit(lexeme.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < lexeme.length() && lexeme.charAt(i) == '.') {
+            i++;
+            if (i == lexeme.length()) {
+                return false;
+            }
+            while (i < lexeme.length() && Character.isDigit(lexeme.charAt(i))) {
+                i++;
+            }
+        }
+        return i == lexeme.length();
     }
 }
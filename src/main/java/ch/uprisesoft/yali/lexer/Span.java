@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 rmaire.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+/**
+ * A region of a source, used instead of a substring so the source of lists
+ * and procedures is not copied. The region is only copied out when it is
+ * turned into a string.
+ *
+ * @author rmaire
+ */
+public final class Span implements CharSequence {
+
+    private final String source;
+    private final int start;
+    private final int end;
+
+    public Span(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new Span(source, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return source.substring(start, end);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 rmaire.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interned, case insensitive name of a procedure or variable. There is
+ * exactly one symbol per lowercased name, so symbols are compared by
+ * identity and can be used as keys of hash maps without further
+ * normalization. Symbols nothing refers to anymore are dropped, see
+ * Interner, so names computed at runtime don't pile up.
+ *
+ * @author rmaire
+ */
+public final class Symbol {
+
+    // Maps the spellings of the symbols in use to their symbol
+    private static final Interner<Symbol> SYMBOLS = new Interner<>();
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    public static Symbol of(String name) {
+        return SYMBOLS.intern(name, n -> {
+            String canonical = n.toLowerCase();
+            return canonical.equals(n) ? new Symbol(n, IDS.getAndIncrement()) : of(canonical);
+        });
+    }
+
+    /**
+     * @return the number of spellings of symbols in use
+     */
+    static int interned() {
+        return SYMBOLS.size();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
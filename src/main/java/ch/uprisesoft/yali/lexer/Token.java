@@ -27,6 +27,7 @@ public class Token {
     private final int line;
     private final int pos;
     private final int absolute;
+    private Symbol symbol;
 
     public Token(TokenType type, String lexeme, int line, int pos, int absolute) {
         this.type = type;
@@ -37,6 +38,11 @@ public class Token {
         this.absolute = absolute;
     }
 
+    public Token(TokenType type, String lexeme, int line, int pos, int absolute, Symbol symbol) {
+        this(type, lexeme, line, pos, absolute);
+        this.symbol = symbol;
+    }
+
     public TokenType type() {
         return this.type;
     }
@@ -45,6 +51,20 @@ public class Token {
         return lexeme;
     }
 
+    /**
+     * The name this token stands for. Quotes and references stand for the
+     * name without their prefix.
+     *
+     * @return the interned name
+     */
+    public Symbol symbol() {
+        if (symbol == null) {
+            boolean prefixed = type == TokenType.QUOTE || type == TokenType.REFERENCE;
+            symbol = Symbol.of(prefixed ? lexeme.substring(1) : lexeme);
+        }
+        return symbol;
+    }
+
 //    public Object getLiteral() {
 //        return literal;
 //    }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 rmaire.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokens of a source, stored column-wise in primitive arrays. A token is
+ * its type and the region of the shared source it was scanned from.
+ * Nothing is copied out of the source until a lexeme is asked for.
+ *
+ * @author rmaire
+ */
+public final class Tokens {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final String source;
+
+    private byte[] types;
+    // Region of the lexeme in the source
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] positions;
+    private Symbol[] symbols;
+    private int size = 0;
+
+    Tokens(String source, int capacity) {
+        this.source = source;
+        types = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        lines = new int[capacity];
+        positions = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int end, int line, int pos) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        positions[size] = pos;
+        size++;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int i) {
+        return TYPES[types[i]];
+    }
+
+    public int start(int i) {
+        return starts[i];
+    }
+
+    public int end(int i) {
+        return ends[i];
+    }
+
+    public int line(int i) {
+        return lines[i];
+    }
+
+    public int pos(int i) {
+        return positions[i];
+    }
+
+    /**
+     * Offset of a token in the source. The lexeme of an END token spans
+     * the whole procedure definition, its offset is the one of the END
+     * keyword.
+     *
+     * @param i Index of the token
+     * @return The offset in the source
+     */
+    public int absolute(int i) {
+        return type(i) == TokenType.END ? ends[i] - 3 : starts[i];
+    }
+
+    public String lexeme(int i) {
+        return source.substring(starts[i], ends[i]);
+    }
+
+    /**
+     * Tells if the lexeme of a token is a one character string.
+     *
+     * @param i Index of the token
+     * @param c The character
+     * @return true if the lexeme is c
+     */
+    public boolean is(int i, char c) {
+        return ends[i] - starts[i] == 1 && source.charAt(starts[i]) == c;
+    }
+
+    /**
+     * The name a token stands for. Quotes and references stand for the name
+     * without their prefix.
+     *
+     * @param i Index of the token
+     * @return The interned name
+     */
+    public Symbol symbol(int i) {
+        if (symbols == null) {
+            symbols = new Symbol[types.length];
+        }
+        Symbol symbol = symbols[i];
+        if (symbol == null) {
+            TokenType type = type(i);
+            int prefix = type == TokenType.QUOTE || type == TokenType.REFERENCE ? 1 : 0;
+            symbol = Symbol.of(source.substring(starts[i] + prefix, ends[i]));
+            symbols[i] = symbol;
+        }
+        return symbol;
+    }
+
+    /**
+     * The source of a range of tokens, without copying it.
+     *
+     * @param from Index of the first token
+     * @param to Index of the last token
+     * @return The span from the first to the last token
+     */
+    public Span span(int from, int to) {
+        return new Span(source, starts[from], ends[to]);
+    }
+
+    public Token token(int i) {
+        TokenType type = type(i);
+        Symbol symbol = symbols == null ? null : symbols[i];
+        return new Token(type, lexeme(i), lines[i], positions[i], absolute(i), symbol);
+    }
+
+    /**
+     * Tokens of a range as objects, created when they are accessed.
+     *
+     * @param from Index of the first token
+     * @param to Index after the last token
+     * @return The tokens
+     */
+    public List<Token> list(int from, int to) {
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                if (index < 0 || index >= to - from) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+                }
+                return token(from + index);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    public List<Token> list() {
+        return list(0, size);
+    }
+}
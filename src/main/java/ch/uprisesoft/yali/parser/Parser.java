@@ -1,433 +1,505 @@
-/*
- * Copyright 2021 rma.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package ch.uprisesoft.yali.parser;
-
-import ch.uprisesoft.yali.ast.node.Call;
-import ch.uprisesoft.yali.ast.node.Procedure;
-import ch.uprisesoft.yali.ast.node.List;
-import ch.uprisesoft.yali.ast.node.Node;
-import ch.uprisesoft.yali.ast.node.word.BooleanWord;
-import ch.uprisesoft.yali.ast.node.word.FloatWord;
-import ch.uprisesoft.yali.ast.node.word.NilWord;
-import ch.uprisesoft.yali.ast.node.word.QuotedWord;
-import ch.uprisesoft.yali.ast.node.word.SymbolWord;
-import ch.uprisesoft.yali.lexer.Token;
-import ch.uprisesoft.yali.lexer.TokenType;
-import ch.uprisesoft.yali.ast.node.NodeType;
-import ch.uprisesoft.yali.ast.node.word.IntegerWord;
-import ch.uprisesoft.yali.exception.TokenTypeException;
-import ch.uprisesoft.yali.lexer.Lexer;
-import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
-import java.util.ArrayList;
-
-public class Parser {
-
-
-    private java.util.List<Token> tokens = new ArrayList<>();
-    private final Interpreter it;
-    private String source;
-
-    private int current = 0;
-    private boolean inParens = false;
-
-    public Parser(Interpreter functions) {
-        this.it = functions;
-    }
-
-    public Interpreter getFunctions() {
-        return it;
-    }
-    
-    public Node read(String source) {
-        this.source = source;
-        this.tokens = new Lexer().scan(source);
-
-        return read();
-    }
-    
-    public Node read(ch.uprisesoft.yali.ast.node.List list) {
-        tokens.clear();
-        
-        StringBuilder newSource = new StringBuilder();
-        
-        for (Token t: list.token().subList(1, list.token().size()-1)) {
-            newSource.append(t.getLexeme()).append(" ");
-        }
-        
-        return read(newSource.toString().trim());
-    }
-
-    
-    
-    private Node read() {
-        parseFunctionHeaders();
-        parseFunctionAliases();
-
-        Node program = new List();
-        while (!isAtEnd()) {
-            Node expression = parseExpression();
-            if (!expression.type().equals(NodeType.NONE) && !expression.type().equals(NodeType.PROCEDURE)) {
-                program.addChild(expression);
-            }
-        }
-        return program;
-    }
-
-    private void parseFunctionHeaders() {
-        while (!isAtEnd()) {
-            if (match(TokenType.TO)) {
-
-                Token defStartToken = previous();
-                Procedure fun = new Procedure(consume(TokenType.SYMBOL).getLexeme());
-                java.util.List<String> args = new java.util.ArrayList<>();
-                while (!check(TokenType.NEWLINE)) {
-                    args.add(consume(TokenType.REFERENCE).getLexeme().substring(1));
-                }
-                fun.setArgs(args);
-                advance();
-
-                fun.setPosInSource(defStartToken.getLine(), defStartToken.getPos());
-                it.env().define(fun);
-            }
-            advance();
-        }
-        current = 0;
-    }
-
-    private void parseFunctionAliases() {
-        while (!isAtEnd()) {
-            if (match(TokenType.SYMBOL) && previous().getLexeme().toLowerCase().equals("alias")) {
-
-                String original = consume(TokenType.QUOTE).getLexeme().substring(1);
-                String alias = consume(TokenType.QUOTE).getLexeme().substring(1);
-
-                it.env().alias(original, alias);
-
-                advance();
-            }
-            advance();
-        }
-        current = 0;
-    }
-
-    private Node parseExpression() {
-        Node node = expression();
-        return node;
-    }
-
-    private Node expression() {
-        if (match(TokenType.NEWLINE)) {
-            return Node.none();
-        }
-        return funBody();
-    }
-
-    private Node funBody() {
-        Node node = Node.none();
-
-        if (match(TokenType.TO)) {
-
-            Procedure fun = it.env().procedure(consume(TokenType.SYMBOL).getLexeme());
-
-            while (!check(TokenType.NEWLINE)) {
-                advance();
-            }
-            advance();
-
-            while (!check(TokenType.END)) {
-                fun.addChild(expression());
-
-                // Check for unclosed function body
-                if (peek().type().equals(TokenType.EOF)) {
-                    throw new TokenTypeException(TokenType.END, TokenType.EOF);
-                }
-
-                advance();
-            }
-            consume(TokenType.END);
-
-            fun.setSource(previous().getLexeme());
-
-            match(TokenType.NEWLINE);
-
-            it.env().define(fun);
-
-            node = fun;
-        } else {
-            node = funCall();
-        }
-
-        return node;
-    }
-
-    private Node funCall() {
-        Node node = Node.none();
-
-        if (current().type().equals(TokenType.SYMBOL) && it.env().defined(current().getLexeme().toLowerCase())) {
-
-            String name = current().getLexeme();
-            int arity = it.env().procedure(name).getArity();
-            advance();
-
-            node = new Call(name);
-            node.setPosInSource(current().getLine(), current().getPos());
-
-            if (inParens) {
-                while (!check(TokenType.RIGHT_PAREN)) {
-                    node.addChild(expression());
-                }
-            } else {
-                for (int i = 0; i < arity; i++) {
-                    node.addChild(expression());
-                }
-            }
-
-        } else {
-            node = equality();
-        }
-
-        return node;
-    }
-
-    private Node equality() {
-        Node node = comparison();
-
-        if (match(TokenType.EQUAL, TokenType.EQUAL_EQUAL, TokenType.BANG_EQUAL)) {
-
-            TokenType operator = previous().type();
-            Node left = node;
-            Node right = comparison();
-
-            if (operator.equals(TokenType.EQUAL) || operator.equals(TokenType.EQUAL_EQUAL)) {
-                node = new Call("equal?");
-            }
-
-            if (operator.equals(TokenType.BANG_EQUAL)) {
-                node = new Call("notequal?");
-            }
-
-            node.addChild(left);
-            node.addChild(right);
-            node.setPosInSource(previous().getLine(), previous().getPos());
-        }
-
-        return node;
-    }
-
-    private Node comparison() {
-        Node node = term();
-
-        while (match(TokenType.LESS, TokenType.GREATER, TokenType.LESS_EQUAL, TokenType.GREATER_EQUAL)) {
-
-            TokenType operator = previous().type();
-            Node left = node;
-            Node right = term();
-
-            if (operator.equals(TokenType.LESS)) {
-                node = new Call("less?");
-            }
-
-            if (operator.equals(TokenType.GREATER)) {
-                node = new Call("greater?");
-            }
-
-            if (operator.equals(TokenType.LESS_EQUAL)) {
-                node = new Call("lessequal?");
-            }
-
-            if (operator.equals(TokenType.GREATER_EQUAL)) {
-                node = new Call("greaterequal?");
-            }
-
-            node.addChild(left);
-            node.addChild(right);
-            node.setPosInSource(previous().getLine(), previous().getPos());
-        }
-
-        return node;
-    }
-
-    private Node term() {
-        Node node = factor();
-
-        while (match(TokenType.PLUS, TokenType.MINUS)) {
-
-            TokenType operator = previous().type();
-            Node left = node;
-            Node right = factor();
-
-            if (operator.equals(TokenType.PLUS)) {
-                node = new Call("add");
-            }
-
-            if (operator.equals(TokenType.MINUS)) {
-                node = new Call("sub");
-            }
-
-            node.addChild(left);
-            node.addChild(right);
-            node.setPosInSource(previous().getLine(), previous().getPos());
-        }
-
-        return node;
-    }
-
-    private Node factor() {
-        Node node = word();
-
-        while (match(TokenType.STAR, TokenType.SLASH)) {
-
-            TokenType operator = previous().type();
-            Node left = node;
-            Node right = word();
-
-            if (operator.equals(TokenType.STAR)) {
-                node = new Call("mul");
-            }
-
-            if (operator.equals(TokenType.SLASH)) {
-                node = new Call("div");
-            }
-
-            node.addChild(left);
-            node.addChild(right);
-            node.setPosInSource(previous().getLine(), previous().getPos());
-        }
-
-        return node;
-    }
-
-    private Node word() {
-        Node node = Node.none();
-
-        if (match(TokenType.FALSE)) {
-            node = new BooleanWord(Boolean.FALSE);
-            node.token(previous());
-        } else if (match(TokenType.TRUE)) {
-            node = new BooleanWord(Boolean.TRUE);
-            node.token(previous());
-        } else if (match(TokenType.NIL)) {
-            node = new NilWord();
-            node.token(previous());
-        } else if (match(TokenType.NUMBER)) {
-            Token token = previous();
-
-            if (token.getLexeme().contains(".")) {
-                node = new FloatWord(Double.parseDouble(token.getLexeme()));
-            } else {
-                node = new IntegerWord(Integer.parseInt(token.getLexeme()));
-            }
-
-            node.token(token);
-        } else if (match(TokenType.SYMBOL)) {
-            node = new SymbolWord(previous().getLexeme());
-            node.token(previous());
-        } else if (match(TokenType.QUOTE)) {
-            node = new QuotedWord(previous().getLexeme().substring(1));
-            node.token(previous());
-        } else if (match(TokenType.REFERENCE)) {
-            node = new Call("thing");
-            SymbolWord symbol = new SymbolWord(previous().getLexeme().substring(1));
-            symbol.token(previous());
-            node.addChild(symbol);
-//            node = new ReferenceWord(previous().getLexeme().substring(1));
-            node.token(previous());
-        } else if (match(TokenType.LEFT_BRACKET)) {
-            node = parseList();
-        } else if (match(TokenType.LEFT_PAREN)) {
-            inParens = true;
-            node = expression();
-            node.setPosInSource(previous().getLine(), previous().getPos());
-            consume(TokenType.RIGHT_PAREN);
-            inParens = false;
-        }
-        return node;
-    }
-
-    private List parseList() {
-        int start = previous().getAbsolute();
-        
-        ch.uprisesoft.yali.ast.node.List list = new ch.uprisesoft.yali.ast.node.List();
-        list.token(previous());
-        list.setPosInSource(previous().getLine(), previous().getPos());
-
-        while (!check(TokenType.RIGHT_BRACKET) && !isAtEnd()) {
-            if (match(TokenType.LEFT_BRACKET)) {
-                List nestedList = parseList();
-                list.addChild(nestedList);
-                list.token(nestedList.token());
-                continue;
-            }
-            list.addChild(new SymbolWord(current().getLexeme()));
-            list.token(current());
-            advance();
-        }
-        
-        int end = current().getAbsolute()+1;
-        list.source(source.substring(start, end));
-        list.token(current());
-        consume(TokenType.RIGHT_BRACKET);
-        
-        return list;
-    }
-
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean check(TokenType type) {
-        if (isAtEnd()) {
-            return false;
-        }
-        return peek().type() == type;
-    }
-
-    private Token advance() {
-        if (!isAtEnd()) {
-            current++;
-        }
-        return previous();
-    }
-
-    private boolean isAtEnd() {
-        return peek().type() == TokenType.EOF;
-    }
-
-    private Token peek() {
-        return tokens.get(current);
-    }
-
-    private Token previous() {
-        return tokens.get(current - 1);
-    }
-
-    private Token current() {
-        return tokens.get(current);
-    }
-
-    private Token consume(TokenType type) throws TokenTypeException {
-        if (check(type)) {
-            return advance();
-        }
-        throw new TokenTypeException(type, peek().type());
-    }
-}
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.parser;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.ast.node.List;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.SourceMap;
+import ch.uprisesoft.yali.ast.node.word.BooleanWord;
+import ch.uprisesoft.yali.ast.node.word.FloatWord;
+import ch.uprisesoft.yali.ast.node.word.NilWord;
+import ch.uprisesoft.yali.ast.node.word.QuotedWord;
+import ch.uprisesoft.yali.ast.node.word.SymbolWord;
+import ch.uprisesoft.yali.lexer.TokenType;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.word.IntegerWord;
+import ch.uprisesoft.yali.exception.TokenTypeException;
+import ch.uprisesoft.yali.lexer.Lexer;
+import ch.uprisesoft.yali.lexer.Symbol;
+import ch.uprisesoft.yali.lexer.Tokens;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.math.BigInteger;
+
+public class Parser {
+
+    private static final Symbol ALIAS = Symbol.of("alias");
+
+    private Tokens tokens;
+    private SourceMap map;
+    private final Interpreter it;
+
+    private int current = 0;
+    private boolean inParens = false;
+
+    // Lists in a list built at runtime, by the token of their opening
+    // bracket. They are taken as they are instead of being parsed.
+    private List[] members;
+
+    public Parser(Interpreter functions) {
+        this.it = functions;
+    }
+
+    public Interpreter getFunctions() {
+        return it;
+    }
+    
+    public Node read(String source) {
+        return read(source, 1);
+    }
+
+    public Node read(String source, int line) {
+        this.tokens = new Lexer().tokenize(source, 0, source.length(), line, 0);
+
+        return read();
+    }
+    
+    public Node read(ch.uprisesoft.yali.ast.node.List list) {
+        // Lists built at runtime were never scanned, their words are
+        if (list.tokens() == null || list.firstToken() < 0) {
+            java.util.List<String> words = new java.util.ArrayList<>();
+            for (Node member : list.getChildren()) {
+                words.add(member.type() == NodeType.LIST ? null : member.toString());
+            }
+            this.tokens = new Lexer().tokenize(words, 1);
+
+            this.members = new List[tokens.size()];
+            int token = 0;
+            for (Node member : list.getChildren()) {
+                if (member.type() == NodeType.LIST) {
+                    while (tokens.type(token) != TokenType.LEFT_BRACKET) {
+                        token++;
+                    }
+                    members[token++] = member.toList();
+                }
+            }
+
+            return read();
+        }
+
+        // The content of the list is scanned again as code, in place
+        Tokens listTokens = list.tokens();
+        int first = list.firstToken();
+        this.tokens = new Lexer().tokenize(
+                listTokens.source(),
+                listTokens.end(first),
+                listTokens.start(list.lastToken()),
+                listTokens.line(first),
+                listTokens.start(first) - listTokens.pos(first));
+
+        return read();
+    }
+
+    
+    
+    private Node read() {
+        this.map = new SourceMap(tokens);
+        parseFunctionHeaders();
+        parseFunctionAliases();
+
+        List program = new List();
+        program.token(map, -1, -1);
+        while (!isAtEnd()) {
+            Node expression = parseExpression();
+            if (!expression.type().equals(NodeType.NONE) && !expression.type().equals(NodeType.PROCEDURE)) {
+                program.addChild(expression);
+            }
+        }
+        return program;
+    }
+
+    private void parseFunctionHeaders() {
+        while (!isAtEnd()) {
+            if (match(TokenType.TO)) {
+
+                int defStart = previous();
+                Procedure fun = new Procedure(tokens.lexeme(consume(TokenType.SYMBOL)));
+                java.util.List<String> args = new java.util.ArrayList<>();
+                while (!check(TokenType.NEWLINE)) {
+                    args.add(unprefixed(consume(TokenType.REFERENCE)));
+                }
+                fun.setArgs(args);
+                advance();
+
+                fun.setPosInSource(tokens.line(defStart), tokens.pos(defStart));
+                fun.token(map, -1, -1);
+                it.env().define(fun);
+            }
+            advance();
+        }
+        current = 0;
+    }
+
+    private void parseFunctionAliases() {
+        while (!isAtEnd()) {
+            if (match(TokenType.SYMBOL) && tokens.symbol(previous()) == ALIAS) {
+
+                String original = unprefixed(consume(TokenType.QUOTE));
+                String alias = unprefixed(consume(TokenType.QUOTE));
+
+                it.env().alias(original, alias);
+
+                advance();
+            }
+            advance();
+        }
+        current = 0;
+    }
+
+    private Node parseExpression() {
+        Node node = expression();
+        return node;
+    }
+
+    private Node expression() {
+        if (match(TokenType.NEWLINE)) {
+            return Node.none();
+        }
+        return funBody();
+    }
+
+    private Node funBody() {
+        Node node = Node.none();
+
+        if (match(TokenType.TO)) {
+
+            Procedure fun = it.env().procedure(tokens.symbol(consume(TokenType.SYMBOL)));
+
+            while (!check(TokenType.NEWLINE)) {
+                advance();
+            }
+            advance();
+
+            while (!check(TokenType.END)) {
+                fun.addChild(expression());
+
+                // Check for unclosed function body
+                if (tokens.type(peek()) == TokenType.EOF) {
+                    throw new TokenTypeException(TokenType.END, TokenType.EOF);
+                }
+
+                advance();
+            }
+            consume(TokenType.END);
+
+            fun.setSource(tokens.span(previous(), previous()));
+            fun.resolve();
+
+            match(TokenType.NEWLINE);
+
+            it.env().define(fun);
+
+            node = fun;
+        } else {
+            node = funCall();
+        }
+
+        return node;
+    }
+
+    private Node funCall() {
+        Node node = Node.none();
+
+        if (tokens.type(current()) == TokenType.SYMBOL && (it.env().defined(tokens.symbol(current())) || it.lookahead(tokens.symbol(current())))) {
+
+            Symbol name = tokens.symbol(current());
+            int arity = it.env().procedure(name).getArity();
+            advance();
+
+            node = call(name);
+            node.setPosInSource(tokens.line(current()), tokens.pos(current()));
+
+            if (inParens) {
+                while (!check(TokenType.RIGHT_PAREN)) {
+                    node.addChild(expression());
+                }
+            } else {
+                for (int i = 0; i < arity; i++) {
+                    node.addChild(expression());
+                }
+            }
+
+        } else {
+            node = equality();
+        }
+
+        return node;
+    }
+
+    private Node equality() {
+        Node node = comparison();
+
+        if (match(TokenType.EQUAL, TokenType.EQUAL_EQUAL, TokenType.BANG_EQUAL)) {
+
+            TokenType operator = tokens.type(previous());
+            Node left = node;
+            Node right = comparison();
+
+            if (operator.equals(TokenType.EQUAL) || operator.equals(TokenType.EQUAL_EQUAL)) {
+                node = call("equal?");
+            }
+
+            if (operator.equals(TokenType.BANG_EQUAL)) {
+                node = call("notequal?");
+            }
+
+            node.addChild(left);
+            node.addChild(right);
+            node.setPosInSource(tokens.line(previous()), tokens.pos(previous()));
+        }
+
+        return node;
+    }
+
+    private Node comparison() {
+        Node node = term();
+
+        while (match(TokenType.LESS, TokenType.GREATER, TokenType.LESS_EQUAL, TokenType.GREATER_EQUAL)) {
+
+            TokenType operator = tokens.type(previous());
+            Node left = node;
+            Node right = term();
+
+            if (operator.equals(TokenType.LESS)) {
+                node = call("less?");
+            }
+
+            if (operator.equals(TokenType.GREATER)) {
+                node = call("greater?");
+            }
+
+            if (operator.equals(TokenType.LESS_EQUAL)) {
+                node = call("lessequal?");
+            }
+
+            if (operator.equals(TokenType.GREATER_EQUAL)) {
+                node = call("greaterequal?");
+            }
+
+            node.addChild(left);
+            node.addChild(right);
+            node.setPosInSource(tokens.line(previous()), tokens.pos(previous()));
+        }
+
+        return node;
+    }
+
+    private Node term() {
+        Node node = factor();
+
+        while (match(TokenType.PLUS, TokenType.MINUS)) {
+
+            TokenType operator = tokens.type(previous());
+            Node left = node;
+            Node right = factor();
+
+            if (operator.equals(TokenType.PLUS)) {
+                node = call("add");
+            }
+
+            if (operator.equals(TokenType.MINUS)) {
+                node = call("sub");
+            }
+
+            node.addChild(left);
+            node.addChild(right);
+            node.setPosInSource(tokens.line(previous()), tokens.pos(previous()));
+        }
+
+        return node;
+    }
+
+    private Node factor() {
+        Node node = word();
+
+        while (match(TokenType.STAR, TokenType.SLASH)) {
+
+            TokenType operator = tokens.type(previous());
+            Node left = node;
+            Node right = word();
+
+            if (operator.equals(TokenType.STAR)) {
+                node = call("mul");
+            }
+
+            if (operator.equals(TokenType.SLASH)) {
+                node = call("div");
+            }
+
+            node.addChild(left);
+            node.addChild(right);
+            node.setPosInSource(tokens.line(previous()), tokens.pos(previous()));
+        }
+
+        return node;
+    }
+
+    private Node word() {
+        Node node = Node.none();
+
+        if (match(TokenType.FALSE)) {
+            node = BooleanWord.FALSE;
+        } else if (match(TokenType.TRUE)) {
+            node = BooleanWord.TRUE;
+        } else if (match(TokenType.NIL)) {
+            node = NilWord.NIL;
+        } else if (match(TokenType.NUMBER)) {
+            int token = previous();
+            String lexeme = tokens.lexeme(token);
+
+            // Small integers are shared and have no position of their own
+            if (lexeme.indexOf('.') >= 0) {
+                node = new FloatWord(Double.parseDouble(lexeme));
+                map.put(node, token);
+            } else if (lexeme.length() < 19) {
+                long value = Long.parseLong(lexeme);
+                node = IntegerWord.valueOf(value);
+                if (!IntegerWord.isShared(value)) {
+                    map.put(node, token);
+                }
+            } else {
+                // Too many digits for a long, unless they are leading zeros
+                node = Node.integer(new BigInteger(lexeme));
+                if (node.type() == NodeType.BIGINTEGER) {
+                    map.put(node, token);
+                }
+            }
+        } else if (match(TokenType.SYMBOL)) {
+            node = new SymbolWord(tokens.lexeme(previous()));
+            map.put(node, previous());
+        } else if (match(TokenType.QUOTE)) {
+            node = new QuotedWord(unprefixed(previous()));
+            map.put(node, previous());
+        } else if (match(TokenType.REFERENCE)) {
+            Call thing = call("thing");
+            SymbolWord symbol = new SymbolWord(unprefixed(previous()));
+            map.put(symbol, previous());
+            thing.addChild(symbol);
+//            node = new ReferenceWord(previous().getLexeme().substring(1));
+            thing.token(map, previous(), previous());
+            node = thing;
+        } else if (match(TokenType.QUESTION)) {
+            // A slot of a template, see Template
+            Call slot = call(tokens.lexeme(previous()));
+            slot.token(map, previous(), previous());
+            node = slot;
+        } else if (match(TokenType.LEFT_BRACKET)) {
+            node = parseList();
+        } else if (match(TokenType.LEFT_PAREN)) {
+            inParens = true;
+            node = expression();
+            node.setPosInSource(tokens.line(previous()), tokens.pos(previous()));
+            consume(TokenType.RIGHT_PAREN);
+            inParens = false;
+        }
+        return node;
+    }
+
+    private Call call(String name) {
+        return call(Symbol.of(name));
+    }
+
+    private Call call(Symbol name) {
+        // Calls keep the source map of their arguments alive
+        Call call = new Call(name);
+        call.token(map, -1, -1);
+        return call;
+    }
+
+    private List parseList() {
+        int first = previous();
+
+        if (members != null && members[first] != null) {
+            consume(TokenType.RIGHT_BRACKET);
+            return members[first];
+        }
+
+        List list = new List();
+        list.setPosInSource(tokens.line(first), tokens.pos(first));
+
+        while (!check(TokenType.RIGHT_BRACKET) && !isAtEnd()) {
+            if (match(TokenType.LEFT_BRACKET)) {
+                list.addChild(parseList());
+                continue;
+            }
+            list.addChild(SymbolWord.of(tokens.lexeme(current())));
+            advance();
+        }
+
+        // Nested lists share the token table and the source of this list
+        list.token(map, first, current());
+        list.source(tokens.span(first, current()));
+        consume(TokenType.RIGHT_BRACKET);
+
+        return list;
+    }
+
+    private boolean match(TokenType... types) {
+        for (TokenType type : types) {
+            if (check(type)) {
+                advance();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean check(TokenType type) {
+        if (isAtEnd()) {
+            return false;
+        }
+        return tokens.type(current) == type;
+    }
+
+    private int advance() {
+        if (!isAtEnd()) {
+            current++;
+        }
+        return previous();
+    }
+
+    private boolean isAtEnd() {
+        return tokens.type(current) == TokenType.EOF;
+    }
+
+    private int peek() {
+        return current;
+    }
+
+    private int previous() {
+        return current - 1;
+    }
+
+    private int current() {
+        return current;
+    }
+
+    private int consume(TokenType type) throws TokenTypeException {
+        if (check(type)) {
+            return advance();
+        }
+        throw new TokenTypeException(type, tokens.type(current));
+    }
+
+    /**
+     * @param i Index of a quote or reference token
+     * @return The lexeme without the leading quote or colon
+     */
+    private String unprefixed(int i) {
+        return tokens.source().substring(tokens.start(i) + 1, tokens.end(i));
+    }
+}
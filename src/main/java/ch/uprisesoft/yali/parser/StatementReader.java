@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Splits a source into top-level statements without scanning it as a whole.
+ * A chunk ends at the first line break outside of lists, parens and
+ * procedure definitions, so it holds one line of statements or one complete
+ * TO ... END definition. Only the chunk being read is kept in memory.
+ *
+ * @author rma
+ */
+public class StatementReader {
+
+    private final Reader reader;
+    private final StringBuilder chunk = new StringBuilder();
+    private final StringBuilder word = new StringBuilder();
+
+    private int line = 1;
+    private int chunkLine = 1;
+    private boolean definition = false;
+    private boolean done = false;
+
+    public StatementReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Reads the next chunk of statements.
+     *
+     * @return The source of the chunk, or null at the end of the source
+     */
+    public String next() {
+        chunk.setLength(0);
+        word.setLength(0);
+        chunkLine = line;
+        definition = false;
+
+        int brackets = 0;
+        int parens = 0;
+        boolean inProcedure = false;
+        boolean comment = false;
+        char last = 0;
+
+        while (!done) {
+            int read = read();
+            if (read < 0) {
+                done = true;
+                break;
+            }
+
+            char c = (char) read;
+            chunk.append(c);
+
+            if (comment) {
+                if (c == '\n') {
+                    comment = false;
+                } else {
+                    continue;
+                }
+            }
+
+            if (!isDelimiter(c)) {
+                word.append(c);
+                last = c;
+                continue;
+            }
+
+            if (brackets == 0 && word.length() > 0) {
+                String lexeme = word.toString();
+                if (lexeme.equalsIgnoreCase("to")) {
+                    inProcedure = true;
+                    definition = true;
+                } else if (lexeme.equalsIgnoreCase("end")) {
+                    inProcedure = false;
+                }
+            }
+            word.setLength(0);
+
+            switch (c) {
+                case '[':
+                    brackets++;
+                    break;
+                case ']':
+                    brackets--;
+                    break;
+                case '(':
+                    parens++;
+                    break;
+                case ')':
+                    parens--;
+                    break;
+                case ';':
+                    // A double semicolon starts a comment, but not in lists
+                    comment = brackets == 0 && last == ';';
+                    break;
+                case '\n':
+                    line++;
+                    if (brackets <= 0 && parens <= 0 && !inProcedure) {
+                        if (isBlank()) {
+                            chunk.setLength(0);
+                            chunkLine = line;
+                            break;
+                        }
+                        return chunk.toString();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            last = c;
+        }
+
+        return isBlank() ? null : chunk.toString();
+    }
+
+    /**
+     * @return The line the last chunk starts on
+     */
+    public int line() {
+        return chunkLine;
+    }
+
+    /**
+     * @return true if the last chunk contains a procedure definition
+     */
+    public boolean definition() {
+        return definition;
+    }
+
+    private int read() {
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isBlank() {
+        for (int i = 0; i < chunk.length(); i++) {
+            if (!Character.isWhitespace(chunk.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isDelimiter(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == ';'
+                || c == '[' || c == ']' || c == '(' || c == ')' || c == '{' || c == '}';
+    }
+}
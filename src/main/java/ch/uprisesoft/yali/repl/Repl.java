@@ -127,7 +127,7 @@ public class Repl implements InputGenerator, OutputObserver {
                 output.println(
                         String.format(
                                 "; " + messages.getString("redundant_argument"),
-                                nte.getNode().token().get(0).getLexeme(),
+                                lexeme(nte.getNode()),
                                 nte.getReceived()
                         )
                 );
@@ -204,4 +204,11 @@ public class Repl implements InputGenerator, OutputObserver {
         this.output.print(output);
     }
 
+    private static String lexeme(Node node) {
+        // Shared constants were not recorded with a position
+        if (node.token().isEmpty()) {
+            return node.toString();
+        }
+        return node.token().get(0).getLexeme();
+    }
 }
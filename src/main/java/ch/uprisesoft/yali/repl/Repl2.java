@@ -143,7 +143,7 @@ public class Repl2 implements InputGenerator, OutputObserver {
                 output.println(
                         String.format(
                                 "; " + messages.getString("not_expected"),
-                                nte.getNode().token().get(0).getLexeme(),
+                                lexeme(nte.getNode()),
                                 nte.getExpected(),
                                 nte.getReceived()
                         )
@@ -244,4 +244,11 @@ public class Repl2 implements InputGenerator, OutputObserver {
         this.output.println(output);
     }
 
+    private static String lexeme(Node node) {
+        // Shared constants were not recorded with a position
+        if (node.token().isEmpty()) {
+            return node.toString();
+        }
+        return node.token().get(0).getLexeme();
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import java.util.List;
+
+/**
+ * Compiled form of a sequence of statements. Instructions are stored in an
+ * int array, each opcode followed by its operands. Literals and call sites
+ * are referenced by their index in the constant pool.
+ *
+ * <pre>
+ * PUSH k      push constant k
+ * LOAD s k    push slot s of the current scope, or call constant k if the
+ *             variable is not in the slot
+ * CALL k      call constant k with its arguments from the operand stack
+ * RESULT      pop the result of a statement
+ * RETURN      end of the statements
+ * </pre>
+ *
+ * @author rma
+ */
+public final class Code {
+
+    static final int PUSH = 0;
+    static final int LOAD = 1;
+    static final int CALL = 2;
+    static final int RESULT = 3;
+    static final int RETURN = 4;
+
+    final int[] ops;
+    final Node[] constants;
+    // Statements the code was compiled from
+    final List<Node> statements;
+    // Inline caches of the calls, by constant index
+    private OperatorSite[] sites;
+
+    Code(int[] ops, Node[] constants, List<Node> statements) {
+        this.ops = ops;
+        this.constants = constants;
+        this.statements = statements;
+    }
+
+    OperatorSite site(int constant) {
+        return sites == null ? null : sites[constant];
+    }
+
+    void site(int constant, OperatorSite site) {
+        if (sites == null) {
+            sites = new OperatorSite[constants.length];
+        }
+        sites[constant] = site;
+    }
+
+    public int size() {
+        return ops.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        while (pc < ops.length) {
+            sb.append(pc).append(": ");
+            switch (ops[pc++]) {
+                case PUSH:
+                    sb.append("PUSH ").append(constants[ops[pc++]]);
+                    break;
+                case LOAD:
+                    sb.append("LOAD ").append(ops[pc++]).append(" ").append(constants[ops[pc++]]);
+                    break;
+                case CALL:
+                    sb.append("CALL ").append(constants[ops[pc++]]);
+                    break;
+                case RESULT:
+                    sb.append("RESULT");
+                    break;
+                default:
+                    sb.append("RETURN");
+                    break;
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.scope.Scope;
+
+/**
+ * Body of a hot procedure compiled to a tree of closures, see
+ * HotCompiler. The closures call back into the interpreter that compiled
+ * them, so it is only valid for that interpreter, and only as long as the
+ * procedure definitions have the stamp they had when it was compiled.
+ *
+ * @author rma
+ */
+public final class Compiled {
+
+    /**
+     * Compiled expression, evaluated in the scope of the procedure.
+     */
+    interface Expr {
+
+        Node eval(Scope scope);
+    }
+
+    final Interpreter owner;
+    final long stamp;
+    // Null if the procedure can not be compiled
+    final Expr body;
+
+    Compiled(Interpreter owner, long stamp, Expr body) {
+        this.owner = owner;
+        this.stamp = stamp;
+        this.body = body;
+    }
+
+    public boolean compilable() {
+        return body != null;
+    }
+}
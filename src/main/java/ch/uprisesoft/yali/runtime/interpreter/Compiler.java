@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles parsed statements to Code. Arguments are evaluated in order onto
+ * the operand stack, followed by the call consuming them.
+ *
+ * @author rma
+ */
+final class Compiler {
+
+    private int[] ops = new int[16];
+    private int size = 0;
+    private final List<Node> constants = new ArrayList<>();
+    private final List<Node> statements;
+
+    private Compiler(List<Node> statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * Compiles statements. The result of the code is the value of the last
+     * statement.
+     *
+     * @param statements procedure body or block
+     * @return the compiled statements
+     */
+    static Code statements(List<Node> statements) {
+        Compiler compiler = new Compiler(statements);
+        for (Node statement : statements) {
+            compiler.statement(statement);
+        }
+        return compiler.finish();
+    }
+
+    /**
+     * Compiles a single call. Used for calls scheduled on their own, like
+     * program lines.
+     *
+     * @param call the call
+     * @return the compiled call
+     */
+    static Code call(Call call) {
+        Compiler compiler = new Compiler(Collections.singletonList(call));
+        compiler.statement(call);
+        return compiler.finish();
+    }
+
+    private void statement(Node node) {
+        if (node.type().equals(NodeType.PROCCALL)) {
+            expression(node);
+            emit(Code.RESULT);
+        } else if (!node.type().equals(NodeType.NONE)) {
+            emit(Code.PUSH, constant(node));
+            emit(Code.RESULT);
+        }
+    }
+
+    private void expression(Node node) {
+        if (!node.type().equals(NodeType.PROCCALL)) {
+            emit(Code.PUSH, constant(node));
+            return;
+        }
+
+        Call call = node.toProcedureCall();
+        if (call.slot() >= 0) {
+            emit(Code.LOAD, call.slot());
+            emit(constant(call));
+            return;
+        }
+
+        for (Node arg : call.getChildren()) {
+            expression(arg);
+        }
+        emit(Code.CALL, constant(call));
+    }
+
+    private Code finish() {
+        emit(Code.RETURN);
+        return new Code(Arrays.copyOf(ops, size), constants.toArray(new Node[constants.size()]), statements);
+    }
+
+    private int constant(Node node) {
+        constants.add(node);
+        return constants.size() - 1;
+    }
+
+    private void emit(int op) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, size * 2);
+        }
+        ops[size++] = op;
+    }
+
+    private void emit(int op, int operand) {
+        emit(op);
+        emit(operand);
+    }
+}
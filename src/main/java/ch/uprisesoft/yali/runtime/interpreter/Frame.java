@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.scope.Scope;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Activation of a call. Holds everything that changes while a call is
+ * evaluated, so the call itself can be shared between activations. Frames
+ * are pooled by the interpreter and reused once their call has finished.
+ *
+ * A frame either runs code, the body of a procedure or a scheduled call, or
+ * applies a native procedure to its arguments.
+ *
+ * @author rma
+ */
+public class Frame {
+
+    private Call call;
+    private Procedure definition;
+    private final List<Node> args = new ArrayList<>();
+    private Node result;
+    private boolean evaluated;
+
+    // Scope of the procedure whose code contains the call, and the scope of
+    // the activation itself if the call is a user defined procedure
+    private Scope home;
+    private Scope scope;
+
+    // Code run by the frame, and the operand stack height at activation
+    private Code code;
+    private int pc;
+    private int stackBase;
+
+    // State of a control procedure applied several times
+    private boolean started;
+    private int repeats;
+    private List<Node> collected;
+
+    void activate(Call call, Procedure definition, Scope home, Scope scope, Code code, int stackBase) {
+        this.call = call;
+        this.definition = definition;
+        this.home = home;
+        this.scope = scope;
+        this.code = code;
+        this.pc = 0;
+        this.stackBase = stackBase;
+        this.args.clear();
+        this.result = null;
+        this.evaluated = false;
+        this.started = false;
+        this.repeats = 0;
+        this.collected = null;
+    }
+
+    void release() {
+        this.call = null;
+        this.definition = null;
+        this.args.clear();
+        this.result = null;
+        this.home = null;
+        this.scope = null;
+        this.code = null;
+        this.collected = null;
+    }
+
+    public Call call() {
+        return call;
+    }
+
+    public Procedure definition() {
+        return definition;
+    }
+
+    public void arg(Node arg) {
+        args.add(arg);
+    }
+
+    public List<Node> args() {
+        return args;
+    }
+
+    /**
+     * The result of the call, nil until a statement or the native procedure
+     * has produced one.
+     *
+     * @return the result
+     */
+    public Node result() {
+        return result == null ? Node.nil() : result;
+    }
+
+    public void result(Node result) {
+        this.result = result;
+    }
+
+    public boolean evaluated() {
+        return evaluated;
+    }
+
+    public void evaluated(boolean evaluated) {
+        this.evaluated = evaluated;
+    }
+
+    public Scope home() {
+        return home;
+    }
+
+    public Scope scope() {
+        return scope;
+    }
+
+    Code code() {
+        return code;
+    }
+
+    int pc() {
+        return pc;
+    }
+
+    void pc(int pc) {
+        this.pc = pc;
+    }
+
+    int stackBase() {
+        return stackBase;
+    }
+
+    /**
+     * Home scope of calls made by this frame.
+     *
+     * @return the own scope in the body of a procedure, else the home scope
+     */
+    Scope childHome() {
+        return scope != null ? scope : home;
+    }
+
+    /**
+     * Checks if a control procedure has already scheduled its block.
+     *
+     * @return true if the procedure is applied again
+     */
+    public boolean started() {
+        return started;
+    }
+
+    public void started(boolean started) {
+        this.started = started;
+    }
+
+    public int repeats() {
+        return repeats;
+    }
+
+    public void repeats(int repeats) {
+        this.repeats = repeats;
+    }
+
+    /**
+     * Values a control procedure collects while it is applied again and
+     * again, like the results of map.
+     *
+     * @return the values, null until the procedure sets them
+     */
+    public List<Node> collected() {
+        return collected;
+    }
+
+    public void collected(List<Node> collected) {
+        this.collected = collected;
+    }
+}
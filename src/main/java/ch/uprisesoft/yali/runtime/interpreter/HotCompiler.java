@@ -0,0 +1,295 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.List;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.lexer.Symbol;
+import ch.uprisesoft.yali.runtime.procedures.NativeCall;
+import ch.uprisesoft.yali.runtime.interpreter.Compiled.Expr;
+import ch.uprisesoft.yali.scope.Scope;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compiles the body of a hot procedure to a tree of closures, which run on
+ * the Java stack and can be optimized by the JVM. Native procedures are
+ * called directly, operators through an inline cache. if, ifelse and
+ * repeat with literal blocks are compiled inline, map and the other
+ * template procedures are interpreted. Procedures calling other control
+ * procedures, like pause or run, are not compiled.
+ *
+ * Every call checks the definitions stamp. Once a procedure has been
+ * redefined, calls are dispatched by name again and the interpreter
+ * compiles the procedure anew on its next call.
+ *
+ * @author rma
+ */
+final class HotCompiler {
+
+    private static final Symbol TO = Symbol.of("to");
+
+    private static final NotCompilable NOT_COMPILABLE = new NotCompilable();
+
+    private final Interpreter it;
+    private final Procedure procedure;
+    private final long stamp;
+
+    private HotCompiler(Interpreter it, Procedure procedure) {
+        this.it = it;
+        this.procedure = procedure;
+        this.stamp = it.env().stamp();
+    }
+
+    /**
+     * Compiles the body of a procedure.
+     *
+     * @param it interpreter the code runs in
+     * @param procedure the procedure
+     * @return the compiled body, not compilable if the procedure needs the
+     * interpreter
+     */
+    static Compiled compile(Interpreter it, Procedure procedure) {
+        HotCompiler compiler = new HotCompiler(it, procedure);
+        try {
+            return new Compiled(it, compiler.stamp, compiler.statements(procedure.getChildren()));
+        } catch (NotCompilable e) {
+            return new Compiled(it, compiler.stamp, null);
+        }
+    }
+
+    private boolean stale() {
+        return it.env().stamp() != stamp;
+    }
+
+    private Expr statements(java.util.List<Node> nodes) {
+        java.util.List<Expr> compiled = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node.type().equals(NodeType.PROCCALL)) {
+                compiled.add(expression(node));
+            } else if (!node.type().equals(NodeType.NONE)) {
+                compiled.add(scope -> node);
+            }
+        }
+
+        Expr[] statements = compiled.toArray(new Expr[compiled.size()]);
+        return scope -> {
+            Node result = null;
+            for (Expr statement : statements) {
+                result = statement.eval(scope);
+            }
+            return result == null ? Node.nil() : result;
+        };
+    }
+
+    private Expr expression(Node node) {
+        if (!node.type().equals(NodeType.PROCCALL)) {
+            return scope -> node;
+        }
+
+        Call call = node.toProcedureCall();
+        Expr[] args = new Expr[call.getChildren().size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = expression(call.getChildren().get(i));
+        }
+
+        if (call.slot() >= 0 && call.owner() == procedure) {
+            return load(call, args);
+        }
+
+        if (!it.env().defined(call.symbol())) {
+            return scope -> it.callDynamic(call, values(args, scope), scope);
+        }
+
+        Procedure target = it.env().procedure(call);
+        if (!target.isNative()) {
+            return scope -> {
+                Node[] values = values(args, scope);
+                if (stale()) {
+                    return it.callDynamic(call, values, scope);
+                }
+                return it.callUser(call, target, values, scope);
+            };
+        }
+
+        if (target.operator() != null && args.length == 2) {
+            return operator(call, target, args);
+        }
+
+        if (!target.isControl()) {
+            NativeCall function = target.getNativeCall();
+            return scope -> {
+                Node[] values = values(args, scope);
+                if (stale()) {
+                    return it.callDynamic(call, values, scope);
+                }
+                return function.apply(it, it.env().peek(), Arrays.asList(values));
+            };
+        }
+
+        switch (target.getName()) {
+            case "if":
+                return ifexpr(call, args);
+            case "ifelse":
+                return ifelseexpr(call, args);
+            case "repeat":
+                return repeat(call, args);
+            case "map":
+            case "filter":
+            case "find":
+            case "reduce":
+            case "pmap":
+            case "pfilter":
+            case "preduce":
+                // Template procedures run in the interpreter, on top of
+                // the compiled call
+                return scope -> it.callDynamic(call, values(args, scope), scope);
+            default:
+                throw NOT_COMPILABLE;
+        }
+    }
+
+    /**
+     * An operator applied by an inline cache, without collecting the
+     * operands in an array.
+     */
+    private Expr operator(Call call, Procedure target, Expr[] args) {
+        OperatorSite site = new OperatorSite(target.operator(), stamp);
+        Expr left = args[0];
+        Expr right = args[1];
+        return scope -> {
+            Node l = left.eval(scope);
+            Node r = right.eval(scope);
+            if (stale()) {
+                return it.callDynamic(call, new Node[]{l, r}, scope);
+            }
+            return site.apply(l, r);
+        };
+    }
+
+    /**
+     * A variable resolved to a slot. If it is not in the slot, it is looked
+     * up by name like in the interpreter.
+     */
+    private Expr load(Call call, Expr[] args) {
+        int slot = call.slot();
+        return scope -> {
+            Node value = scope.slot(slot);
+            if (value != null) {
+                return value;
+            }
+            return it.callDynamic(call, values(args, scope), scope);
+        };
+    }
+
+    private Expr ifexpr(Call call, Expr[] args) {
+        Expr condition = args[0];
+        List iftrue = literalBlock(call, 1);
+        Expr block = block(iftrue);
+
+        return scope -> {
+            Node value = condition.eval(scope);
+            if (stale()) {
+                return it.callDynamic(call, new Node[]{value, iftrue}, scope);
+            }
+            if (!value.type().equals(NodeType.BOOLEAN)) {
+                throw new NodeTypeException(value, value.type(), NodeType.BOOLEAN);
+            }
+            return value.toBooleanWord().getBoolean() ? block.eval(scope) : Node.nil();
+        };
+    }
+
+    private Expr ifelseexpr(Call call, Expr[] args) {
+        Expr condition = args[0];
+        List iftrue = literalBlock(call, 1);
+        List iffalse = literalBlock(call, 2);
+        Expr trueBlock = block(iftrue);
+        Expr falseBlock = block(iffalse);
+
+        return scope -> {
+            Node value = condition.eval(scope);
+            if (stale()) {
+                return it.callDynamic(call, new Node[]{value, iftrue, iffalse}, scope);
+            }
+            if (!value.type().equals(NodeType.BOOLEAN)) {
+                throw new NodeTypeException(value, value.type(), NodeType.BOOLEAN);
+            }
+            return value.toBooleanWord().getBoolean() ? trueBlock.eval(scope) : falseBlock.eval(scope);
+        };
+    }
+
+    private Expr repeat(Call call, Expr[] args) {
+        Expr control = args[0];
+        List list = literalBlock(call, 1);
+        Expr block = block(list);
+
+        return scope -> {
+            Node value = control.eval(scope);
+            if (!value.type().equals(NodeType.INTEGER)) {
+                throw new NodeTypeException(value, value.type(), NodeType.INTEGER);
+            }
+
+            Node result = Node.nil();
+            for (int i = value.toIntegerWord().getInteger(); i > 0; i--) {
+                // Remaining iterations are interpreted once the block may
+                // be read differently
+                if (stale()) {
+                    return it.callDynamic(call, new Node[]{Node.integer(i), list}, scope);
+                }
+                result = block.eval(scope);
+            }
+            return result;
+        };
+    }
+
+    private List literalBlock(Call call, int arg) {
+        Node block = call.getChildren().get(arg);
+        if (!block.type().equals(NodeType.LIST)) {
+            throw NOT_COMPILABLE;
+        }
+        return block.toList();
+    }
+
+    private Expr block(List list) {
+        // Reading a block defining procedures would define them now instead
+        // of when the block runs
+        for (Node node : list.getChildren()) {
+            if (node.type().equals(NodeType.SYMBOL) && node.toSymbolWord().symbol() == TO) {
+                throw NOT_COMPILABLE;
+            }
+        }
+        return statements(it.readBlock(list).statements);
+    }
+
+    private static Node[] values(Expr[] args, Scope scope) {
+        Node[] values = new Node[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = args[i].eval(scope);
+        }
+        return values;
+    }
+
+    private static final class NotCompilable extends RuntimeException {
+
+        private NotCompilable() {
+            super("Not compilable", null, false, false);
+        }
+    }
+}
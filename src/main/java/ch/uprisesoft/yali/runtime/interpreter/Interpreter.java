@@ -17,62 +17,208 @@ package ch.uprisesoft.yali.runtime.interpreter;
 
 import ch.uprisesoft.yali.ast.node.Call;
 import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.lexer.Symbol;
 import ch.uprisesoft.yali.parser.Parser;
+import ch.uprisesoft.yali.parser.StatementReader;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.InputReceiver;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
-import ch.uprisesoft.yali.runtime.procedures.FunctionNotFoundException;
+import ch.uprisesoft.yali.runtime.io.OutputSubject;
+import ch.uprisesoft.yali.runtime.procedures.Operator;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Arithmetic;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Control;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Data;
 import ch.uprisesoft.yali.runtime.procedures.builtin.IO;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Logic;
+import ch.uprisesoft.yali.runtime.procedures.builtin.Lookup;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Template;
 import ch.uprisesoft.yali.scope.Environment;
 import ch.uprisesoft.yali.scope.Scope;
+import ch.uprisesoft.yali.scope.Snapshot;
+import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 /**
  *
  * @author rma
  */
-public class Interpreter implements OutputObserver {
+public class Interpreter implements OutputObserver, OutputSubject, InputReceiver {
 
-    private List<Tracer> tracers = new ArrayList<>();
+    // Stands in as definition of frames running scheduled code. Being a
+    // macro, it has no scope of its own.
+    private static final Procedure RUN = new Procedure("__run__", (scope, val) -> Node.none(), (scope, val) -> Node.none()).macro();
 
-    private Environment env = new Environment();
+    private final Tracers tracers = new Tracers();
+
+    private final Environment env;
     private boolean paused = false;
 
-    private java.util.Stack<Call> stack = new java.util.Stack<>();
-    private java.util.List<Call> program = new ArrayList<>();
+    // Where print and friends write to and readword and readlist read from,
+    // see IO
+    private final List<OutputObserver> observers = new ArrayList<>();
+    private InputGenerator generator;
+
+    // Activation frames. Frames above depth are kept for reuse.
+    private Frame[] frames = new Frame[64];
+    private int depth = 0;
+    // Bottom of the stack for the current (possibly bounded) run
+    private int base = 0;
+    // Frame of the native procedure currently applied
+    private Frame current;
 
-    // Bounded execution
-    private boolean bounded;
-    private java.util.Stack<Call> saveStack = stack;
-    private java.util.List<Call> saveProgram = program;
+    // Pending program lines
+    private Deque<Call> program = new ArrayDeque<>();
+    // Streamed program, refills the program lines when they run out
+    private SourceStream source;
 
     private Node lastResult;
 
+    // Operand stack of the running code
+    private Node[] stack = new Node[256];
+    private int sp = 0;
+
+    // Second tier. Procedures called this often are compiled, see
+    // HotCompiler. Compiled calls nest on the Java stack, deeper calls are
+    // interpreted.
+    private static final int MAX_COMPILED_DEPTH = 256;
+    private int hotThreshold = 0;
+    private int compiledDepth = 0;
+
+    // pmap and friends may run chunks on the fork-join pool
+    private boolean parallel = true;
+
     public Interpreter() {
+        env = new Environment();
         env.push(new Scope("global"));
     }
 
+    /**
+     * Creates an interpreter with the global state of a snapshot, see
+     * Environment.snapshot. The standard library is not loaded, the
+     * procedures of the snapshot are used instead.
+     *
+     * @param snapshot the global variables, procedures and property lists
+     */
+    public Interpreter(Snapshot snapshot) {
+        env = new Environment(snapshot);
+    }
+
+    /**
+     * Creates an interpreter with the global state of this one. Both share
+     * variables, procedures and property lists until either of them changes
+     * them, so a fork costs about as much as an empty interpreter. Values
+     * are not copied, lists or dictionaries changed in place change for
+     * both. The fork writes to the same observers and reads from the same
+     * generator, but has none of the running program and no tracers.
+     *
+     * @return an interpreter to run on its own, on any thread
+     */
+    public Interpreter fork() {
+        Interpreter fork = fork(null);
+        fork.observers.addAll(observers);
+        return fork;
+    }
+
+    /**
+     * Creates an interpreter with the global state of this one, like fork,
+     * that writes to an observer of its own instead of the observers of this
+     * one. Forks running at the same time then don't mix up their output.
+     *
+     * @param observer receives the output of the fork, none if null
+     * @return an interpreter to run on its own, on any thread
+     */
+    public Interpreter fork(OutputObserver observer) {
+        Interpreter fork = new Interpreter(env.snapshot());
+        if (observer != null) {
+            fork.observers.add(observer);
+        }
+        fork.generator = generator;
+        fork.hotThreshold = hotThreshold;
+        fork.parallel = parallel;
+        return fork;
+    }
+
+    /**
+     * Takes the global state, to fork from it or go back to it later.
+     *
+     * @return the global variables, procedures and property lists
+     */
+    public Snapshot snapshot() {
+        return env.snapshot();
+    }
+
+    public void restore(Snapshot snapshot) {
+        env.restore(snapshot);
+    }
+
     public void addTracer(Tracer tracer) {
         tracers.add(tracer);
         env.addTracer(tracer);
     }
 
     public List<Tracer> tracers() {
+        return tracers.list();
+    }
+
+    /**
+     * The composite of all attached tracers. Check tracing() before building
+     * an event.
+     */
+    public Tracer tracer() {
         return tracers;
     }
 
+    public boolean tracing() {
+        return tracers.enabled();
+    }
+
+    /**
+     * Enables the second tier. Procedures called at least threshold times
+     * are compiled and run on the Java stack. Compiled code is not used
+     * while tracers are attached or the interpreter is paused. A pause
+     * requested by a procedure called from compiled code takes effect once
+     * the compiled call has returned.
+     *
+     * @param threshold number of calls before a procedure is compiled, 0 to
+     * disable the second tier
+     */
+    public void hotThreshold(int threshold) {
+        this.hotThreshold = threshold;
+    }
+
+    public int hotThreshold() {
+        return hotThreshold;
+    }
+
+    /**
+     * Lets pmap, pfilter and preduce run the chunks of long lists on the
+     * fork-join pool. The caller waits for the chunks within a single tick.
+     * Turned off, they run like map, filter and reduce, a value per turn of
+     * the template.
+     *
+     * @param parallel false to run the parallel variants sequentially
+     */
+    public void parallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean parallel() {
+        return parallel;
+    }
+
     /**
      * Interpreting functionality, public interface
      */
     public Node run(Node node) {
-        tracers.forEach(t -> t.run(node));
+        if (tracers.enabled()) {
+            tracers.run(node);
+        }
 
         if (!node.type().equals(NodeType.LIST)) {
             throw new NodeTypeException(node, node.type(), NodeType.LIST);
@@ -87,7 +233,9 @@ public class Interpreter implements OutputObserver {
     }
 
     public Node run(Call call) {
-        tracers.forEach(t -> t.run(call));
+        if (tracers.enabled()) {
+            tracers.run(call);
+        }
 
         load(call);
 
@@ -100,6 +248,37 @@ public class Interpreter implements OutputObserver {
 
         return lastResult;
     }
+
+    /**
+     * Runs a program while reading it. Each chunk of statements is parsed
+     * just before it runs, so the first statements run before the rest of
+     * the source is read. Procedures can still be called before their
+     * definition, see SourceStream.
+     *
+     * @param reader The program source
+     * @return The result of the last statement
+     */
+    public Node run(Reader reader) {
+        source = new SourceStream(this, new StatementReader(reader));
+
+        try {
+            return run();
+        } catch (RuntimeException e) {
+            source = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Called by the parser for names that are not defined. Reads ahead in a
+     * streamed program for a definition of the name.
+     *
+     * @param name The undefined name
+     * @return true if the name is defined now
+     */
+    public boolean lookahead(Symbol name) {
+        return source != null && source.lookahead(name);
+    }
 //
 //    public void load(Call call) {
 //        tracers.forEach(t -> t.load(call));
@@ -107,18 +286,22 @@ public class Interpreter implements OutputObserver {
 //    }
 
     public void load(Node node) {
-        tracers.forEach(t -> t.load(node));
+        if (tracers.enabled()) {
+            tracers.load(node);
+        }
 
         switch (node.type()) {
             case LIST:
                 for (Node n : node.getChildren()) {
                     Call call = n.toProcedureCall();
-                    tracers.forEach(t -> t.load(node));
+                    if (tracers.enabled()) {
+                        tracers.load(node);
+                    }
                     program.add(call);
                 }
                 break;
             case PROCCALL:
-                stack.push(node.toProcedureCall());
+                schedule(node.toProcedureCall());
                 break;
             case REFERENCE:
                 lastResult = env.thing(node.toReferenceWord().getReference());
@@ -131,7 +314,12 @@ public class Interpreter implements OutputObserver {
 
     public Node runBounded(Node node) {
 //        tracers.forEach(t -> t.run(node));
-        saveStack();
+        int saveBase = base;
+        Deque<Call> saveProgram = program;
+
+        // The bounded run uses the frames above the current ones
+        base = depth;
+        program = new ArrayDeque<>();
 
         for (Node n : node.getChildren()) {
             Call call = n.toProcedureCall();
@@ -142,31 +330,60 @@ public class Interpreter implements OutputObserver {
         }
 
         if (!paused) {
-            restoreStack();
+            base = saveBase;
+            program = saveProgram;
         }
 
         return lastResult;
     }
 
-    private void saveStack() {
-        bounded = true;
-        saveStack = stack;
-        saveProgram = program;
+    /**
+     * Runs compiled statements to completion on top of the current frames,
+     * like runBounded for a list of calls. Lets native procedures evaluate
+     * the same block many times without reading it again.
+     *
+     * @param block The compiled statements, see readBlock
+     * @return The value of the last statement
+     */
+    public Node runBounded(Code block) {
+        int saveBase = base;
+        Deque<Call> saveProgram = program;
+
+        base = depth;
+        program = new ArrayDeque<>();
+        schedule(block);
+
+        while (tick()) {
+        }
+
+        if (!paused) {
+            base = saveBase;
+            program = saveProgram;
+        }
 
-        stack = new java.util.Stack<>();
-        program = new java.util.ArrayList<>();
-        bounded = false;
+        return lastResult;
     }
 
-    private void restoreStack() {
-        stack = saveStack;
-        program = saveProgram;
-        bounded = false;
+    /**
+     * Applies a procedure to arguments and runs it to completion on top of
+     * the current frames, like runBounded. The procedure is applied as
+     * given, whatever its name stands for now.
+     *
+     * @param procedure The procedure
+     * @param args The arguments
+     * @return The result of the procedure
+     */
+    public Node call(Procedure procedure, java.util.List<Node> args) {
+        Call call = new Call(procedure.getName());
+        for (Node arg : args) {
+            call.addChild(arg);
+        }
+        Scope home = depth == 0 ? env.peek() : frames[depth - 1].childHome();
+        return callInterpreted(call, procedure, args.toArray(new Node[args.size()]), home);
     }
 
     public Node resume() {
-        tracers.forEach(t -> t.resume(stack.peek()));
-        paused = false;
+        unpause();
 
         while (tick()) {
         }
@@ -174,8 +391,21 @@ public class Interpreter implements OutputObserver {
         return lastResult;
     }
 
+    /**
+     * Lifts a pause without running anything, for callers ticking the
+     * interpreter themselves.
+     */
+    public void unpause() {
+        if (tracers.enabled()) {
+            tracers.resume(top());
+        }
+        paused = false;
+    }
+
     public void pause() {
-        tracers.forEach(t -> t.pause(stack.peek()));
+        if (tracers.enabled()) {
+            tracers.pause(top());
+        }
         paused = true;
     }
 
@@ -183,6 +413,17 @@ public class Interpreter implements OutputObserver {
         return paused;
     }
 
+    /**
+     * Whether a pause stops the interpreter right away. Bounded runs and
+     * calls made by compiled code run on the Java stack of a native
+     * procedure, which can't be left until they have finished.
+     *
+     * @return true if the program can be paused
+     */
+    public boolean suspendable() {
+        return base == 0;
+    }
+
     public Node read(String source) {
         return new Parser(this).read(source);
     }
@@ -191,6 +432,33 @@ public class Interpreter implements OutputObserver {
         return new Parser(this).read(list);
     }
 
+    /**
+     * Reads a list as code. The compiled statements are kept on the list and
+     * reused until a procedure definition changes the arity of a name.
+     *
+     * @param list The list to run as code
+     * @return The compiled statements in the list
+     */
+    public Code readBlock(ch.uprisesoft.yali.ast.node.List list) {
+        Code block = list.block(env.arityVersion());
+
+        if (block == null) {
+            int version = env.arityVersion();
+            java.util.List<Node> statements = read(list).getChildren();
+            if (list.owner() != null) {
+                list.owner().resolve(statements);
+            }
+            block = Compiler.statements(statements);
+            // Blocks defining procedures change the arity during parsing and
+            // have to be read again every time
+            if (version == env.arityVersion()) {
+                list.block(block, version);
+            }
+        }
+
+        return block;
+    }
+
     public Environment env() {
         return env;
     }
@@ -200,184 +468,584 @@ public class Interpreter implements OutputObserver {
         return output;
     }
 
+    /**
+     * The frame of the native procedure currently applied. Lets control
+     * procedures keep their state per activation.
+     *
+     * @return the frame of the running native procedure
+     */
+    public Frame frame() {
+        return current;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Loads the next chunk of a streamed program. Bounded runs have their
+     * own program lines and never read from the stream.
+     *
+     * @return true if program lines were loaded
+     */
+    private boolean stream() {
+        while (source != null && base == 0) {
+            Node statements = source.next();
+            if (statements == null) {
+                source = null;
+                return false;
+            }
+
+            if (tracers.enabled()) {
+                tracers.run(statements);
+            }
+
+            for (Node n : statements.getChildren()) {
+                program.add(n.toProcedureCall());
+            }
+            if (!program.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the top frame up to its next call, or finishes it. Native
+     * procedures are applied within the tick calling them, unless they
+     * schedule calls themselves.
+     *
+     * @return true if there is more to evaluate
+     */
     public boolean tick() {
-//        System.out.println("Stack size: " + stack.size() + ", Program size: " + program.size() + ", Env size: " + env.size());
+//        System.out.println("Stack size: " + depth + ", Program size: " + program.size() + ", Env size: " + env.size());
 
         /*
         Global Program state
          */
         if (paused) {
-//            System.out.println("LEAVING TICK WITH false IN paused");
             return false;
         }
 
         // If the stack is empty, check for more program lines to evaluate
-        if (stack.empty()) {
+        if (depth == base) {
             // If both program and stack are empty, execution is finished or no
             // program was loaded in the first place
-            if (program.isEmpty()) {
-
-                if (bounded) {
-                    restoreStack();
-//                    System.out.println("LEAVING TICK WITH true IN stack.empty() -> program.isEmpty() -> bounded");
-                    return true;
-                }
-//                System.out.println("LEAVING TICK WITH false IN stack.empty() -> program.isEmpty()");
+            if (program.isEmpty() && !stream()) {
                 return false;
             } else {
-//                System.out.println("LEAVING TICK WITH true IN stack.empty() -> !program.isEmpty()");
-                schedule(program.remove(0));
+                schedule(program.removeFirst());
                 return true;
             }
         }
 
-        /*
-        Result handling
-         */
-        // Check for finished procedures. If stack is 1 and program empty, this
-        // is the result. Else, deschedule the call and set the result to the
-        // previous call. Has to be done before argument handling.
-        if (stack.peek().evaluated()) {
-            if(stack.peek().getName().equals("run")) {
-//                System.out.println("RUN FINISHED IN TICK()");
-            }
-            unschedule();
-            if (stack.empty() && !program.isEmpty()) {
-//                System.out.println("LEAVING TICK WITH true IN stack.peek().evaluated() -> stack.empty() && !program.isEmpty()");
-                return true;
-            } else if (stack.empty() && program.isEmpty()) {
-//                System.out.println("LEAVING TICK WITH false IN stack.peek().evaluated() -> stack.empty() && program.isEmpty()");
-                return false;
-            } else if (stack.size() == 1 && stack.peek().evaluated() && program.isEmpty()) {
-//                System.out.println("LEAVING TICK WITH false IN stack.peek().evaluated() -> stack.size() == 1 && stack.peek().evaluated() && program.isEmpty()");
-                return false;
-            } else if (stack.peek().hasMoreParameters()) {
-//                System.out.println("LEAVING TICK WITH true IN stack.peek().evaluated() -> stack.peek().hasMoreParameters()");
-                stack.peek().arg(lastResult);
-                return true;
-            } else {
-//                System.out.println("LEAVING TICK WITH true IN stack.peek().evaluated() -> else");
-                return true;
-            }
+        Frame frame = frames[depth - 1];
+
+        // Finished frames pass their result to the previous frame
+        if (frame.evaluated()) {
+            return finish();
         }
 
-        /*
-        Arguments evaluation
-         */
-        // Arguments are evaluated first. If a call does not have it's argument
-        // evaluated, schedule the next argument to be evaluated
-        if (stack.peek().hasMoreParameters()) {
-            Node nextParam = stack.peek().nextParameter();
-            tracers.forEach(t -> t.arg(stack.peek().getName(), nextParam, env));
-
-            // If it's not a procedure call, no evaluation is necessary. Add to
-            // arguments as-is.
-            if (!nextParam.type().equals(NodeType.PROCCALL)) {
-//                System.out.println("LEAVING TICK WITH true IN stack.peek().hasMoreParameters() -> !nextParam.type().equals(NodeType.PROCCALL)");
-                stack.peek().arg(nextParam);
-                return true;
-            } else {
-//                System.out.println("LEAVING TICK WITH true IN stack.peek().hasMoreParameters() -> else");
-                schedule(nextParam.toProcedureCall());
-                return true;
-            }
+        // A native procedure that scheduled calls is applied again once they
+        // have finished
+        if (frame.code() == null) {
+            apply(frame);
+            return frame.evaluated() ? finish() : true;
         }
 
         /*
-        Procedure evaluation
+        Code evaluation
          */
-        Call call = stack.peek();
-
-        // Prepare env
-        for (int i = 0; i < call.definition().getArity(); i++) {
-            env.local(call.definition().getArgs().get(i));
-            env.make(
-                    call.definition().getArgs().get(i),
-                    call.args().get(i)
-            );
-        }
-
-        if (call.definition().isNative()) {
-            tracers.forEach(t -> t.callPrimitive(call.getName(), call.args(), env));
-            Node result = call.definition().getNativeCall().apply(env.peek(), call.args());
-            
-            if (!nodeIsTrue(call.definition().getHasMoreCallback().apply(env.peek(), result))) {
-                call.result(result, env.peek());
-                call.evaluated(true);
+        Code code = frame.code();
+        int[] ops = code.ops;
+        Node[] constants = code.constants;
+        int pc = frame.pc();
+
+        while (true) {
+            switch (ops[pc++]) {
+                case Code.PUSH:
+                    push(constants[ops[pc++]]);
+                    break;
+                case Code.LOAD: {
+                    int slot = ops[pc++];
+                    Call call = constants[ops[pc++]].toProcedureCall();
+                    Node value = slot(frame.childHome(), call, slot);
+                    if (value != null) {
+                        push(value);
+                        break;
+                    }
+                    // Not in the slot, look the variable up by name
+                    frame.pc(pc);
+                    push(call.getChildren().get(0));
+                    invoke(call, frame);
+                    return true;
+                }
+                case Code.CALL: {
+                    OperatorSite site = operator(code, ops[pc]);
+                    if (site != null) {
+                        Node right = stack[--sp];
+                        stack[sp - 1] = site.apply(stack[sp - 1], right);
+                        pc++;
+                        break;
+                    }
+                    frame.pc(pc + 1);
+                    invoke(constants[ops[pc]].toProcedureCall(), frame);
+                    return true;
+                }
+                case Code.RESULT:
+                    frame.result(stack[--sp]);
+                    break;
+                default:
+                    frame.pc(pc);
+                    frame.evaluated(true);
+                    return finish();
             }
-//            System.out.println("LEAVING TICK WITH true IN call.definition().isNative() -> true");
-            return true;
-        } else {
-            if (call.hasMoreCalls()) {
-                schedule(call.nextCall());
-            } else {
-                call.evaluated(true);
-                call.result(lastResult, env.peek());
+        }
+    }
+
+    /**
+     * Reads a variable resolved to a slot, if the code runs in the scope of
+     * the procedure it was resolved for.
+     *
+     * @return the value, or null if the variable has to be looked up
+     */
+    private Node slot(Scope home, Call call, int slot) {
+        if (home == null || home.owner() != call.owner()) {
+            return null;
+        }
+
+        Node value = home.slot(slot);
+        if (value != null && tracers.enabled()) {
+            tracers.thing(call.getChildren().get(0).toString(), value, env);
+        }
+        return value;
+    }
+
+    /**
+     * Looks up the inline cache of a call, if it calls an operator. Calls
+     * are traced like any other while tracers are enabled.
+     *
+     * @return the call site, or null if the call has to be invoked
+     */
+    private OperatorSite operator(Code code, int constant) {
+        if (tracers.enabled()) {
+            return null;
+        }
+
+        OperatorSite site = code.site(constant);
+        if (site == null || site.stamp != env.stamp()) {
+            Call call = code.constants[constant].toProcedureCall();
+            Operator operator = null;
+            if (call.getChildren().size() == 2 && env.defined(call.symbol())) {
+                operator = env.procedure(call).operator();
             }
-//            System.out.println("LEAVING TICK WITH true IN call.definition().isNative() -> false");
-            return true;
+            site = new OperatorSite(operator, env.stamp());
+            code.site(constant, site);
+        }
+        return site.operator == null ? null : site;
+    }
+
+    private void push(Node value) {
+        if (sp == stack.length) {
+            stack = java.util.Arrays.copyOf(stack, sp * 2);
         }
+        stack[sp++] = value;
     }
 
     private boolean nodeIsTrue(Node node) {
         return node.type().equals(NodeType.BOOLEAN) && node.toBooleanWord().getBoolean();
     }
 
-    private Call unschedule() {
-        Call call = stack.pop();
+    private Call top() {
+        return depth == 0 ? null : frames[depth - 1].call();
+    }
 
-        if (!call.definition().isMacro()) {
-            tracers.forEach(t -> t.unscope(env.peek().getScopeName(), env));
+    /**
+     * Removes the finished top frame and passes its result on, to the
+     * operand stack of code waiting for it or as the result of a control
+     * procedure that scheduled it.
+     *
+     * @return true if there is more to evaluate
+     */
+    private boolean finish() {
+        unschedule();
+        if (depth == base) {
+            return !program.isEmpty() || (source != null && base == 0);
+        }
+
+        Frame previous = frames[depth - 1];
+        if (previous.code() != null) {
+            push(lastResult);
+        } else {
+            previous.result(lastResult);
+        }
+        return true;
+    }
+
+    private Frame unschedule() {
+        Frame frame = frames[--depth];
+
+        if (!frame.definition().isMacro()) {
+            if (tracers.enabled()) {
+                tracers.unscope(env.peek().getScopeName(), env);
+            }
             env.pop();
         }
-        lastResult = call.result();
-        tracers.forEach(t -> t.unschedule(call.getName(), call, env));
-        return call;
+        sp = frame.stackBase();
+        lastResult = frame.result();
+        if (tracers.enabled() && frame.definition() != RUN) {
+            tracers.unschedule(frame.call().getName(), frame.call(), env);
+        }
+        frame.release();
+        return frame;
     }
 
-    public void schedule(Call call) {
-        tracers.forEach(t -> t.schedule(call.getName(), call, env));
+    private Frame next() {
+        if (depth == frames.length) {
+            frames = java.util.Arrays.copyOf(frames, depth * 2);
+        }
+        if (frames[depth] == null) {
+            frames[depth] = new Frame();
+        }
+        return frames[depth];
+    }
+
+    /**
+     * Calls a procedure with the arguments on top of the operand stack.
+     * User defined procedures get a frame running their body, native ones
+     * are applied right away.
+     */
+    private void invoke(Call call, Frame caller) {
+        if (tracers.enabled()) {
+            tracers.schedule(call.getName(), call, env);
+        }
+
+        Procedure definition = env.procedure(call);
 
-        if (!env.defined(call.getName())) {
-            throw new FunctionNotFoundException(call.getName());
+        if (hotThreshold > 0 && !definition.isNative() && compiledDepth < MAX_COMPILED_DEPTH) {
+            Compiled compiled = hot(definition);
+            if (compiled != null) {
+                int args = sp - call.getChildren().size();
+                Node[] values = java.util.Arrays.copyOfRange(stack, args, sp);
+                sp = args;
+                push(runCompiled(definition, compiled, values));
+                return;
+            }
         }
 
-        call.definition(env.procedure(call.getName()));
-        call.reset();
-        stack.push(call);
-        if (!call.definition().isMacro()) {
+        activate(call, definition, caller.childHome());
+    }
+
+    /**
+     * Activates a procedure with the arguments on top of the operand stack.
+     */
+    private void activate(Call call, Procedure definition, Scope home) {
+        int argc = call.getChildren().size();
+        int args = sp - argc;
+        Frame frame = next();
+
+        if (!definition.isNative()) {
+            Code body = definition.code();
+            if (body == null) {
+                body = Compiler.statements(definition.getChildren());
+                definition.code(body);
+            }
+
+            // Parameters are the first slots of the scope
+            Scope scope = new Scope(definition);
+            env.push(scope);
+            if (tracers.enabled()) {
+                tracers.scope(scope.getScopeName(), env);
+            }
+            for (int i = 0; i < definition.getArity(); i++) {
+                Node value = stack[args + i];
+                if (tracers.enabled()) {
+                    String name = definition.getArgs().get(i);
+                    tracers.arg(call.getName(), value, env);
+                    tracers.local(name, env);
+                    tracers.make(name, value, env);
+                }
+                scope.slot(i, value);
+            }
+            sp = args;
+            frame.activate(call, definition, home, scope, body, sp);
+            depth++;
+            return;
+        }
+
+        if (!definition.isMacro()) {
             env.push(new Scope(call.getName()));
-            tracers.forEach(t -> t.scope(env.peek().getScopeName(), env));
+            if (tracers.enabled()) {
+                tracers.scope(env.peek().getScopeName(), env);
+            }
+        }
+
+        frame.activate(call, definition, home, null, null, args);
+        for (int i = 0; i < argc; i++) {
+            if (tracers.enabled()) {
+                tracers.arg(call.getName(), stack[args + i], env);
+            }
+            frame.arg(stack[args + i]);
+        }
+        sp = args;
+        depth++;
+
+        apply(frame);
+        if (frame.evaluated()) {
+            finish();
         }
     }
 
-    public Interpreter loadStdLib(OutputObserver oo) {
+    /**
+     * Looks up the compiled form of a procedure, compiling it once it is
+     * hot. Compiled code of outdated definitions or of another interpreter
+     * sharing the procedure is dropped.
+     *
+     * @return the compiled procedure, or null if it has to be interpreted
+     */
+    private Compiled hot(Procedure procedure) {
+        if (tracers.enabled() || paused) {
+            return null;
+        }
+
+        Compiled compiled = procedure.compiled();
+        if (compiled == null || compiled.owner != this || compiled.stamp != env.stamp()) {
+            if (procedure.called() < hotThreshold) {
+                return null;
+            }
+            compiled = HotCompiler.compile(this, procedure);
+            procedure.compiled(compiled);
+        }
+
+        return compiled.compilable() ? compiled : null;
+    }
+
+    private Node runCompiled(Procedure procedure, Compiled compiled, Node[] args) {
+        Scope scope = new Scope(procedure);
+        for (int i = 0; i < procedure.getArity(); i++) {
+            scope.slot(i, args[i]);
+        }
+
+        env.push(scope);
+        compiledDepth++;
+        try {
+            return compiled.body.eval(scope);
+        } finally {
+            compiledDepth--;
+            env.pop();
+        }
+    }
+
+    /**
+     * Calls a user defined procedure from compiled code.
+     */
+    Node callUser(Call call, Procedure procedure, Node[] args, Scope home) {
+        if (compiledDepth < MAX_COMPILED_DEPTH) {
+            Compiled compiled = hot(procedure);
+            if (compiled != null) {
+                return runCompiled(procedure, compiled, args);
+            }
+        }
+        return callInterpreted(call, procedure, args, home);
+    }
+
+    /**
+     * Calls a procedure from compiled code, looking it up by name.
+     */
+    Node callDynamic(Call call, Node[] args, Scope home) {
+        Procedure procedure = env.procedure(call);
+        if (!procedure.isNative()) {
+            return callUser(call, procedure, args, home);
+        } else if (!procedure.isControl()) {
+            return procedure.getNativeCall().apply(this, env.peek(), java.util.Arrays.asList(args));
+        }
+        return callInterpreted(call, procedure, args, home);
+    }
+
+    /**
+     * Interprets a call made by compiled code, on top of the frames of the
+     * running program. A pause is deferred until the compiled code has
+     * returned.
+     */
+    private Node callInterpreted(Call call, Procedure procedure, Node[] args, Scope home) {
+        int saveBase = base;
+        Deque<Call> saveProgram = program;
+        boolean pause = false;
+
+        base = depth;
+        program = new ArrayDeque<>();
+        try {
+            for (Node arg : args) {
+                push(arg);
+            }
+            activate(call, procedure, home);
 
-        Logic logic = new Logic();
-        logic.registerProcedures(this);
+            while (depth > base) {
+                if (!tick() && paused) {
+                    paused = false;
+                    pause = true;
+                }
+            }
+        } finally {
+            base = saveBase;
+            program = saveProgram;
+            paused = paused || pause;
+        }
 
-        Control control = new Control();
-        control.registerProcedures(this);
+        return lastResult;
+    }
 
-        Arithmetic arithmetic = new Arithmetic();
-        arithmetic.registerProcedures(this);
+    private void apply(Frame frame) {
+        if (tracers.enabled()) {
+            tracers.callPrimitive(frame.call().getName(), frame.args(), env);
+        }
 
-        Template template = new Template();
-        template.registerProcedures(this);
+        Procedure definition = frame.definition();
+        Frame caller = current;
+        current = frame;
+        int scheduled = depth;
+        Node result = definition.getNativeCall().apply(this, env.peek(), frame.args());
+
+        // A native procedure scheduling a call is applied again after the
+        // scheduled call has finished
+        if (depth == scheduled && !nodeIsTrue(definition.getHasMoreCallback().apply(env.peek(), result))) {
+            frame.result(result);
+            frame.evaluated(true);
+        }
+        current = caller;
+    }
 
-        Data data = new Data();
-        data.registerProcedures(this);
+    /**
+     * Schedules a call to be evaluated on its own, like a program line.
+     *
+     * @param call the call
+     */
+    public void schedule(Call call) {
+        Code code = call.code();
+        if (code == null) {
+            code = Compiler.call(call);
+            call.code(code);
+        }
+        schedule(call, code);
+    }
 
+    /**
+     * Schedules compiled statements, like a block run by a control
+     * procedure. The result is the value of the last statement.
+     *
+     * @param block the compiled statements
+     */
+    public void schedule(Code block) {
+        schedule(current != null ? current.call() : null, block);
+    }
+
+    private void schedule(Call call, Code code) {
+        Frame frame = next();
+        Scope home = depth == 0 ? env.peek() : frames[depth - 1].childHome();
+        frame.activate(call, RUN, home, null, code, sp);
+        depth++;
+    }
+
+    /**
+     * Loads the standard library without IO. The procedures are registered
+     * once per JVM and shared by all interpreters, see StdLib.
+     */
+    public Interpreter loadStdLib(OutputObserver oo) {
+        env.load(StdLib.CORE);
         return this;
     }
 
     public Interpreter loadStdLib(OutputObserver oo, InputGenerator ig) {
-        IO com = new IO();
-        com.register(oo);
-        com.register(ig);
-        com.registerProcedures(this);
+        register(oo);
+        register(ig);
 
-        return loadStdLib(oo);
+        env.load(StdLib.FULL);
+        return this;
+    }
+
+    /**
+     * The standard library as snapshots of interpreters nothing runs on.
+     * Its primitives keep no state of their own, per interpreter state is
+     * kept by the interpreter and its environment.
+     */
+    static final class StdLib {
+
+        static final Snapshot CORE = core();
+        static final Snapshot FULL = full();
+
+        private static Snapshot core() {
+            Interpreter image = new Interpreter();
+
+            Logic logic = new Logic();
+            logic.registerProcedures(image);
+
+            Control control = new Control();
+            control.registerProcedures(image);
+
+            Arithmetic arithmetic = new Arithmetic();
+            arithmetic.registerProcedures(image);
+
+            Template template = new Template();
+            template.registerProcedures(image);
+
+            Data data = new Data();
+            data.registerProcedures(image);
+
+            Lookup lookup = new Lookup();
+            lookup.registerProcedures(image);
+
+            return image.snapshot();
+        }
+
+        private static Snapshot full() {
+            Interpreter image = new Interpreter(CORE);
+
+            IO com = new IO();
+            com.registerProcedures(image);
+
+            return image.snapshot();
+        }
+    }
+
+    /**
+     * Drops the program, the frames and everything defined, and starts
+     * over with the global state of a snapshot. Observers, the input
+     * generator and tracers are removed as well, and the second tier and
+     * the parallel variants are set back as in a new interpreter.
+     *
+     * @param snapshot the global state to start over with
+     */
+    public void reset(Snapshot snapshot) {
+        stop();
+        env.restore(snapshot);
+
+        observers.clear();
+        generator = null;
+        tracers.clear();
+        env.clearTracers();
+        hotThreshold = 0;
+        parallel = true;
+    }
+
+    /**
+     * Abandons the running program, for example after it failed. Everything
+     * defined is kept.
+     */
+    public void stop() {
+        while (env.size() > 1) {
+            env.pop();
+        }
+
+        java.util.Arrays.fill(stack, 0, sp, null);
+        sp = 0;
+        depth = 0;
+        base = 0;
+        current = null;
+        compiledDepth = 0;
+        program = new ArrayDeque<>();
+        source = null;
+        lastResult = null;
+        paused = false;
     }
 
     public java.util.List<String> stringify(Node arg) {
@@ -402,6 +1070,40 @@ public class Interpreter implements OutputObserver {
         return stringifiedArgs;
     }
 
+    /**
+     * Input and output of IO
+     */
+    @Override
+    public void register(OutputObserver observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void register(InputGenerator generator) {
+        this.generator = generator;
+    }
+
+    public void write(String output) {
+        for (OutputObserver oo : observers) {
+            oo.inform(output);
+        }
+    }
+
+    /**
+     * Reads a line from the input generator. While the program can be
+     * paused, a generator without a line at hand may leave the waiting to
+     * the caller, see InputGenerator.pollLine.
+     *
+     * @return the line, or null if the caller has to pause and ask again
+     */
+    public String requestLine() {
+        if (generator == null) {
+            return "";
+        }
+
+        return suspendable() ? generator.pollLine() : generator.requestLine();
+    }
+
     /**
      * Observer and helper methods
      */
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.scope.Snapshot;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Interpreters ready to run, all starting from the same snapshot. Released
+ * interpreters are reset and handed out again, so a session costs neither
+ * loading a library nor allocating the stacks. Can be used from several
+ * threads.
+ *
+ * @author rma
+ */
+public class InterpreterPool {
+
+    private final Snapshot image;
+    private final BlockingQueue<Interpreter> idle;
+
+    /**
+     * A pool of interpreters with the standard library, IO included.
+     *
+     * @param size the number of idle interpreters kept
+     */
+    public InterpreterPool(int size) {
+        this(Interpreter.StdLib.FULL, size);
+    }
+
+    /**
+     * A pool of interpreters starting from a snapshot, for example of an
+     * interpreter that has loaded procedures shared by all sessions.
+     *
+     * @param image the global state every interpreter starts with
+     * @param size the number of idle interpreters kept
+     */
+    public InterpreterPool(Snapshot image, int size) {
+        this.image = image;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.offer(new Interpreter(image));
+        }
+    }
+
+    /**
+     * Hands out an idle interpreter, or a new one if none is idle.
+     *
+     * @return an interpreter in the state of the image
+     */
+    public Interpreter acquire() {
+        Interpreter it = idle.poll();
+        return it == null ? new Interpreter(image) : it;
+    }
+
+    public Interpreter acquire(OutputObserver oo, InputGenerator ig) {
+        Interpreter it = acquire();
+        it.register(oo);
+        it.register(ig);
+        return it;
+    }
+
+    /**
+     * Takes back an interpreter, resetting it to the image. The caller must
+     * not use it afterwards. Interpreters beyond the size of the pool are
+     * dropped.
+     *
+     * @param it an interpreter handed out by this pool
+     */
+    public void release(Interpreter it) {
+        it.reset(image);
+        idle.offer(it);
+    }
+
+    public int idle() {
+        return idle.size();
+    }
+}
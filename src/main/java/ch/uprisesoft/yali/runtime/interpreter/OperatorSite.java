@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.word.FloatWord;
+import ch.uprisesoft.yali.ast.node.word.IntegerWord;
+import ch.uprisesoft.yali.runtime.procedures.Operator;
+
+/**
+ * Inline cache of a call site applying an operator. The site remembers the
+ * operand types it has seen first and calls the variant specialized for
+ * them, until it sees others. Sites of calls to anything else than an
+ * operator have no operator, so they are only looked up once per stamp.
+ *
+ * @author rma
+ */
+final class OperatorSite {
+
+    private static final int EMPTY = 0;
+    private static final int LONGS = 1;
+    private static final int FLOATS = 2;
+    private static final int GENERIC = 3;
+
+    // Null if the call is not to an operator
+    final Operator operator;
+    // Stamp of the definitions the operator was looked up in
+    final long stamp;
+    private int seen = EMPTY;
+
+    OperatorSite(Operator operator, long stamp) {
+        this.operator = operator;
+        this.stamp = stamp;
+    }
+
+    Node apply(Node left, Node right) {
+        switch (seen) {
+            case LONGS:
+                if (left instanceof IntegerWord && right instanceof IntegerWord) {
+                    return operator.longs(((IntegerWord) left).longValue(), ((IntegerWord) right).longValue());
+                }
+                break;
+            case FLOATS:
+                if (left instanceof FloatWord && right instanceof FloatWord) {
+                    return operator.floats(((FloatWord) left).doubleValue(), ((FloatWord) right).doubleValue());
+                }
+                break;
+            case EMPTY:
+                seen = shape(left, right);
+                return operator.apply(left, right);
+            default:
+                return operator.apply(left, right);
+        }
+
+        seen = GENERIC;
+        return operator.apply(left, right);
+    }
+
+    private static int shape(Node left, Node right) {
+        if (left instanceof IntegerWord && right instanceof IntegerWord) {
+            return LONGS;
+        } else if (left instanceof FloatWord && right instanceof FloatWord) {
+            return FLOATS;
+        }
+        return GENERIC;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.lexer.Symbol;
+import ch.uprisesoft.yali.parser.Parser;
+import ch.uprisesoft.yali.parser.StatementReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Source of a streamed program. Statements are parsed one chunk at a time,
+ * just before they run. A call to a procedure that is not defined yet makes
+ * the stream read ahead until the definition is found. Definitions passed on
+ * the way are parsed and defined, other statements are kept as source
+ * until their turn, so memory is bounded by the distance to the definition.
+ *
+ * @author rma
+ */
+class SourceStream {
+
+    private final Interpreter it;
+    private final StatementReader reader;
+
+    // Chunks read ahead, either as source or already parsed
+    private final Deque<Chunk> ahead = new ArrayDeque<>();
+    private boolean exhausted = false;
+
+    SourceStream(Interpreter it, StatementReader reader) {
+        this.it = it;
+        this.reader = reader;
+    }
+
+    /**
+     * @return The statements of the next chunk, or null at the end of the
+     * source
+     */
+    Node next() {
+        Chunk chunk = ahead.pollFirst();
+
+        if (chunk == null) {
+            String source = reader.next();
+            if (source == null) {
+                exhausted = true;
+                return null;
+            }
+            return new Parser(it).read(source, reader.line());
+        }
+
+        if (chunk.statements == null) {
+            return new Parser(it).read(chunk.source, chunk.line);
+        }
+        return chunk.statements;
+    }
+
+    /**
+     * Reads ahead for the definition of a procedure.
+     *
+     * @param name Name of the procedure
+     * @return true if the procedure is defined now
+     */
+    boolean lookahead(Symbol name) {
+        while (!exhausted) {
+            String source = reader.next();
+            if (source == null) {
+                exhausted = true;
+                break;
+            }
+
+            Chunk chunk = new Chunk(source, reader.line());
+            // Added before parsing, a definition may read further ahead
+            ahead.addLast(chunk);
+
+            if (reader.definition()) {
+                chunk.statements = new Parser(it).read(chunk.source, chunk.line);
+                chunk.source = null;
+
+                if (it.env().defined(name)) {
+                    return true;
+                }
+            }
+        }
+
+        return it.env().defined(name);
+    }
+
+    private static class Chunk {
+
+        private String source;
+        private final int line;
+        private Node statements;
+
+        Chunk(String source, int line) {
+            this.source = source;
+            this.line = line;
+        }
+    }
+}
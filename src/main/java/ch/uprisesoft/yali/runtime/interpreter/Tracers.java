@@ -0,0 +1,175 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.scope.Environment;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Forwards every event to the attached tracers. Callers check enabled()
+ * before building an event, so nothing is computed while no tracer is
+ * attached.
+ *
+ * @author rma
+ */
+public class Tracers implements Tracer {
+
+    private Tracer[] tracers = new Tracer[0];
+
+    public void add(Tracer tracer) {
+        tracers = Arrays.copyOf(tracers, tracers.length + 1);
+        tracers[tracers.length - 1] = tracer;
+    }
+
+    public void clear() {
+        tracers = new Tracer[0];
+    }
+
+    public boolean enabled() {
+        return tracers.length > 0;
+    }
+
+    public List<Tracer> list() {
+        return Collections.unmodifiableList(Arrays.asList(tracers));
+    }
+
+    @Override
+    public void parse(String source) {
+        for (Tracer t : tracers) {
+            t.parse(source);
+        }
+    }
+
+    @Override
+    public void start(Node node) {
+        for (Tracer t : tracers) {
+            t.start(node);
+        }
+    }
+
+    @Override
+    public void callPrimitive(String name, List<Node> args, Environment env) {
+        for (Tracer t : tracers) {
+            t.callPrimitive(name, args, env);
+        }
+    }
+
+    @Override
+    public void call(String name, List<Node> args, Environment env) {
+        for (Tracer t : tracers) {
+            t.call(name, args, env);
+        }
+    }
+
+    @Override
+    public void schedule(String name, Call call, Environment env) {
+        for (Tracer t : tracers) {
+            t.schedule(name, call, env);
+        }
+    }
+
+    @Override
+    public void unschedule(String name, Call call, Environment env) {
+        for (Tracer t : tracers) {
+            t.unschedule(name, call, env);
+        }
+    }
+
+    @Override
+    public void arg(String name, Node val, Environment env) {
+        for (Tracer t : tracers) {
+            t.arg(name, val, env);
+        }
+    }
+
+    @Override
+    public void make(String name, Node val, Environment env) {
+        for (Tracer t : tracers) {
+            t.make(name, val, env);
+        }
+    }
+
+    @Override
+    public void thing(String name, Node val, Environment env) {
+        for (Tracer t : tracers) {
+            t.thing(name, val, env);
+        }
+    }
+
+    @Override
+    public void local(String name, Environment env) {
+        for (Tracer t : tracers) {
+            t.local(name, env);
+        }
+    }
+
+    @Override
+    public void scope(String name, Environment env) {
+        for (Tracer t : tracers) {
+            t.scope(name, env);
+        }
+    }
+
+    @Override
+    public void unscope(String name, Environment env) {
+        for (Tracer t : tracers) {
+            t.unscope(name, env);
+        }
+    }
+
+    @Override
+    public void run(Node val) {
+        for (Tracer t : tracers) {
+            t.run(val);
+        }
+    }
+
+    @Override
+    public void load(Node val) {
+        for (Tracer t : tracers) {
+            t.load(val);
+        }
+    }
+
+    @Override
+    public void tick(Node val) {
+        for (Tracer t : tracers) {
+            t.tick(val);
+        }
+    }
+
+    @Override
+    public void returnTick(Node val, String pos) {
+        for (Tracer t : tracers) {
+            t.returnTick(val, pos);
+        }
+    }
+
+    @Override
+    public void apply(Node val) {
+        for (Tracer t : tracers) {
+            t.apply(val);
+        }
+    }
+
+    @Override
+    public void pause(Node val) {
+        for (Tracer t : tracers) {
+            t.pause(val);
+        }
+    }
+
+    @Override
+    public void resume(Node val) {
+        for (Tracer t : tracers) {
+            t.resume(val);
+        }
+    }
+}
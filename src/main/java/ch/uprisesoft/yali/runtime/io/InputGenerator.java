@@ -23,4 +23,15 @@ package ch.uprisesoft.yali.runtime.io;
 public interface InputGenerator {
     public String request();
     public String requestLine();
+
+    /**
+     * Reads a line if one is at hand, without waiting for it. Returning
+     * null pauses the program until it is resumed, then the line is asked
+     * for again. By default, waits for the line like requestLine.
+     *
+     * @return the line, or null if there is none yet
+     */
+    public default String pollLine() {
+        return requestLine();
+    }
 }
@@ -0,0 +1,96 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.procedures;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.word.BigIntegerWord;
+import ch.uprisesoft.yali.ast.node.word.FloatWord;
+import ch.uprisesoft.yali.ast.node.word.IntegerWord;
+import ch.uprisesoft.yali.ast.node.word.Word;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import java.math.BigInteger;
+
+/**
+ * Native procedure of two numbers, with variants specialized for long,
+ * big integer and float operands. Mixed integers are computed as big
+ * integers, integers mixed with floats as floats. The interpreter calls
+ * the variants directly from call sites that remember the operand types
+ * they have seen.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public abstract class Operator {
+
+    private final String name;
+
+    /**
+     * @param name Name of the operator in error messages
+     */
+    protected Operator(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Applied to two longs. Variants overflowing a long continue with
+     * {@link #bigs(BigInteger, BigInteger)}.
+     *
+     * @param left The left operand
+     * @param right The right operand
+     * @return The result
+     */
+    public abstract Node longs(long left, long right);
+
+    public abstract Node bigs(BigInteger left, BigInteger right);
+
+    public abstract Node floats(double left, double right);
+
+    public Node apply(Node left, Node right) {
+        if (left instanceof IntegerWord && right instanceof IntegerWord) {
+            return longs(((IntegerWord) left).longValue(), ((IntegerWord) right).longValue());
+        } else if (left instanceof FloatWord && right instanceof FloatWord) {
+            return floats(((FloatWord) left).doubleValue(), ((FloatWord) right).doubleValue());
+        } else if (!isNumber(left) || !isNumber(right)) {
+            return other(left, right);
+        } else if (left instanceof FloatWord || right instanceof FloatWord) {
+            return floats(((Word) left).getFloat(), ((Word) right).getFloat());
+        }
+        return bigs(big(left), big(right));
+    }
+
+    /**
+     * Applied if one of the operands is not a number.
+     *
+     * @param left The left operand
+     * @param right The right operand
+     * @return The result
+     */
+    protected Node other(Node left, Node right) {
+        Node wrong = isNumber(left) ? right : left;
+        throw new NodeTypeException(name, wrong, wrong.type(), NodeType.NUMBER);
+    }
+
+    private static boolean isNumber(Node node) {
+        return node instanceof IntegerWord || node instanceof FloatWord || node instanceof BigIntegerWord;
+    }
+
+    private static BigInteger big(Node node) {
+        if (node instanceof IntegerWord) {
+            return BigInteger.valueOf(((IntegerWord) node).longValue());
+        }
+        return ((BigIntegerWord) node).bigValue();
+    }
+}
@@ -24,7 +24,9 @@ import ch.uprisesoft.yali.ast.node.word.IntegerWord;
 import ch.uprisesoft.yali.ast.node.word.Word;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.scope.Scope;
+import ch.uprisesoft.yali.runtime.procedures.Operator;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import java.math.BigInteger;
 
 /**
  *
@@ -32,119 +34,132 @@ import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
  */
 public class Arithmetic implements ProcedureProvider {
 
-    private boolean checkArgs(Node node) {
-        if (!(node.type().equals(NodeType.FLOAT) || node.type().equals(NodeType.INTEGER))) {
-            return false;
+    public static final Operator ADD = new Operator("+") {
+        @Override
+        public Node longs(long left, long right) {
+            try {
+                return IntegerWord.valueOf(Math.addExact(left, right));
+            } catch (ArithmeticException e) {
+                return bigs(BigInteger.valueOf(left), BigInteger.valueOf(right));
+            }
         }
 
-        return true;
-    }
-
-    public Node add(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
-
-        if (!checkArgs(left)) {
-            throw new NodeTypeException(Node.symbol("+"), left.type(), NodeType.NUMBER);
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return Node.integer(left.add(right));
         }
-        if (!checkArgs(right)) {
-            throw new NodeTypeException(Node.symbol("+"), right.type(), NodeType.NUMBER);
+
+        @Override
+        public Node floats(double left, double right) {
+            return new FloatWord(left + right);
         }
+    };
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() + right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() + right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() + right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() + right.getFloat());
+    public static final Operator SUB = new Operator("-") {
+        @Override
+        public Node longs(long left, long right) {
+            try {
+                return IntegerWord.valueOf(Math.subtractExact(left, right));
+            } catch (ArithmeticException e) {
+                return bigs(BigInteger.valueOf(left), BigInteger.valueOf(right));
+            }
         }
 
-        return Node.none();
-    }
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return Node.integer(left.subtract(right));
+        }
 
-    public Node sub(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
+        @Override
+        public Node floats(double left, double right) {
+            return new FloatWord(left - right);
+        }
+    };
 
-        if (!checkArgs(left)) {
-            throw new NodeTypeException(Node.symbol("-"), left.type(), NodeType.NUMBER);
+    public static final Operator MUL = new Operator("*") {
+        @Override
+        public Node longs(long left, long right) {
+            try {
+                return IntegerWord.valueOf(Math.multiplyExact(left, right));
+            } catch (ArithmeticException e) {
+                return bigs(BigInteger.valueOf(left), BigInteger.valueOf(right));
+            }
         }
-        if (!checkArgs(right)) {
-            throw new NodeTypeException(Node.symbol("-"), right.type(), NodeType.NUMBER);
+
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return Node.integer(left.multiply(right));
         }
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() - right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() - right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() - right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() - right.getFloat());
-        }
-        return Node.none();
-    }
+        @Override
+        public Node floats(double left, double right) {
+            return new FloatWord(left * right);
+        }
+    };
 
-    public Node mul(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
+    public static final Operator DIV = new Operator("/") {
+        @Override
+        public Node longs(long left, long right) {
+            // The only quotient of two longs not fitting in a long
+            if (left == Long.MIN_VALUE && right == -1) {
+                return bigs(BigInteger.valueOf(left), BigInteger.valueOf(right));
+            }
+            return IntegerWord.valueOf(left / right);
+        }
 
-        if (!checkArgs(left)) {
-            throw new NodeTypeException(Node.symbol("*"), left.type(), NodeType.NUMBER);
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return Node.integer(left.divide(right));
         }
-        if (!checkArgs(right)) {
-            throw new NodeTypeException(Node.symbol("*"), right.type(), NodeType.NUMBER);
+
+        @Override
+        public Node floats(double left, double right) {
+            return new FloatWord(left / right);
         }
+    };
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() * right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() * right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() * right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() * right.getFloat());
-        }
-        return Node.none();
+    public Node add(Scope scope, java.util.List<Node> args) {
+        return ADD.apply(args.get(0), args.get(1));
     }
 
-    public Node div(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
+    public Node sub(Scope scope, java.util.List<Node> args) {
+        return SUB.apply(args.get(0), args.get(1));
+    }
 
-        if (!checkArgs(left)) {
-            throw new NodeTypeException(Node.symbol("/"), left.type(), NodeType.NUMBER);
-        }
-        if (!checkArgs(right)) {
-            throw new NodeTypeException(Node.symbol("/"), right.type(), NodeType.NUMBER);
-        }
+    public Node mul(Scope scope, java.util.List<Node> args) {
+        return MUL.apply(args.get(0), args.get(1));
+    }
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() / right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() / right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() / right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() / right.getFloat());
-        }
-        return Node.none();
+    public Node div(Scope scope, java.util.List<Node> args) {
+        return DIV.apply(args.get(0), args.get(1));
     }
-    
+
     public Node mod(Scope scope, java.util.List<Node> args) {
         Word left = (Word) args.get(0);
         Word right = (Word) args.get(1);
 
-        if (!left.type().equals(NodeType.INTEGER)) {
+        if (!isInteger(left)) {
             throw new NodeTypeException(left, left.type(), NodeType.INTEGER);
         }
-        if (!right.type().equals(NodeType.INTEGER)) {
+        if (!isInteger(right)) {
             throw new NodeTypeException(right, right.type(), NodeType.NUMBER);
         }
 
-        return new IntegerWord(left.getInteger() % right.getInteger());
+        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
+            return IntegerWord.valueOf(left.toIntegerWord().longValue() % right.toIntegerWord().longValue());
+        }
+        return Node.integer(big(left).remainder(big(right)));
+    }
+
+    private static boolean isInteger(Node node) {
+        return node.type().equals(NodeType.INTEGER) || node.type().equals(NodeType.BIGINTEGER);
+    }
+
+    private static BigInteger big(Node node) {
+        if (node.type().equals(NodeType.INTEGER)) {
+            return BigInteger.valueOf(node.toIntegerWord().longValue());
+        }
+        return node.toBigIntegerWord().bigValue();
     }
     
     public Node integer(Scope scope, java.util.List<Node> args) {
@@ -177,10 +192,10 @@ public class Arithmetic implements ProcedureProvider {
     public Interpreter registerProcedures(Interpreter it) {
         Arithmetic builtins = new Arithmetic();
 
-        it.env().define(new Procedure("add", (scope, val) -> builtins.add(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("mul", (scope, val) -> builtins.mul(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("sub", (scope, val) -> builtins.sub(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("div", (scope, val) -> builtins.div(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
+        it.env().define(new Procedure("add", (scope, val) -> builtins.add(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(ADD));
+        it.env().define(new Procedure("mul", (scope, val) -> builtins.mul(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(MUL));
+        it.env().define(new Procedure("sub", (scope, val) -> builtins.sub(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(SUB));
+        it.env().define(new Procedure("div", (scope, val) -> builtins.div(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(DIV));
         it.env().define(new Procedure("mod", (scope, val) -> builtins.mod(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
         it.env().define(new Procedure("integer", (scope, val) -> builtins.integer(scope, val), (scope, val) -> Node.none(), "__val__"));
         it.env().define(new Procedure("round", (scope, val) -> builtins.round(scope, val), (scope, val) -> Node.none(), "__val__"));
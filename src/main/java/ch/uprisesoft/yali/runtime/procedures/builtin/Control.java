@@ -15,16 +15,17 @@
  */
 package ch.uprisesoft.yali.runtime.procedures.builtin;
 
-import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.lexer.Symbol;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.scope.Scope;
+import ch.uprisesoft.yali.runtime.interpreter.Frame;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
 import ch.uprisesoft.yali.scope.VariableNotFoundException;
-import java.util.ArrayList;
 
 /**
  *
@@ -32,29 +33,27 @@ import java.util.ArrayList;
  */
 public class Control implements ProcedureProvider {
 
-    private Interpreter it;
-
     // Only here so we don't have to strip it out as edge cases in the Reader. Does nothing.
-    public Node alias(Scope scope, java.util.List<Node> args) {
+    public Node alias(Interpreter it, Scope scope, java.util.List<Node> args) {
         return Node.nil();
     }
 
-    public Node thing(Scope scope, java.util.List<Node> args) {
+    public Node thing(Interpreter it, Scope scope, java.util.List<Node> args) {
 
-        final String name;
+        final Symbol name;
         switch (args.get(0).type()) {
             case SYMBOL:
-                name = args.get(0).toSymbolWord().getSymbol();
+                name = args.get(0).toSymbolWord().symbol();
                 break;
             case QUOTE:
-                name = args.get(0).toQuotedWord().getQuote();
+                name = args.get(0).toQuotedWord().symbol();
                 break;
             default:
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
         }
 
         if (!it.env().thingable(name)) {
-            throw new VariableNotFoundException(name);
+            throw new VariableNotFoundException(name.name());
         }
 
         Node value = it.env().thing(name);
@@ -62,36 +61,38 @@ public class Control implements ProcedureProvider {
         return value;
     }
 
-    public Node local(Scope scope, java.util.List<Node> args) {
-        final String name;
+    public Node local(Interpreter it, Scope scope, java.util.List<Node> args) {
+        final Symbol name;
 
         switch (args.get(0).type()) {
             case SYMBOL:
-                name = args.get(0).toSymbolWord().getSymbol();
+                name = args.get(0).toSymbolWord().symbol();
                 break;
             case QUOTE:
-                name = args.get(0).toQuotedWord().getQuote();
+                name = args.get(0).toQuotedWord().symbol();
                 break;
             default:
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
         }
 
-        it.tracers().forEach(t -> t.local(name, it.env()));
+        if (it.tracing()) {
+            it.tracer().local(name.name(), it.env());
+        }
         it.env().local(name);
 
         return Node.nil();
     }
 
-    public Node make(Scope scope, java.util.List<Node> args) {
+    public Node make(Interpreter it, Scope scope, java.util.List<Node> args) {
         final Node newVar;
-        final String name;
+        final Symbol name;
 
         switch (args.get(0).type()) {
             case SYMBOL:
-                name = args.get(0).toSymbolWord().getSymbol();
+                name = args.get(0).toSymbolWord().symbol();
                 break;
             case QUOTE:
-                name = args.get(0).toQuotedWord().getQuote();
+                name = args.get(0).toQuotedWord().symbol();
                 break;
             default:
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
@@ -104,16 +105,16 @@ public class Control implements ProcedureProvider {
         return newVar;
     }
 
-    public Node localmake(Scope scope, java.util.List<Node> args) {
+    public Node localmake(Interpreter it, Scope scope, java.util.List<Node> args) {
         Node newVar = null;
-        String name = "";
+        Symbol name = null;
 
         switch (args.get(0).type()) {
             case SYMBOL:
-                name = args.get(0).toSymbolWord().getSymbol();
+                name = args.get(0).toSymbolWord().symbol();
                 break;
             case QUOTE:
-                name = args.get(0).toQuotedWord().getQuote();
+                name = args.get(0).toQuotedWord().symbol();
                 break;
             default:
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
@@ -126,15 +127,10 @@ public class Control implements ProcedureProvider {
         return newVar;
     }
 
-    private java.util.List<Node> ifexprsToRun;
-
-    public Node ifexpr(Scope scope, java.util.List<Node> args) {
-        Node result = Node.none();
-
-        if (ifexprsToRun == null) {
-
-            ifexprsToRun = new ArrayList<>();
+    public Node ifexpr(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
 
+        if (!frame.started()) {
             Node condition = args.get(0);
             Node iftrue = args.get(1);
 
@@ -143,40 +139,19 @@ public class Control implements ProcedureProvider {
             }
 
             if (condition.toBooleanWord().getBoolean()) {
-                Node ast = it.read(iftrue.toList());
-                ifexprsToRun.addAll(ast.getChildren());
+                return runBlock(it, frame, iftrue.toList());
             } else {
-                result = it.output(Node.nil());
                 return Node.nil();
             }
-
-        }
-
-        if (!ifexprsToRun.isEmpty()) {
-            Call next = ifexprsToRun.remove(0).toProcedureCall();
-            it.schedule(next);
         }
 
-        return result;
-    }
-
-    private Node ifexprFinished(Scope scope, Node result) {
-        if (ifexprsToRun.isEmpty()) {
-            ifexprsToRun = null;
-            return Node.bool(false);
-        } else {
-            return Node.bool(true);
-        }
+        return frame.result();
     }
 
-    private java.util.List<Node> ifelseexprsToRun;
-
-    public Node ifelseexpr(Scope scope, java.util.List<Node> args) {
-        Node result = Node.none();
-
-        if (ifelseexprsToRun == null) {
-            ifelseexprsToRun = new ArrayList<>();
+    public Node ifelseexpr(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
 
+        if (!frame.started()) {
             Node condition = args.get(0);
             Node iftrue = args.get(1);
             Node iffalse = args.get(2);
@@ -186,136 +161,91 @@ public class Control implements ProcedureProvider {
             }
 
             if (condition.toBooleanWord().getBoolean()) {
-                Node ast = it.read(iftrue.toList());
-                ifelseexprsToRun.addAll(ast.getChildren());
+                return runBlock(it, frame, iftrue.toList());
             } else {
-                Node ast = it.read(iffalse.toList());
-                ifelseexprsToRun.addAll(ast.getChildren());
+                return runBlock(it, frame, iffalse.toList());
             }
         }
 
-        if (!ifelseexprsToRun.isEmpty()) {
-            Call next = ifelseexprsToRun.remove(0).toProcedureCall();
-            it.schedule(next);
-        }
-
-        return result;
-    }
-
-    private Node ifelseexprFinished(Scope scope, Node result) {
-        if (ifelseexprsToRun.isEmpty()) {
-            ifelseexprsToRun = null;
-            return Node.bool(false);
-        } else {
-            return Node.bool(true);
-        }
+        return frame.result();
     }
 
-    private java.util.List<Node> repeatexprToRun;
-
-    public Node repeat(Scope scope, java.util.List<Node> args) {
-        Node result = Node.none();
-
-        if (repeatexprToRun == null) {
-            repeatexprToRun = new ArrayList<>();
-            
-            Node control = args.get(0);
-            Node block = args.get(1);
+    public Node repeat(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
+        Node control = args.get(0);
+        Node block = args.get(1);
 
+        if (!frame.started()) {
             if (!control.type().equals(NodeType.INTEGER)) {
-                if (!control.type().equals(NodeType.INTEGER)) {
-                    throw new NodeTypeException(control, control.type(), NodeType.INTEGER);
-                }
+                throw new NodeTypeException(control, control.type(), NodeType.INTEGER);
             }
 
             if (!block.type().equals(NodeType.LIST)) {
                 throw new NodeTypeException(block, block.type(), NodeType.LIST);
             }
 
-            Integer idx = control.toIntegerWord().getInteger();
-            result = Node.nil();
-            
-            for (int i = 0; i < idx; i++) {
-                Node ast = it.read(block.toList());
-                repeatexprToRun.addAll(ast.getChildren());
-//                result = run(scope, block.toList());
-            }
-        }
-        
-        if (!repeatexprToRun.isEmpty()) {
-            Call next = repeatexprToRun.remove(0).toProcedureCall();
-            it.schedule(next);
+            frame.repeats(control.toIntegerWord().getInteger());
         }
 
-        return result;
-    }
-    
-    private Node repeatexprFinished(Scope scope, Node result) {
-        if (repeatexprToRun.isEmpty()) {
-            repeatexprToRun = null;
-            return Node.bool(false);
-        } else {
-            return Node.bool(true);
+        // The block is read again for every iteration, procedures defined
+        // in the block may change how it is parsed
+        if (frame.repeats() > 0) {
+            frame.repeats(frame.repeats() - 1);
+            return runBlock(it, frame, block.toList());
         }
-    }
-
-    private java.util.List<Node> proceduresToRun;
 
-    public Node run(Scope scope, java.util.List<Node> args) {
+        return frame.result();
+    }
 
-        Node result = Node.none();
+    public Node run(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
 
-        if (proceduresToRun == null) {
-            proceduresToRun = new ArrayList<>();
-            Node ast = it.read(args.get(0).toList());
-            proceduresToRun.addAll(ast.getChildren());
+        if (!frame.started()) {
+            return runBlock(it, frame, args.get(0).toList());
         }
 
-        Call next = proceduresToRun.remove(0).toProcedureCall();
-        it.schedule(next);
-
-        return result;
+        return frame.result();
     }
 
-    private Node runFinished(Scope scope, Node result) {
-        if (proceduresToRun.isEmpty()) {
-            proceduresToRun = null;
-            return Node.bool(false);
-        } else {
-            return Node.bool(true);
-        }
+    /**
+     * Schedules the statements of the block. The interpreter applies the
+     * procedure again once they have finished, with the value of the last
+     * statement as result of the frame.
+     */
+    private Node runBlock(Interpreter it, Frame frame, List block) {
+        frame.started(true);
+        it.schedule(it.readBlock(block));
+        return Node.none();
     }
 
-    public Node output(Scope scope, java.util.List<Node> args) {
+    public Node output(Interpreter it, Scope scope, java.util.List<Node> args) {
         return it.output(args.get(0));
     }
 
-    public Node stop(Scope scope, java.util.List<Node> args) {
+    public Node stop(Interpreter it, Scope scope, java.util.List<Node> args) {
         return Node.nil();
     }
 
-    public Node pause(Scope scope, java.util.List<Node> arg) {
+    public Node pause(Interpreter it, Scope scope, java.util.List<Node> arg) {
         it.pause();
         return Node.nil();
     }
 
     @Override
     public Interpreter registerProcedures(Interpreter interpreter) {
-        this.it = interpreter;
-
-        it.env().define(new Procedure("alias", (scope, val) -> this.alias(scope, val), (scope, val) -> Node.none(), "__original__", "__alias__"));
-        it.env().define(new Procedure("thing", (scope, val) -> this.thing(scope, val), (scope, val) -> Node.none(), "__name__").macro());
-        it.env().define(new Procedure("make", (scope, val) -> this.make(scope, val), (scope, val) -> Node.none(), "__name__", "__value__").macro());
-        it.env().define(new Procedure("local", (scope, val) -> this.local(scope, val), (scope, val) -> Node.none(), "__name__").macro());
-        it.env().define(new Procedure("localmake", (scope, val) -> this.localmake(scope, val), (scope, val) -> Node.none(), "__name__", "__value__").macro());
-        it.env().define(new Procedure("repeat", (scope, val) -> this.repeat(scope, val), (scope, val) -> this.repeatexprFinished(scope, val), "__control__", "__block__").macro());
-        it.env().define(new Procedure("run", (scope, val) -> this.run(scope, val), (scope, val) -> this.runFinished(scope, val), "__block__").macro());
-        it.env().define(new Procedure("output", (scope, val) -> this.output(scope, val), (scope, val) -> Node.none(), "__block__"));
-        it.env().define(new Procedure("stop", (scope, val) -> this.output(scope, val), (scope, val) -> Node.none()));
-        it.env().define(new Procedure("ifelse", (scope, val) -> this.ifelseexpr(scope, val), (scope, val) -> this.ifelseexprFinished(scope, val), "__condition__", "__iftrue__", "__iffalse__").macro());
-        it.env().define(new Procedure("if", (scope, val) -> this.ifexpr(scope, val), (scope, val) -> this.ifexprFinished(scope, val), "__condition__", "__iftrue__").macro());
-        it.env().define(new Procedure("pause", (scope, val) -> this.pause(scope, val), (scope, val) -> Node.none()).macro());
-
-        return it;
+        interpreter.env().define(new Procedure("alias", (it, scope, val) -> this.alias(it, scope, val), (scope, val) -> Node.none(), "__original__", "__alias__"));
+        interpreter.env().define(new Procedure("thing", (it, scope, val) -> this.thing(it, scope, val), (scope, val) -> Node.none(), "__name__").macro());
+        interpreter.env().define(new Procedure("make", (it, scope, val) -> this.make(it, scope, val), (scope, val) -> Node.none(), "__name__", "__value__").macro());
+        interpreter.env().define(new Procedure("local", (it, scope, val) -> this.local(it, scope, val), (scope, val) -> Node.none(), "__name__").macro());
+        interpreter.env().define(new Procedure("localmake", (it, scope, val) -> this.localmake(it, scope, val), (scope, val) -> Node.none(), "__name__", "__value__").macro());
+        interpreter.env().define(new Procedure("repeat", (it, scope, val) -> this.repeat(it, scope, val), (scope, val) -> Node.none(), "__control__", "__block__").macro().control());
+        interpreter.env().define(new Procedure("run", (it, scope, val) -> this.run(it, scope, val), (scope, val) -> Node.none(), "__block__").macro().control());
+        interpreter.env().define(new Procedure("output", (it, scope, val) -> this.output(it, scope, val), (scope, val) -> Node.none(), "__block__"));
+        interpreter.env().define(new Procedure("stop", (it, scope, val) -> this.output(it, scope, val), (scope, val) -> Node.none()));
+        interpreter.env().define(new Procedure("ifelse", (it, scope, val) -> this.ifelseexpr(it, scope, val), (scope, val) -> Node.none(), "__condition__", "__iftrue__", "__iffalse__").macro().control());
+        interpreter.env().define(new Procedure("if", (it, scope, val) -> this.ifexpr(it, scope, val), (scope, val) -> Node.none(), "__condition__", "__iftrue__").macro().control());
+        interpreter.env().define(new Procedure("pause", (it, scope, val) -> this.pause(it, scope, val), (scope, val) -> Node.none()).macro().control());
+
+        return interpreter;
     }
 }
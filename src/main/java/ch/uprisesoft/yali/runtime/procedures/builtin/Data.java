@@ -15,6 +15,7 @@
  */
 package ch.uprisesoft.yali.runtime.procedures.builtin;
 
+import ch.uprisesoft.yali.ast.node.Array;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
@@ -23,7 +24,6 @@ import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.ast.node.word.BooleanWord;
 import ch.uprisesoft.yali.ast.node.word.QuotedWord;
 import ch.uprisesoft.yali.ast.node.word.SymbolWord;
-import ch.uprisesoft.yali.ast.node.word.Word;
 import java.util.ArrayList;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.scope.Scope;
@@ -37,16 +37,12 @@ import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
  */
 public class Data implements ProcedureProvider {
 
-    private Interpreter it;
-
     // Constructors
     public Node reverse(Scope scope, java.util.List<Node> args) {
         if (args.get(0).type().equals(NodeType.LIST)) {
-            List resultList = new List();
-            java.util.List<Node> forwardList = args.get(0).getChildren();
-            Collections.reverse(forwardList);
-            resultList.addChildren(forwardList);
-            return resultList;
+            java.util.List<Node> reversed = new ArrayList<>(args.get(0).getChildren());
+            Collections.reverse(reversed);
+            return new List(reversed);
         } else if (args.get(0).type().equals(NodeType.QUOTE)) {
             StringBuilder resultString = new StringBuilder(args.get(0).toQuotedWord().getQuote());
             return new QuotedWord(resultString.reverse().toString());
@@ -60,10 +56,7 @@ public class Data implements ProcedureProvider {
 
     public Node fput(Scope scope, java.util.List<Node> args) {
         if (args.get(1).type().equals(NodeType.LIST)) {
-            List resultList = new List();
-            resultList.addChild(args.get(0));
-            resultList.addChildren(args.get(1).getChildren());
-            return resultList;
+            return args.get(1).toList().fput(args.get(0));
         } else if (args.get(1).type().equals(NodeType.QUOTE)) {
             StringBuilder resultString = new StringBuilder(args.get(0).toQuotedWord().getQuote()).append(args.get(1).toQuotedWord().getQuote());
             return new QuotedWord(resultString.toString());
@@ -77,10 +70,7 @@ public class Data implements ProcedureProvider {
 
     public Node lput(Scope scope, java.util.List<Node> args) {
         if (args.get(1).type().equals(NodeType.LIST)) {
-            List resultList = new List();
-            resultList.addChildren(args.get(1).getChildren());
-            resultList.addChild(args.get(0));
-            return resultList;
+            return args.get(1).toList().lput(args.get(0));
         } else if (args.get(1).type().equals(NodeType.QUOTE)) {
             StringBuilder resultString = new StringBuilder().append(args.get(1).toQuotedWord().getQuote()).append(args.get(0).toQuotedWord().getQuote());
             return new QuotedWord(resultString.toString());
@@ -92,6 +82,68 @@ public class Data implements ProcedureProvider {
         }
     }
 
+    public Node array(Scope scope, java.util.List<Node> args) {
+        return new Array(size(args.get(0)), origin(args));
+    }
+
+    public Node mdarray(Scope scope, java.util.List<Node> args) {
+        java.util.List<Node> children = args.get(0).toList().getChildren();
+        int[] dimensions = new int[children.size()];
+        long cells = 1;
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = size(children.get(i));
+            cells *= dimensions[i];
+            if (cells > Integer.MAX_VALUE) {
+                throw new NodeTypeException(children.get(i), children.get(i).type(), NodeType.INTEGER);
+            }
+        }
+        return new Array(dimensions, origin(args));
+    }
+
+    public Node listtoarray(Scope scope, java.util.List<Node> args) {
+        return new Array(args.get(0).toList().getChildren(), origin(args));
+    }
+
+    public Node arraytolist(Scope scope, java.util.List<Node> args) {
+        return new List(args.get(0).toArray().items());
+    }
+
+    private int origin(java.util.List<Node> args) {
+        return args.size() > 1 ? integer(args.get(1)) : 1;
+    }
+
+    private int integer(Node node) {
+        if (node.type().equals(NodeType.INTEGER)) {
+            return node.toIntegerWord().getInteger();
+        }
+        // Numbers in list literals are read as words
+        if (node.type().equals(NodeType.SYMBOL) || node.type().equals(NodeType.QUOTE)) {
+            try {
+                return Integer.parseInt(node.toString());
+            } catch (NumberFormatException e) {
+                // Not a number, fall through
+            }
+        }
+        throw new NodeTypeException(node, node.type(), NodeType.INTEGER);
+    }
+
+    private int size(Node node) {
+        int size = integer(node);
+        if (size < 0) {
+            throw new NodeTypeException(node, node.type(), NodeType.INTEGER);
+        }
+        return size;
+    }
+
+    private int[] indices(Node node) {
+        java.util.List<Node> children = node.toList().getChildren();
+        int[] indices = new int[children.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = integer(children.get(i));
+        }
+        return indices;
+    }
+
     public Node word(Scope scope, java.util.List<Node> args) {
         String concatenated = "";
 
@@ -176,10 +228,10 @@ public class Data implements ProcedureProvider {
                 first = first.getChildren().get(0);
                 break;
             case QUOTE:
-                first = new QuotedWord(first.toQuotedWord().toString().substring(0, 1));
+                first = QuotedWord.of(first.toQuotedWord().toString().substring(0, 1));
                 break;
             case SYMBOL:
-                first = new SymbolWord(first.toSymbolWord().getSymbol().substring(0, 1));
+                first = SymbolWord.of(first.toSymbolWord().getSymbol().substring(0, 1));
                 break;
             default:
                 throw new NodeTypeException(first, args.get(0).type(), NodeType.LIST);
@@ -197,12 +249,12 @@ public class Data implements ProcedureProvider {
                 last = last.getChildren().get(last.getChildren().size() - 1);
                 break;
             case QUOTE:
-                last = new QuotedWord(last.toQuotedWord().toString().substring(
+                last = QuotedWord.of(last.toQuotedWord().toString().substring(
                         last.toQuotedWord().toString().length() - 1,
                         last.toQuotedWord().toString().length()));
                 break;
             case SYMBOL:
-                last = new QuotedWord(args.get(0).toSymbolWord().getSymbol().substring(
+                last = QuotedWord.of(args.get(0).toSymbolWord().getSymbol().substring(
                         last.toSymbolWord().getSymbol().length() - 1,
                         last.toSymbolWord().getSymbol().length()));
                 break;
@@ -219,16 +271,15 @@ public class Data implements ProcedureProvider {
 
         switch (args.get(0).type()) {
             case LIST:
-                butfirst = new List();
-                butfirst.addChildren(args.get(0).getChildren().subList(1, args.get(0).getChildren().size()));
+                butfirst = args.get(0).toList().butfirst();
                 break;
             case QUOTE:
-                butfirst = new QuotedWord(args.get(0).toQuotedWord().toString().substring(
+                butfirst = QuotedWord.of(args.get(0).toQuotedWord().toString().substring(
                         1,
                         args.get(0).toQuotedWord().toString().length()));
                 break;
             case SYMBOL:
-                butfirst = new QuotedWord(args.get(0).toSymbolWord().getSymbol().substring(
+                butfirst = QuotedWord.of(args.get(0).toSymbolWord().getSymbol().substring(
                         1,
                         args.get(0).toSymbolWord().getSymbol().length()));
                 break;
@@ -245,16 +296,15 @@ public class Data implements ProcedureProvider {
 
         switch (args.get(0).type()) {
             case LIST:
-                butlast = new List();
-                butlast.addChildren(args.get(0).getChildren().subList(0, args.get(0).getChildren().size() - 1));
+                butlast = args.get(0).toList().butlast();
                 break;
             case QUOTE:
-                butlast = new QuotedWord(args.get(0).toQuotedWord().toString().substring(
+                butlast = QuotedWord.of(args.get(0).toQuotedWord().toString().substring(
                         0,
                         args.get(0).toQuotedWord().toString().length() - 1));
                 break;
             case SYMBOL:
-                butlast = new QuotedWord(args.get(0).toSymbolWord().getSymbol().substring(
+                butlast = QuotedWord.of(args.get(0).toSymbolWord().getSymbol().substring(
                         0,
                         args.get(0).toSymbolWord().getSymbol().length() - 1));
                 break;
@@ -279,13 +329,20 @@ public class Data implements ProcedureProvider {
             case LIST:
                 item = args.get(1).getChildren().get(index.toIntegerWord().getInteger() - 1);
                 break;
+            case ARRAY:
+                try {
+                    item = args.get(1).toArray().item(index.toIntegerWord().getInteger());
+                } catch (IndexOutOfBoundsException e) {
+                    throw new NodeTypeException(index, index.type(), NodeType.INTEGER);
+                }
+                break;
             case QUOTE:
-                item = new QuotedWord(String.valueOf(
+                item = QuotedWord.of(String.valueOf(
                         args.get(1).toQuotedWord().getQuote().charAt(
                                 index.toIntegerWord().getInteger() - 1)));
                 break;
             case SYMBOL:
-                item = new SymbolWord(String.valueOf(
+                item = SymbolWord.of(String.valueOf(
                         args.get(1).toSymbolWord().getSymbol().charAt(
                                 index.toIntegerWord().getInteger() - 1)));
                 break;
@@ -296,6 +353,14 @@ public class Data implements ProcedureProvider {
         return item;
     }
 
+    public Node mditem(Scope scope, java.util.List<Node> args) {
+        try {
+            return args.get(1).toArray().item(indices(args.get(0)));
+        } catch (IndexOutOfBoundsException e) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        }
+    }
+
     // Mutators
     public Node setitem(Scope scope, java.util.List<Node> args) {
 
@@ -308,8 +373,17 @@ public class Data implements ProcedureProvider {
             throw new NodeTypeException(index, index.type(), NodeType.INTEGER);
         }
 
+        if (list.type().equals(NodeType.ARRAY)) {
+            try {
+                list.toArray().setItem(index.toIntegerWord().getInteger(), newVal);
+            } catch (IndexOutOfBoundsException e) {
+                throw new NodeTypeException(index, index.type(), NodeType.INTEGER);
+            }
+            return list;
+        }
+
         if (!list.type().equals(NodeType.LIST)) {
-            throw new NodeTypeException(list, list.type(), NodeType.LIST);
+            throw new NodeTypeException(list, list.type(), NodeType.LIST, NodeType.ARRAY);
         }
 
         list.getChildren().set(index.toIntegerWord().getInteger() - 1, newVal);
@@ -317,14 +391,24 @@ public class Data implements ProcedureProvider {
         return list;
     }
 
+    public Node mdsetitem(Scope scope, java.util.List<Node> args) {
+        Node array = args.get(1);
+        try {
+            array.toArray().setItem(indices(args.get(0)), args.get(2));
+        } catch (IndexOutOfBoundsException e) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        }
+        return array;
+    }
+
     // Predicates
     public Node emptyp(Scope scope, java.util.List<Node> args) {
 
         Node list = args.get(0);
-        Node empty = new BooleanWord(Boolean.FALSE);
+        Node empty = BooleanWord.FALSE;
 
         if (list.type().equals(NodeType.LIST) && list.getChildren().isEmpty()) {
-            empty = new BooleanWord(Boolean.TRUE);
+            empty = BooleanWord.TRUE;
         }
 
         return empty;
@@ -333,10 +417,10 @@ public class Data implements ProcedureProvider {
     public Node wordp(Scope scope, java.util.List<Node> args) {
 
         Node word = args.get(0);
-        Node wordp = new BooleanWord(Boolean.FALSE);
+        Node wordp = BooleanWord.FALSE;
 
-        if (word.type().equals(NodeType.QUOTE) || word.type().equals(NodeType.SYMBOL) || word.type().equals(NodeType.INTEGER) || word.type().equals(NodeType.FLOAT)) {
-            wordp = new BooleanWord(Boolean.TRUE);
+        if (word.type().equals(NodeType.QUOTE) || word.type().equals(NodeType.SYMBOL) || word.type().equals(NodeType.INTEGER) || word.type().equals(NodeType.BIGINTEGER) || word.type().equals(NodeType.FLOAT)) {
+            wordp = BooleanWord.TRUE;
         }
 
         return wordp;
@@ -345,10 +429,10 @@ public class Data implements ProcedureProvider {
     public Node numberp(Scope scope, java.util.List<Node> args) {
 
         Node word = args.get(0);
-        Node wordp = new BooleanWord(Boolean.FALSE);
+        Node wordp = BooleanWord.FALSE;
 
-        if (word.type().equals(NodeType.INTEGER) || word.type().equals(NodeType.FLOAT)) {
-            wordp = new BooleanWord(Boolean.TRUE);
+        if (word.type().equals(NodeType.INTEGER) || word.type().equals(NodeType.BIGINTEGER) || word.type().equals(NodeType.FLOAT)) {
+            wordp = BooleanWord.TRUE;
         }
 
         return wordp;
@@ -357,20 +441,24 @@ public class Data implements ProcedureProvider {
     public Node listp(Scope scope, java.util.List<Node> args) {
 
         Node list = args.get(0);
-        Node listp = new BooleanWord(Boolean.FALSE);
+        Node listp = BooleanWord.FALSE;
 
         if (list.type().equals(NodeType.LIST)) {
-            listp = new BooleanWord(Boolean.TRUE);
+            listp = BooleanWord.TRUE;
         }
 
         return listp;
     }
 
+    public Node arrayp(Scope scope, java.util.List<Node> args) {
+        return BooleanWord.of(args.get(0).type().equals(NodeType.ARRAY));
+    }
+
     public Node equalp(Scope scope, java.util.List<Node> args) {
 
         Node fst = args.get(0);
         Node snd = args.get(1);
-        Node equalp = new BooleanWord(fst.equals(snd));
+        Node equalp = BooleanWord.of(fst.equals(snd));
 
         return equalp;
     }
@@ -380,22 +468,19 @@ public class Data implements ProcedureProvider {
         Node member = args.get(0);
         Node list = args.get(1);
 
-        Node result = Word.bool(false);
-
         if (!list.type().equals(NodeType.LIST)) {
             throw new NodeTypeException(list, list.type(), NodeType.LIST);
         }
 
+        // Hashes of lists are cached, so mismatches cost one comparison
+        int hash = member.hashCode();
         for (Node lm : list.getChildren()) {
-            if (lm.hashCode() == member.hashCode()) {
-                java.util.List<Node> subArgs = new ArrayList<>();
-                subArgs.add(member);
-                subArgs.add(lm);
-                result = equalp(scope, subArgs);
+            if (lm == member || (lm.hashCode() == hash && lm.equals(member))) {
+                return BooleanWord.TRUE;
             }
         }
 
-        return result.toBooleanWord();
+        return BooleanWord.FALSE;
     }
 
     // Queries
@@ -407,6 +492,14 @@ public class Data implements ProcedureProvider {
             return Node.integer(element.getChildren().size());
         }
 
+        if (element.type().equals(NodeType.ARRAY)) {
+            return Node.integer(element.toArray().size());
+        }
+
+        if (element.type().equals(NodeType.DICTIONARY)) {
+            return Node.integer(element.toDictionary().size());
+        }
+
         if (element.type().equals(NodeType.QUOTE)) {
             return Node.integer(element.toQuotedWord().getQuote().length());
         }
@@ -470,8 +563,6 @@ public class Data implements ProcedureProvider {
 
     @Override
     public Interpreter registerProcedures(Interpreter it) {
-        this.it = it;
-
         it.env().define(new Procedure("uppercase", (scope, val) -> this.uppercase(scope, val), (scope, val) -> Node.none(), "__element__"));
         it.env().define(new Procedure("lowercase", (scope, val) -> this.lowercase(scope, val), (scope, val) -> Node.none(), "__element__"));
         it.env().define(new Procedure("count", (scope, val) -> this.count(scope, val), (scope, val) -> Node.none(), "__element__"));
@@ -481,6 +572,13 @@ public class Data implements ProcedureProvider {
         it.env().define(new Procedure("number?", (scope, val) -> this.numberp(scope, val), (scope, val) -> Node.none(), "__number__"));
         it.env().define(new Procedure("word?", (scope, val) -> this.wordp(scope, val), (scope, val) -> Node.none(), "__word__"));
         it.env().define(new Procedure("empty?", (scope, val) -> this.emptyp(scope, val), (scope, val) -> Node.none(), "__list__"));
+        it.env().define(new Procedure("array?", (scope, val) -> this.arrayp(scope, val), (scope, val) -> Node.none(), "__array__"));
+        it.env().define(new Procedure("mdsetitem", (scope, val) -> this.mdsetitem(scope, val), (scope, val) -> Node.none(), "__indices__", "__array__", "__newval__"));
+        it.env().define(new Procedure("mditem", (scope, val) -> this.mditem(scope, val), (scope, val) -> Node.none(), "__indices__", "__array__"));
+        it.env().define(new Procedure("arraytolist", (scope, val) -> this.arraytolist(scope, val), (scope, val) -> Node.none(), "__array__"));
+        it.env().define(new Procedure("listtoarray", (scope, val) -> this.listtoarray(scope, val), (scope, val) -> Node.none(), "__list__"));
+        it.env().define(new Procedure("mdarray", (scope, val) -> this.mdarray(scope, val), (scope, val) -> Node.none(), "__sizes__"));
+        it.env().define(new Procedure("array", (scope, val) -> this.array(scope, val), (scope, val) -> Node.none(), "__size__"));
         it.env().define(new Procedure("setitem", (scope, val) -> this.setitem(scope, val), (scope, val) -> Node.none(), "__index__", "__list__", "__newval__"));
         it.env().define(new Procedure("item", (scope, val) -> this.item(scope, val), (scope, val) -> Node.none(), "__index__", "__listorword__"));
         it.env().define(new Procedure("butlast", (scope, val) -> this.butlast(scope, val), (scope, val) -> Node.none(), "__listorword__"));
@@ -22,10 +22,6 @@ import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.ast.node.word.QuotedWord;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
-import ch.uprisesoft.yali.runtime.io.InputGenerator;
-import ch.uprisesoft.yali.runtime.io.InputReceiver;
-import ch.uprisesoft.yali.runtime.io.OutputObserver;
-import ch.uprisesoft.yali.runtime.io.OutputSubject;
 import ch.uprisesoft.yali.scope.Scope;
 import java.util.ArrayList;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
@@ -34,13 +30,9 @@ import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
  *
  * @author rma
  */
-public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
+public class IO implements ProcedureProvider {
 
-    private java.util.List<OutputObserver> observers = new ArrayList<>();
-    private InputGenerator generator;
-    private Interpreter it;
-
-    public Node print(Scope scope, java.util.List<Node> args) {
+    public Node print(Interpreter it, Scope scope, java.util.List<Node> args) {
         java.util.List<Node> concreteArgs = new ArrayList<>();
         
         List ret = new List();
@@ -62,24 +54,24 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         stringifiedArgs.addAll(it.stringify(concreteArgs));
 
-        inform(String.join(" ", stringifiedArgs) + "\n");
+        it.write(String.join(" ", stringifiedArgs) + "\n");
 
         return ret;
     }
 
-    public Node show(Scope scope, java.util.List<Node> args) {
+    public Node show(Interpreter it, Scope scope, java.util.List<Node> args) {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         stringifiedArgs.addAll(it.stringify(args));
 
-        inform(String.join(" ", stringifiedArgs) + "\n");
+        it.write(String.join(" ", stringifiedArgs) + "\n");
         return Node.nil();
     }
 
-    public Node type(Scope scope, java.util.List<Node> args) {
+    public Node type(Interpreter it, Scope scope, java.util.List<Node> args) {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         stringifiedArgs.addAll(it.stringify(args));
 
-        inform(String.join(" ", stringifiedArgs));
+        it.write(String.join(" ", stringifiedArgs));
         return Node.nil();
     }
 
@@ -102,16 +94,29 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
 //        return stringifiedArgs;
 //    }
 
-    public Node readword(Scope scope, java.util.List<Node> args) {
-        QuotedWord result = new QuotedWord(requestLine());
+    // Without a line at hand, readword and readlist pause and are applied
+    // again once resumed
+    public Node readword(Interpreter it, Scope scope, java.util.List<Node> args) {
+        String line = it.requestLine();
+        if (line == null) {
+            it.pause();
+            return Node.none();
+        }
+
+        QuotedWord result = new QuotedWord(line);
         return result;
     }
 
-    public Node readlist(Scope scope, java.util.List<Node> args) {
+    public Node readlist(Interpreter it, Scope scope, java.util.List<Node> args) {
+        String line = it.requestLine();
+        if (line == null) {
+            it.pause();
+            return Node.none();
+        }
 
         StringBuffer list = new StringBuffer();
         list.append("[");
-        list.append(requestLine());
+        list.append(line);
         list.append("]");
 
         List result = (List) it.read(list.toString());
@@ -119,44 +124,18 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
         return result;
     }
 
-    @Override
-    public Interpreter registerProcedures(Interpreter it) {
-        this.it = it;
-        
-        it.env().define(new Procedure("readword", (scope, val) -> this.readword(scope, val), (scope, val) -> Node.none()));
-        it.env().define(new Procedure("readlist", (scope, val) -> this.readlist(scope, val), (scope, val) -> Node.none()));
-        it.env().define(new Procedure("show", (scope, val) -> this.show(scope, val), (scope, val) -> Node.none(), "__output__"));
-        it.env().define(new Procedure("type", (scope, val) -> this.type(scope, val), (scope, val) -> Node.none(), "__output__"));
-        it.env().define(new Procedure("print", (scope, val) -> this.print(scope, val), (scope, val) -> Node.none(), "__output__"));
-
-        return it;
-    }
-
-    @Override
-    public void register(InputGenerator generator) {
-        this.generator = generator;
+    private Node waiting(Node result) {
+        return Node.bool(result.type() == NodeType.NONE);
     }
 
     @Override
-    public void register(OutputObserver observer) {
-        observers.add(observer);
-    }
-
-    private void inform(String output) {
-        for (OutputObserver oo : observers) {
-            oo.inform(output);
-        }
-    }
-
-    private String request() {
-        return generator.request();
-    }
-
-    private String requestLine() {
-        if (generator == null) {
-            return "";
-        }
-
-        return generator.requestLine();
+    public Interpreter registerProcedures(Interpreter interpreter) {
+        interpreter.env().define(new Procedure("readword", (it, scope, val) -> this.readword(it, scope, val), (scope, val) -> waiting(val)).control());
+        interpreter.env().define(new Procedure("readlist", (it, scope, val) -> this.readlist(it, scope, val), (scope, val) -> waiting(val)).control());
+        interpreter.env().define(new Procedure("show", (it, scope, val) -> this.show(it, scope, val), (scope, val) -> Node.none(), "__output__"));
+        interpreter.env().define(new Procedure("type", (it, scope, val) -> this.type(it, scope, val), (scope, val) -> Node.none(), "__output__"));
+        interpreter.env().define(new Procedure("print", (it, scope, val) -> this.print(it, scope, val), (scope, val) -> Node.none(), "__output__"));
+
+        return interpreter;
     }
 }
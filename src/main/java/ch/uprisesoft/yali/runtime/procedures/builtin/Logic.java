@@ -17,13 +17,12 @@ package ch.uprisesoft.yali.runtime.procedures.builtin;
 
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.Node;
-import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.ast.node.word.BooleanWord;
-import ch.uprisesoft.yali.ast.node.word.Word;
-import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.scope.Scope;
+import ch.uprisesoft.yali.runtime.procedures.Operator;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import java.math.BigInteger;
 
 /**
  *
@@ -31,130 +30,167 @@ import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
  */
 public class Logic implements ProcedureProvider {
 
-    private Interpreter it;
+    public static final Operator EQUAL = new Operator("equal?") {
+        @Override
+        public Node longs(long left, long right) {
+            return BooleanWord.of(left == right);
+        }
 
-    public Node equal(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
-
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getInteger().equals(right.getInteger()));
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getFloat().equals(right.getFloat()));
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(Double.valueOf(left.getInteger().toString()).equals(right.getFloat()));
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getFloat().equals(Double.valueOf(right.getInteger().toString())));
-        } else if (left.type().equals(NodeType.QUOTE) && right.type().equals(NodeType.QUOTE)) {
-            return Word.bool(left.getQuote().equals(right.getQuote()));
-        } else if (left.type().equals(NodeType.SYMBOL) && right.type().equals(NodeType.SYMBOL)) {
-            return Word.bool(left.getSymbol().equals(right.getSymbol()));
-        } else if (left.type().equals(NodeType.BOOLEAN) && right.type().equals(NodeType.BOOLEAN)) {
-            return Word.bool(left.getBoolean().equals(right.getBoolean()));
-        }
-
-        return Word.bool(Boolean.FALSE);
-    }
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return BooleanWord.of(left.equals(right));
+        }
 
-    public Node inequal(Scope scope, java.util.List<Node> args) {
-        Node result = equal(scope, args);
-        if (result.toBooleanWord().getBoolean()) {
-            return new BooleanWord(Boolean.FALSE);
-        } else {
-            return new BooleanWord(Boolean.TRUE);
+        @Override
+        public Node floats(double left, double right) {
+            return BooleanWord.of(Double.doubleToLongBits(left) == Double.doubleToLongBits(right));
         }
-    }
 
-    public Node greater(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
-        
-        if(!(left.type().equals(NodeType.FLOAT) || left.type().equals(NodeType.INTEGER))) {
-            throw new NodeTypeException(Node.symbol("greater?"), left.type(), NodeType.NUMBER);
+        @Override
+        protected Node other(Node left, Node right) {
+            return BooleanWord.of(left.equals(right));
         }
-        
-        if(!(right.type().equals(NodeType.FLOAT) || right.type().equals(NodeType.INTEGER))) {
-            throw new NodeTypeException(Node.symbol("greater?"), right.type(), NodeType.NUMBER);
+    };
+
+    public static final Operator NOTEQUAL = new Operator("notequal?") {
+        @Override
+        public Node longs(long left, long right) {
+            return negate(EQUAL.longs(left, right));
         }
 
-        Word result = Node.bool(Boolean.FALSE);
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return negate(EQUAL.bigs(left, right));
+        }
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getInteger() > right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            result = Word.bool(left.getFloat() > right.getFloat());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            result = Word.bool(left.getInteger() > right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getFloat() > right.getInteger());
+        @Override
+        public Node floats(double left, double right) {
+            return negate(EQUAL.floats(left, right));
         }
 
-        return result;
-    }
+        @Override
+        protected Node other(Node left, Node right) {
+            return negate(EQUAL.apply(left, right));
+        }
+    };
 
-    public Node less(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
+    public static final Operator GREATER = new Operator("greater?") {
+        @Override
+        public Node longs(long left, long right) {
+            return BooleanWord.of(left > right);
+        }
 
-        Word result = Node.bool(Boolean.FALSE);
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return BooleanWord.of(left.compareTo(right) > 0);
+        }
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getInteger() < right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            result = Word.bool(left.getFloat() < right.getFloat());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            result = Word.bool(left.getInteger() < right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getFloat() < right.getInteger());
+        @Override
+        public Node floats(double left, double right) {
+            return BooleanWord.of(left > right);
         }
+    };
 
-        return result;
-    }
+    public static final Operator LESS = new Comparison("less?") {
+        @Override
+        public Node longs(long left, long right) {
+            return BooleanWord.of(left < right);
+        }
 
-    public Node greaterorequal(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return BooleanWord.of(left.compareTo(right) < 0);
+        }
+
+        @Override
+        public Node floats(double left, double right) {
+            return BooleanWord.of(left < right);
+        }
+    };
+
+    public static final Operator GREATEREQUAL = new Comparison("greaterequal?") {
+        @Override
+        public Node longs(long left, long right) {
+            return BooleanWord.of(left >= right);
+        }
+
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return BooleanWord.of(left.compareTo(right) >= 0);
+        }
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getInteger() >= right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getFloat() >= right.getFloat());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getInteger() >= right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getFloat() >= right.getInteger());
+        @Override
+        public Node floats(double left, double right) {
+            return BooleanWord.of(left >= right);
         }
+    };
 
-        return Word.bool(Boolean.FALSE);
+    public static final Operator LESSEQUAL = new Comparison("lessequal?") {
+        @Override
+        public Node longs(long left, long right) {
+            return BooleanWord.of(left <= right);
+        }
+
+        @Override
+        public Node bigs(BigInteger left, BigInteger right) {
+            return BooleanWord.of(left.compareTo(right) <= 0);
+        }
+
+        @Override
+        public Node floats(double left, double right) {
+            return BooleanWord.of(left <= right);
+        }
+    };
+
+    public Node equal(Scope scope, java.util.List<Node> args) {
+        return EQUAL.apply(args.get(0), args.get(1));
+    }
+
+    public Node inequal(Scope scope, java.util.List<Node> args) {
+        return NOTEQUAL.apply(args.get(0), args.get(1));
+    }
+
+    public Node greater(Scope scope, java.util.List<Node> args) {
+        return GREATER.apply(args.get(0), args.get(1));
+    }
+
+    public Node less(Scope scope, java.util.List<Node> args) {
+        return LESS.apply(args.get(0), args.get(1));
+    }
+
+    public Node greaterorequal(Scope scope, java.util.List<Node> args) {
+        return GREATEREQUAL.apply(args.get(0), args.get(1));
     }
 
     public Node lessorequal(Scope scope, java.util.List<Node> args) {
-        Word left = (Word) args.get(0);
-        Word right = (Word) args.get(1);
+        return LESSEQUAL.apply(args.get(0), args.get(1));
+    }
+
+    private static Node negate(Node result) {
+        return result.toBooleanWord().getBoolean() ? BooleanWord.FALSE : BooleanWord.TRUE;
+    }
+
+    // Comparisons other than greater? are false for anything but numbers
+    private abstract static class Comparison extends Operator {
 
-        if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getInteger() <= right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getFloat() <= right.getFloat());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getInteger() <= right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getFloat() <= right.getInteger());
+        Comparison(String name) {
+            super(name);
         }
 
-        return Word.bool(Boolean.FALSE);
+        @Override
+        protected Node other(Node left, Node right) {
+            return BooleanWord.FALSE;
+        }
     }
 
     @Override
     public Interpreter registerProcedures(Interpreter it) {
-        this.it = it;
-
-        it.env().define(new Procedure("equal?", (scope, val) -> this.equal(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("notequal?", (scope, val) -> this.inequal(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("less?", (scope, val) -> this.less(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("greater?", (scope, val) -> this.greater(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
-        it.env().define(new Procedure("greaterequal?", (scope, val) -> this.greaterorequal(scope, val), (scope, val) -> Node.none(), "__fst", "__snd__"));
-        it.env().define(new Procedure("lessequal?", (scope, val) -> this.lessorequal(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__"));
+        it.env().define(new Procedure("equal?", (scope, val) -> this.equal(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(EQUAL));
+        it.env().define(new Procedure("notequal?", (scope, val) -> this.inequal(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(NOTEQUAL));
+        it.env().define(new Procedure("less?", (scope, val) -> this.less(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(LESS));
+        it.env().define(new Procedure("greater?", (scope, val) -> this.greater(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(GREATER));
+        it.env().define(new Procedure("greaterequal?", (scope, val) -> this.greaterorequal(scope, val), (scope, val) -> Node.none(), "__fst", "__snd__").operator(GREATEREQUAL));
+        it.env().define(new Procedure("lessequal?", (scope, val) -> this.lessorequal(scope, val), (scope, val) -> Node.none(), "__fst__", "__snd__").operator(LESSEQUAL));
 
         return it;
     }
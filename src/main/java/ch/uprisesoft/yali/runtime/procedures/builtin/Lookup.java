@@ -0,0 +1,130 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.procedures.builtin;
+
+import ch.uprisesoft.yali.ast.node.Dictionary;
+import ch.uprisesoft.yali.ast.node.List;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.ast.node.word.BooleanWord;
+import ch.uprisesoft.yali.ast.node.word.SymbolWord;
+import ch.uprisesoft.yali.ast.node.word.Word;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.lexer.Symbol;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import ch.uprisesoft.yali.scope.Scope;
+import java.util.Map;
+
+/**
+ * Property lists and dictionaries, both hashed.
+ *
+ * @author uprisesoft@gmail.com
+ */
+public class Lookup implements ProcedureProvider {
+
+    // Property lists are kept by the environment. Names of property lists
+    // and properties are case insensitive, like variable names.
+    public Node pprop(Interpreter it, Scope scope, java.util.List<Node> args) {
+        it.env().pprop(name(args.get(0)), name(args.get(1)), args.get(2));
+        return Node.nil();
+    }
+
+    public Node gprop(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Node value = it.env().plist(name(args.get(0))).get(name(args.get(1)));
+        return value == null ? new List() : value;
+    }
+
+    public Node remprop(Interpreter it, Scope scope, java.util.List<Node> args) {
+        it.env().remprop(name(args.get(0)), name(args.get(1)));
+        return Node.nil();
+    }
+
+    public Node plist(Interpreter it, Scope scope, java.util.List<Node> args) {
+        List result = new List();
+        for (Map.Entry<Symbol, Node> property : it.env().plist(name(args.get(0))).entrySet()) {
+            result.addChild(SymbolWord.of(property.getKey().name()));
+            result.addChild(property.getValue());
+        }
+        return result;
+    }
+
+    private Symbol name(Node node) {
+        switch (node.type()) {
+            case SYMBOL:
+                return node.toSymbolWord().symbol();
+            case QUOTE:
+                return node.toQuotedWord().symbol();
+            default:
+                if (node instanceof Word && !node.type().equals(NodeType.NIL) && !node.type().equals(NodeType.NONE)) {
+                    return Symbol.of(node.toString());
+                }
+                throw new NodeTypeException(node, node.type(), NodeType.SYMBOL, NodeType.QUOTE);
+        }
+    }
+
+    // Dictionaries
+    public Node dictionary(Scope scope, java.util.List<Node> args) {
+        return new Dictionary();
+    }
+
+    public Node setvalue(Scope scope, java.util.List<Node> args) {
+        Node dictionary = args.get(1);
+        dictionary.toDictionary().put(args.get(0), args.get(2));
+        return dictionary;
+    }
+
+    public Node getvalue(Scope scope, java.util.List<Node> args) {
+        Node value = args.get(1).toDictionary().get(args.get(0));
+        return value == null ? new List() : value;
+    }
+
+    public Node remvalue(Scope scope, java.util.List<Node> args) {
+        Node dictionary = args.get(1);
+        dictionary.toDictionary().remove(args.get(0));
+        return dictionary;
+    }
+
+    public Node keyp(Scope scope, java.util.List<Node> args) {
+        return BooleanWord.of(args.get(1).toDictionary().contains(args.get(0)));
+    }
+
+    public Node keys(Scope scope, java.util.List<Node> args) {
+        return new List(args.get(0).toDictionary().keys());
+    }
+
+    public Node dictionaryp(Scope scope, java.util.List<Node> args) {
+        return BooleanWord.of(args.get(0).type().equals(NodeType.DICTIONARY));
+    }
+
+    @Override
+    public Interpreter registerProcedures(Interpreter interpreter) {
+        interpreter.env().define(new Procedure("pprop", (it, scope, val) -> this.pprop(it, scope, val), (scope, val) -> Node.none(), "__plist__", "__prop__", "__value__"));
+        interpreter.env().define(new Procedure("gprop", (it, scope, val) -> this.gprop(it, scope, val), (scope, val) -> Node.none(), "__plist__", "__prop__"));
+        interpreter.env().define(new Procedure("remprop", (it, scope, val) -> this.remprop(it, scope, val), (scope, val) -> Node.none(), "__plist__", "__prop__"));
+        interpreter.env().define(new Procedure("plist", (it, scope, val) -> this.plist(it, scope, val), (scope, val) -> Node.none(), "__plist__"));
+        interpreter.env().define(new Procedure("dictionary", (scope, val) -> this.dictionary(scope, val), (scope, val) -> Node.none()));
+        interpreter.env().define(new Procedure("setvalue", (scope, val) -> this.setvalue(scope, val), (scope, val) -> Node.none(), "__key__", "__dictionary__", "__value__"));
+        interpreter.env().define(new Procedure("getvalue", (scope, val) -> this.getvalue(scope, val), (scope, val) -> Node.none(), "__key__", "__dictionary__"));
+        interpreter.env().define(new Procedure("remvalue", (scope, val) -> this.remvalue(scope, val), (scope, val) -> Node.none(), "__key__", "__dictionary__"));
+        interpreter.env().define(new Procedure("key?", (scope, val) -> this.keyp(scope, val), (scope, val) -> Node.none(), "__key__", "__dictionary__"));
+        interpreter.env().define(new Procedure("keys", (scope, val) -> this.keys(scope, val), (scope, val) -> Node.none(), "__dictionary__"));
+        interpreter.env().define(new Procedure("dictionary?", (scope, val) -> this.dictionaryp(scope, val), (scope, val) -> Node.none(), "__thing__"));
+
+        return interpreter;
+    }
+}
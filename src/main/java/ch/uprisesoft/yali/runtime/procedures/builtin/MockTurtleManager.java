@@ -89,8 +89,8 @@ public class MockTurtleManager implements ProcedureProvider {
     private Node turtlepos() {
         TurtlePosition tp = turtle.getPosition();
         List pos = new List();
-        pos.addChild(new IntegerWord(Math.round(tp.x)));
-        pos.addChild(new IntegerWord(Math.round(tp.y)));
+        pos.addChild(IntegerWord.valueOf(Math.round(tp.x)));
+        pos.addChild(IntegerWord.valueOf(Math.round(tp.y)));
         return pos;
     }
 
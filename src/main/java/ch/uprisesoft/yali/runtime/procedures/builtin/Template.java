@@ -15,244 +15,389 @@
  */
 package ch.uprisesoft.yali.runtime.procedures.builtin;
 
-import ch.uprisesoft.yali.ast.node.Call;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.word.FloatWord;
 import ch.uprisesoft.yali.ast.node.word.QuotedWord;
+import ch.uprisesoft.yali.lexer.Symbol;
 import ch.uprisesoft.yali.scope.Scope;
+import ch.uprisesoft.yali.runtime.interpreter.Code;
+import ch.uprisesoft.yali.runtime.interpreter.Frame;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
 
 /**
+ * Templates are read once per call and run for every value, with the value
+ * bound to the slot ?. Templates of reduce take two values, ?1 and ?2. The
+ * slots are variables of the scope of the call, so templates nest and
+ * procedures called by a template see them. Like repeat, the procedures
+ * schedule the template for one value at a time and are applied again with
+ * its result, so the interpreter can pause between values.
+ *
+ * The parallel variants split long lists into chunks and run each chunk on
+ * the fork-join pool in a fork of the interpreter, see Interpreter.fork. The
+ * local variables visible to the caller are copied into the fork. Changes a
+ * fork makes are not seen by the caller. Results keep the order of the list.
+ * So does output: every fork writes into a buffer of its own, which the
+ * caller writes out in the order of the chunks once the chunk is done. The
+ * chunks run within a single tick of the caller, see Interpreter.parallel.
  *
  * @author uprisesoft@gmail.com
  */
 public class Template implements ProcedureProvider {
 
-    private Interpreter it;
+    // Lists shorter than this are not split
+    private static final int CHUNK = 1024;
+
+    private static final Symbol SLOT = Symbol.of("?");
+    private static final Symbol SECOND = Symbol.of("?2");
+
+    // Run by the forks of the parallel variants, whatever the names stand
+    // for by then
+    private final Procedure mapping = new Procedure("map", (it, scope, val) -> this.map(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control();
+    private final Procedure filtering = new Procedure("filter", (it, scope, val) -> this.filter(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control();
+    private final Procedure reducing = new Procedure("reduce", (it, scope, val) -> this.reduce(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control();
 
-    // TODO
-    public Node map(Scope scope, java.util.List<Node> args) {
-        Node template = Node.none();
+    public Node map(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
+        Code template = template(it, args.get(0));
+        Node values = args.get(1);
+        int count = count(values);
 
-        if (args.get(0).type().equals(NodeType.LIST)) {
-            template = args.get(0).toList();
+        if (!frame.started()) {
+            frame.started(true);
+            frame.collected(new ArrayList<>(count));
         } else {
-            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+            frame.collected().add(frame.result());
         }
 
-        if (args.get(1).type().equals(NodeType.LIST)) {
-            Node values = args.get(1).toList();
-
-            java.util.List<Node> results = new ArrayList<>();
+        if (frame.repeats() < count) {
+            return next(it, frame, scope, template, slot(item(values, frame.repeats())));
+        }
 
-            for (int i = 0; i < values.getChildren().size(); i++) {
-                Node val = values.getChildren().get(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(val);
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                
-                List l = new List(realizedValues);
-                String runCommand = l.toString().substring(1, l.toString().length() - 1);
-                Node result = it.runBounded(it.read(runCommand));
-                if (result.type().equals(NodeType.LIST)) {
-                    results.add(result);
-                } else {
-                    results.add(Node.symbol(result.toString()));
-                }
+        if (values.type().equals(NodeType.QUOTE)) {
+            StringBuilder results = new StringBuilder();
+            for (Node result : frame.collected()) {
+                results.append(result);
             }
+            return Node.symbol(results.toString());
+        }
+        return new List(frame.collected());
+    }
 
-            return Node.list(results);
-
-        } else if (args.get(1).type().equals(NodeType.QUOTE)) {
-            String values = args.get(1).toQuotedWord().getQuote();
+    public Node filter(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
+        Node template = args.get(0);
+        Code code = template(it, template);
+        Node values = args.get(1);
+        int count = count(values);
+
+        if (!frame.started()) {
+            frame.started(true);
+            frame.collected(new ArrayList<>());
+        } else if (test(template, frame.result())) {
+            frame.collected().add(item(values, frame.repeats() - 1));
+        }
 
-            String results = "";
+        if (frame.repeats() < count) {
+            return next(it, frame, scope, code, slot(item(values, frame.repeats())));
+        }
 
-            for (int i = 0; i < values.length(); i++) {
-                Character val = values.charAt(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(Node.quote(String.valueOf(val)));
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                List l = new List(realizedValues);
-                String runCommand = l.toString().substring(1, l.toString().length() - 1);
-                Node result = it.runBounded(it.read(runCommand));
-                results += result.toString();
+        if (values.type().equals(NodeType.QUOTE)) {
+            StringBuilder results = new StringBuilder();
+            for (Node result : frame.collected()) {
+                results.append(result);
             }
-            return Node.symbol(results);
+            return new QuotedWord(results.toString());
+        }
+        return new List(frame.collected());
+    }
 
-        } else {
-            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST, NodeType.QUOTE);
+    public Node find(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
+        Node template = args.get(0);
+        Code code = template(it, template);
+        Node values = args.get(1);
+        int count = count(values);
+
+        if (!frame.started()) {
+            frame.started(true);
+        } else if (test(template, frame.result())) {
+            return item(values, frame.repeats() - 1);
+        }
+
+        if (frame.repeats() < count) {
+            return next(it, frame, scope, code, slot(item(values, frame.repeats())));
         }
+
+        return Node.nil();
     }
 
-    // TODO
-    public Node filter(Scope scope, java.util.List<Node> args) {
+    public Node reduce(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
+        Node template = args.get(0);
+        Code code = template(it, template);
 
-        Node template = Node.none();
+        if (!args.get(1).type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST);
+        }
+        java.util.List<Node> values = args.get(1).getChildren();
 
-        if (args.get(0).type().equals(NodeType.LIST)) {
-            template = args.get(0).toList();
+        Node result;
+        if (!frame.started()) {
+            if (values.isEmpty()) {
+                // Nothing to start from, an empty list is nil to Logo
+                throw new NodeTypeException(args.get(1), NodeType.NIL, NodeType.LIST);
+            }
+            frame.started(true);
+            frame.repeats(1);
+            result = slot(values.get(0));
         } else {
-            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+            result = frame.result();
         }
 
-        if (args.get(1).type().equals(NodeType.LIST)) {
-            Node values = args.get(1).toList();
+        if (frame.repeats() < values.size()) {
+            scope.define(SECOND, slot(values.get(frame.repeats())));
+            return next(it, frame, scope, code, result);
+        }
 
-            java.util.List<Node> results = new ArrayList<>();
+        return result;
+    }
 
-            for (int i = 0; i < values.getChildren().size(); i++) {
-                Node val = values.getChildren().get(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(val);
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
+    public Node pmap(Interpreter it, Scope scope, java.util.List<Node> args) {
+        if (!parallel(it, args)) {
+            return map(it, scope, args);
+        }
 
-                List l = new List(realizedValues);
-                String runCommand = l.toString().substring(1, l.toString().length() - 1);
-                Node result = it.runBounded(it.read(runCommand));
+        java.util.List<Node> results = new ArrayList<>(args.get(1).getChildren().size());
+        for (Node chunk : fork(it, mapping, args)) {
+            results.addAll(chunk.getChildren());
+        }
+        return new List(results);
+    }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+    public Node pfilter(Interpreter it, Scope scope, java.util.List<Node> args) {
+        if (!parallel(it, args)) {
+            return filter(it, scope, args);
+        }
 
-                if (result.toBooleanWord().getBoolean()) {
-                    results.add(val);
-                }
+        java.util.List<Node> results = new ArrayList<>();
+        for (Node chunk : fork(it, filtering, args)) {
+            results.addAll(chunk.getChildren());
+        }
+        return new List(results);
+    }
+
+    /**
+     * Reduces every chunk on its own and then the results of the chunks, so
+     * the template has to be associative.
+     */
+    public Node preduce(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Frame frame = it.frame();
+
+        // The results of the chunks are reduced like any list
+        if (frame.collected() == null) {
+            if (!parallel(it, args)) {
+                return reduce(it, scope, args);
             }
-            return new List(results);
-
-        } else if (args.get(1).type().equals(NodeType.QUOTE)) {
-            String values = args.get(1).toQuotedWord().getQuote();
-
-            String results = "";
-
-            for (int i = 0; i < values.length(); i++) {
-                Character val = values.charAt(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(Node.symbol("\"" + String.valueOf(val)));
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
+            frame.collected(fork(it, reducing, args));
+        }
 
-                List l = new List(realizedValues);
-                String runCommand = l.toString().substring(1, l.toString().length() - 1);
-                Node result = it.runBounded(it.read(runCommand));
+        java.util.List<Node> partial = new ArrayList<>(2);
+        partial.add(args.get(0));
+        partial.add(new List(frame.collected()));
+        return reduce(it, scope, partial);
+    }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+    public Node slot(Interpreter it, Scope scope, java.util.List<Node> args) {
+        return it.env().thing(SLOT);
+    }
 
-                if (result.toBooleanWord().getBoolean()) {
-                    results += val;
+    public Node second(Interpreter it, Scope scope, java.util.List<Node> args) {
+        return it.env().thing(SECOND);
+    }
+
+    private boolean parallel(Interpreter it, java.util.List<Node> args) {
+        return it.parallel() && args.get(1).type().equals(NodeType.LIST)
+                && args.get(1).getChildren().size() >= 2 * CHUNK;
+    }
+
+    /**
+     * Runs a template primitive for chunks of the values on the common pool.
+     * The primitive is applied as it is, so redefining map or the others
+     * doesn't change what the parallel variants run.
+     *
+     * @param sequential The template primitive every fork runs
+     * @param args The template and the list of values
+     * @return The results of the chunks in order
+     */
+    private java.util.List<Node> fork(Interpreter it, Procedure sequential, java.util.List<Node> args) {
+        // Read in the caller, so errors in the template show up here once
+        template(it, args.get(0));
+
+        java.util.List<Node> values = args.get(1).getChildren();
+        // A few chunks per thread, so threads finishing early can steal
+        int chunks = Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), values.size() / CHUNK);
+        Map<Symbol, Node> locals = it.env().locals();
+
+        java.util.List<ForkJoinTask<Node>> tasks = new ArrayList<>(chunks);
+        java.util.List<java.util.List<String>> outputs = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            java.util.List<Node> chunk = new ArrayList<>(2);
+            chunk.add(args.get(0));
+            chunk.add(new List(values.subList(values.size() * i / chunks, values.size() * (i + 1) / chunks)));
+
+            // Only the thread running the chunk writes to its buffer
+            java.util.List<String> output = new ArrayList<>();
+            outputs.add(output);
+            Interpreter fork = it.fork(output::add);
+
+            // The caller's locals stay locals in the fork, above its globals
+            Scope caller = new Scope("caller");
+            for (Map.Entry<Symbol, Node> local : locals.entrySet()) {
+                caller.define(local.getKey(), local.getValue());
+            }
+            fork.env().push(caller);
+
+            tasks.add(ForkJoinPool.commonPool().submit(() -> fork.call(sequential, chunk)));
+        }
+
+        java.util.List<Node> results = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            try {
+                results.add(tasks.get(i).get());
+                replay(it, outputs.get(i));
+            } catch (ExecutionException e) {
+                cancel(tasks, i + 1);
+                // What the failed chunk wrote up to the error, as map would
+                replay(it, outputs.get(i));
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                cancel(tasks, i);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
             }
-            return new QuotedWord(results);
+        }
+        return results;
+    }
 
-        } else {
-            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST, NodeType.QUOTE);
+    // Chunks not started yet are dropped, running ones finish unseen
+    private void cancel(java.util.List<ForkJoinTask<Node>> tasks, int from) {
+        for (int i = from; i < tasks.size(); i++) {
+            tasks.get(i).cancel(false);
         }
     }
 
-    // TODO
-    public Node find(Scope scope, java.util.List<Node> args) {
-        Node template = Node.none();
+    private void replay(Interpreter it, java.util.List<String> output) {
+        for (String line : output) {
+            it.write(line);
+        }
+    }
 
-        if (args.get(0).type().equals(NodeType.LIST)) {
-            template = args.get(0).toList();
-        } else {
-            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+    private Code template(Interpreter it, Node template) {
+        if (!template.type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(template, template.type(), NodeType.LIST);
         }
+        return it.readBlock(template.toList());
+    }
 
-        if (args.get(1).type().equals(NodeType.LIST)) {
-            Node values = args.get(1).toList();
-
-            for (int i = 0; i < values.getChildren().size(); i++) {
-                Node val = values.getChildren().get(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(val);
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                List l = new List(realizedValues);
-                String runCommand = l.toString().substring(1, l.toString().length() - 1);
-                Node result = it.runBounded(it.read(runCommand));
+    /**
+     * Schedules the template for a value. The primitive is applied again
+     * with the result once the template has run, so long lists take many
+     * ticks like repeat does.
+     */
+    private Node next(Interpreter it, Frame frame, Scope slots, Code template, Node val) {
+        frame.repeats(frame.repeats() + 1);
+        slots.define(SLOT, val);
+        it.schedule(template);
+        return Node.none();
+    }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+    private boolean test(Node template, Node result) {
+        if (!result.type().equals(NodeType.BOOLEAN)) {
+            throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
+        }
 
-                if (result.toBooleanWord().getBoolean()) {
-                    return val;
-                }
-            }
+        return result.toBooleanWord().getBoolean();
+    }
 
-        } else if (args.get(1).type().equals(NodeType.QUOTE)) {
-            String values = args.get(1).toQuotedWord().getQuote();
-
-            for (int i = 0; i < values.length(); i++) {
-                Character val = values.charAt(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(Node.symbol("\"" + String.valueOf(val)));
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                List l = new List(realizedValues);
-                String runCommand = l.toString().substring(1, l.toString().length() - 1);
-                Node result = it.runBounded(it.read(runCommand));
+    private static int count(Node values) {
+        if (values.type().equals(NodeType.LIST)) {
+            return values.getChildren().size();
+        } else if (values.type().equals(NodeType.QUOTE)) {
+            return values.toQuotedWord().getQuote().length();
+        }
+        throw new NodeTypeException(values, values.type(), NodeType.LIST, NodeType.QUOTE);
+    }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+    // A member of a list, or a character of a word
+    private static Node item(Node values, int i) {
+        if (values.type().equals(NodeType.LIST)) {
+            return values.getChildren().get(i);
+        }
+        return QuotedWord.of(String.valueOf(values.toQuotedWord().getQuote().charAt(i)));
+    }
 
-                if (result.toBooleanWord().getBoolean()) {
-                    return Node.quote(String.valueOf(val));
-                }
-            }
+    /**
+     * The words of a list literal are not read as code, so a word spelling
+     * a number stands for the number, as if the template had been read with
+     * the value in place of ?.
+     */
+    private static Node slot(Node val) {
+        if (!val.type().equals(NodeType.SYMBOL)) {
+            return val;
+        }
 
-        } else {
-            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST, NodeType.QUOTE);
+        String word = val.toString();
+        int start = word.startsWith("-") ? 1 : 0;
+        int dots = 0;
+        for (int i = start; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '.') {
+                dots++;
+            } else if (c < '0' || c > '9') {
+                return val;
+            }
+        }
+        if (word.length() == start || dots > 1 || (dots == 1 && word.length() == start + 1)) {
+            return val;
         }
 
-        return Node.nil();
+        if (dots == 1) {
+            return new FloatWord(Double.parseDouble(word));
+        }
+        try {
+            return Node.integer(Long.parseLong(word));
+        } catch (NumberFormatException e) {
+            return Node.integer(new BigInteger(word));
+        }
     }
 
     @Override
     public Interpreter registerProcedures(Interpreter interpreter) {
-        this.it = interpreter;
-
-        it.env().define(new Procedure("map", (scope, val) -> this.map(scope, val), (scope, val) -> Node.none(), "__template__", "__values__"));
-        it.env().define(new Procedure("filter", (scope, val) -> this.filter(scope, val), (scope, val) -> Node.none(), "__template__", "__values__"));
-        it.env().define(new Procedure("find", (scope, val) -> this.find(scope, val), (scope, val) -> Node.none(), "__template__", "__values__"));
-
-        return it;
+        interpreter.env().define(mapping);
+        interpreter.env().define(filtering);
+        interpreter.env().define(new Procedure("find", (it, scope, val) -> this.find(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control());
+        interpreter.env().define(reducing);
+        interpreter.env().define(new Procedure("pmap", (it, scope, val) -> this.pmap(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control());
+        interpreter.env().define(new Procedure("pfilter", (it, scope, val) -> this.pfilter(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control());
+        interpreter.env().define(new Procedure("preduce", (it, scope, val) -> this.preduce(it, scope, val), (scope, val) -> Node.none(), "__template__", "__values__").control());
+        interpreter.env().define(new Procedure("?", (it, scope, val) -> this.slot(it, scope, val), (scope, val) -> Node.none()));
+        interpreter.env().define(new Procedure("?1", (it, scope, val) -> this.slot(it, scope, val), (scope, val) -> Node.none()));
+        interpreter.env().define(new Procedure("?2", (it, scope, val) -> this.second(it, scope, val), (scope, val) -> Node.none()));
+
+        return interpreter;
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.session;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A program run of its own, with its interpreter, output and input. Programs
+ * submitted to a session run one after the other, in turns of its
+ * SessionManager. Input waits and pauses end the turn, the session is
+ * queued again once input arrives or it is resumed.
+ *
+ * Only one turn of a session runs at a time, its interpreter is never used
+ * by two threads at once.
+ *
+ * Turns are counted in ticks, and a turn only ends between ticks. map and
+ * the other template procedures take a tick per value. Hot compiled calls
+ * and the chunks of pmap and friends would run to completion within a
+ * single tick, so sessions run without the second tier, and pmap, pfilter
+ * and preduce run like map, filter and reduce. A primitive doing a lot of
+ * work by itself, like turning a long list into an array, still holds up the other
+ * sessions until it returns.
+ *
+ * @author rma
+ */
+public class Session {
+
+    private final SessionManager manager;
+    private final Interpreter it;
+
+    // Guarded by the session
+    private final Deque<Program> programs = new ArrayDeque<>();
+    private final Deque<String> lines = new ArrayDeque<>();
+    private Program running;
+    // A turn is queued or running
+    private boolean scheduled = false;
+    // Waiting for a line of input
+    private boolean waiting = false;
+    // Paused by the program, until resumed
+    private boolean held = false;
+    private boolean closed = false;
+
+    // Input was polled for in vain during the running turn
+    private boolean starved = false;
+
+    Session(SessionManager manager, Interpreter it, OutputObserver oo) {
+        this.manager = manager;
+        this.it = it;
+        it.hotThreshold(0);
+        it.parallel(false);
+        it.register(oo);
+        it.register(new Input());
+    }
+
+    /**
+     * Queues a program to run after the ones submitted before.
+     *
+     * @param source the program
+     * @return the result of the last statement, once the program has run
+     */
+    public CompletableFuture<Node> submit(String source) {
+        Program program = new Program(source);
+        synchronized (this) {
+            if (closed) {
+                program.result.completeExceptionally(new CancellationException("Session is closed"));
+                return program.result;
+            }
+            programs.add(program);
+            schedule();
+        }
+        return program.result;
+    }
+
+    /**
+     * Queues a line of input for readword and readlist.
+     *
+     * @param line the line, without line break
+     */
+    public synchronized void input(String line) {
+        lines.add(line);
+        if (waiting) {
+            waiting = false;
+            schedule();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Resumes a program paused by pause.
+     */
+    public synchronized void resume() {
+        if (held) {
+            held = false;
+            schedule();
+        }
+    }
+
+    /**
+     * @return true if the running program is waiting for input
+     */
+    public synchronized boolean waiting() {
+        return waiting;
+    }
+
+    /**
+     * @return true if the running program is paused
+     */
+    public synchronized boolean paused() {
+        return held;
+    }
+
+    /**
+     * Closes the session. Programs not run yet are cancelled, a running
+     * program is abandoned after its turn. The interpreter goes back to the
+     * pool of the manager.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+            if (scheduled) {
+                // The turn closes the session when it ends
+                return;
+            }
+        }
+        end();
+    }
+
+    Interpreter interpreter() {
+        return it;
+    }
+
+    // Must hold the lock
+    private boolean runnable() {
+        return !closed && !waiting && !held && (running != null || !programs.isEmpty());
+    }
+
+    // Must hold the lock
+    private void schedule() {
+        if (!scheduled && runnable()) {
+            scheduled = true;
+            manager.execute(this::turn);
+        }
+    }
+
+    /**
+     * Runs the session for a slice of ticks.
+     */
+    private void turn() {
+        Program program;
+        synchronized (this) {
+            if (running == null) {
+                running = programs.poll();
+            }
+            program = running;
+        }
+
+        boolean more = false;
+        starved = false;
+        try {
+            if (!program.loaded) {
+                program.loaded = true;
+                it.load(it.read(program.source));
+            }
+            if (it.paused()) {
+                it.unpause();
+            }
+
+            int ticks = manager.slice();
+            while (ticks-- > 0 && (more = it.tick())) {
+            }
+
+            if (!more && !it.paused()) {
+                // Nothing left to tick, the result is there
+                program.result.complete(it.run());
+            }
+        } catch (RuntimeException e) {
+            it.stop();
+            more = false;
+            program.result.completeExceptionally(e);
+        }
+
+        synchronized (this) {
+            scheduled = false;
+            if (program.result.isDone()) {
+                running = null;
+            } else if (!more && !starved) {
+                held = true;
+            }
+
+            if (!closed) {
+                schedule();
+                return;
+            }
+        }
+        end();
+    }
+
+    private void end() {
+        Deque<Program> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayDeque<>(programs);
+            if (running != null) {
+                cancelled.addFirst(running);
+            }
+            running = null;
+            programs.clear();
+        }
+        for (Program program : cancelled) {
+            program.result.cancel(false);
+        }
+        manager.closed(this);
+    }
+
+    /**
+     * Input of the interpreter. Waiting for a line parks the session,
+     * unless the interpreter can't be paused where it is waiting.
+     */
+    private class Input implements InputGenerator {
+
+        @Override
+        public String request() {
+            return requestLine();
+        }
+
+        @Override
+        public String requestLine() {
+            synchronized (Session.this) {
+                while (lines.isEmpty() && !closed) {
+                    try {
+                        Session.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return "";
+                    }
+                }
+                return closed ? "" : lines.poll();
+            }
+        }
+
+        @Override
+        public String pollLine() {
+            synchronized (Session.this) {
+                String line = lines.poll();
+                if (line == null) {
+                    waiting = true;
+                    starved = true;
+                }
+                return line;
+            }
+        }
+    }
+
+    private static final class Program {
+
+        final String source;
+        final CompletableFuture<Node> result = new CompletableFuture<>();
+        boolean loaded = false;
+
+        Program(String source) {
+            this.source = source;
+        }
+    }
+}
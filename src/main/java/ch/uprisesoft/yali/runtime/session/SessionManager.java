@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.session;
+
+import ch.uprisesoft.yali.runtime.interpreter.InterpreterPool;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many sessions, each with an interpreter of its own, on a few
+ * threads. A session runs in turns of a limited number of ticks, then
+ * queues up behind the other sessions again, so a long running program
+ * can't starve the others. Sessions waiting for input or paused take no
+ * thread at all, they are queued again once there is something to do.
+ *
+ * The turns run on an executor: a bounded pool of carrier threads, or a
+ * virtual thread per turn on Java 21 and later.
+ *
+ * @author rma
+ */
+public class SessionManager implements AutoCloseable {
+
+    /**
+     * Ticks a session runs before the next session gets its turn.
+     */
+    public static final int SLICE = 1000;
+
+    private final InterpreterPool pool;
+    private final Executor executor;
+    private final int slice;
+    // Shut down with the manager, if created by it
+    private final ExecutorService owned;
+
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Sessions on a pool of carrier threads.
+     *
+     * @param carriers the number of threads running sessions
+     */
+    public SessionManager(int carriers) {
+        this(new InterpreterPool(carriers), carriers(carriers), SLICE, true);
+    }
+
+    /**
+     * Sessions on an executor managed by the caller, which has to run the
+     * turns in the order they are queued for the sessions to be treated
+     * fairly.
+     *
+     * @param pool where the interpreters of the sessions come from
+     * @param executor runs the turns of the sessions
+     * @param slice the ticks of a turn
+     */
+    public SessionManager(InterpreterPool pool, Executor executor, int slice) {
+        this(pool, executor, slice, false);
+    }
+
+    private SessionManager(InterpreterPool pool, Executor executor, int slice, boolean owned) {
+        if (slice < 1) {
+            throw new IllegalArgumentException("A turn needs at least one tick");
+        }
+        this.pool = pool;
+        this.executor = executor;
+        this.slice = slice;
+        this.owned = owned ? (ExecutorService) executor : null;
+    }
+
+    /**
+     * Sessions on virtual threads, one per turn.
+     *
+     * @param pool where the interpreters of the sessions come from
+     * @return the session manager
+     * @throws UnsupportedOperationException if the JVM has no virtual
+     * threads
+     */
+    public static SessionManager virtual(InterpreterPool pool) {
+        return new SessionManager(pool, virtualThreads(), SLICE, true);
+    }
+
+    /**
+     * Sessions on virtual threads if the JVM has them, otherwise on a
+     * carrier thread per processor.
+     *
+     * @return the session manager
+     */
+    public static SessionManager create() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (hasVirtualThreads()) {
+            return virtual(new InterpreterPool(processors));
+        }
+        return new SessionManager(processors);
+    }
+
+    public static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // Looked up at runtime, the sources are compiled for Java 8
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ExecutorService carriers(int carriers) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(carriers, r -> {
+            Thread thread = new Thread(r, "yali-session-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a session with an interpreter of the pool.
+     *
+     * @param oo receives the output of the session
+     * @return the session
+     */
+    public Session open(OutputObserver oo) {
+        Session session = new Session(this, pool.acquire(), oo);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * @return the number of open sessions
+     */
+    public int sessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Closes all sessions and shuts down the threads, if they were started
+     * by this manager.
+     */
+    @Override
+    public void close() {
+        for (Session session : new ArrayList<>(sessions)) {
+            session.close();
+        }
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+
+    int slice() {
+        return slice;
+    }
+
+    void execute(Runnable turn) {
+        executor.execute(turn);
+    }
+
+    void closed(Session session) {
+        sessions.remove(session);
+        pool.release(session.interpreter());
+    }
+}
@@ -5,14 +5,21 @@
  */
 package ch.uprisesoft.yali.scope;
 
+import ch.uprisesoft.yali.ast.node.Call;
 import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.lexer.Symbol;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.runtime.interpreter.Tracer;
+import ch.uprisesoft.yali.runtime.interpreter.Tracers;
 import ch.uprisesoft.yali.runtime.procedures.FunctionNotFoundException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -20,42 +27,77 @@ import java.util.Map;
  */
 public class Environment {
     
-    private List<Tracer> tracers = new ArrayList<>();
+    private final Tracers tracers = new Tracers();
 
-    private List<Scope> scopes = new ArrayList<>();
+    // Scope stack, the global scope at the bottom
+    private Scope[] scopes = new Scope[64];
+    private int size = 0;
+
+    // Bumped whenever a procedure name appears or changes its arity, since
+    // both change how source is parsed. Used to invalidate parsed blocks.
+    // Drawn from a global counter like the stamps, as lists and their parsed
+    // blocks may be shared between interpreters.
+    private static final AtomicInteger ARITIES = new AtomicInteger();
+    private int arityVersion = ARITIES.incrementAndGet();
+
+    // Drawn anew from a global counter whenever a procedure is defined,
+    // aliased or overwritten, so call sites can cache their procedure. Being
+    // unique across environments, a stamp never validates a cache filled by
+    // an interpreter with other definitions. Environments created from a
+    // snapshot start with its stamp, as they have the same definitions.
+    private static final AtomicLong STAMPS = new AtomicLong();
+    private long definitions = STAMPS.incrementAndGet();
+
+    // Property lists, see Lookup. Copied before they change while a snapshot
+    // shares them.
+    private Map<Symbol, Map<Symbol, Node>> plists = new HashMap<>();
+    private boolean plistsShared = false;
+
+    public Environment() {
+    }
+
+    /**
+     * Creates an environment with the global scope of a snapshot. Both
+     * share the definitions until the environment changes them.
+     *
+     * @param snapshot the global state to start from
+     */
+    public Environment(Snapshot snapshot) {
+        push(snapshot.global.share());
+        plists = snapshot.plists;
+        plistsShared = true;
+        arityVersion = snapshot.arityVersion;
+        definitions = snapshot.definitions;
+    }
     
     public void addTracer(Tracer tracer) {
         tracers.add(tracer);
     }
+
+    public void clearTracers() {
+        tracers.clear();
+    }
     
     public Scope peek() {
-        return scopes.get(scopes.size() - 1);
+        return scopes[size - 1];
     }
 
     public boolean push(Scope scope) {
-        scopes.add(scope);
-        for(int i = scopes.size() -2; i >= 0; i--) {
-                Scope currentScope = scopes.get(i);
-                if(scope.getScopeName().equals(currentScope.getScopeName())) {
-//                    for(int j = scopes.size()-1; j>=i; j--) {
-//                        scopes.remove(j);
-//                        scopes.add(currentScope);
-//                    }
-//                    return true;
-                } else {
-                }
-            }
-        
-//        scopes.add(scope);
+        if (size == scopes.length) {
+            scopes = Arrays.copyOf(scopes, size * 2);
+        }
+        scopes[size++] = scope;
         return false;
     }
 
     public Scope pop() {
-        return scopes.remove(scopes.size() - 1);
+        Scope scope = scopes[--size];
+        scopes[size] = null;
+        return scope;
     }
     
     private Scope first() {
-        return scopes.get(0);
+        return scopes[0];
     }
     
     /**
@@ -63,40 +105,67 @@ public class Environment {
      */
 
     public void make(String name, Node value) {
+        make(Symbol.of(name), value);
+    }
+
+    public void make(Symbol name, Node value) {
 
-        tracers.forEach(t -> t.make(name, value, this));
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).defined(name.toLowerCase())) {
-                scopes.get(i).define(name.toLowerCase(), value);
+        if (tracers.enabled()) {
+            tracers.make(name.name(), value, this);
+        }
+        for (int i = size - 1; i > 0; i--) {
+            if (scopes[i].defined(name)) {
+                scopes[i].define(name, value);
                 return;
             }
         }
-        
-        scopes.get(0).define(name.toLowerCase(), value);
+
+        if (first().resolve(name).type().equals(NodeType.PROCEDURE)) {
+            definitions = STAMPS.incrementAndGet();
+        }
+        first().define(name, value);
     }
 
     public void local(String name) {
-        tracers.forEach(t -> t.local(name, this));
-        peek().local(name.toLowerCase());
+        local(Symbol.of(name));
+    }
+
+    public void local(Symbol name) {
+        if (tracers.enabled()) {
+            tracers.local(name.name(), this);
+        }
+        peek().local(name);
     }
 
     public Node thing(String name) {
+        return thing(Symbol.of(name));
+    }
+
+    public Node thing(Symbol name) {
         
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).defined(name.toLowerCase())) {
-                final Node ret = scopes.get(i).resolve(name.toLowerCase());
-                tracers.forEach(t -> t.thing(name, ret, this));
+        for (int i = size - 1; i >= 0; i--) {
+            if (scopes[i].defined(name)) {
+                Node ret = scopes[i].resolve(name);
+                if (tracers.enabled()) {
+                    tracers.thing(name.name(), ret, this);
+                }
                 return ret;
             }
         }
 
-        tracers.forEach(t -> t.thing(name, Node.none(), this));
+        if (tracers.enabled()) {
+            tracers.thing(name.name(), Node.none(), this);
+        }
         return Node.none();
     }
 
     public Boolean thingable(String name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).defined(name)) {
+        return thingable(Symbol.of(name));
+    }
+
+    public Boolean thingable(Symbol name) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (scopes[i].defined(name)) {
                 return true;
             }
         }
@@ -109,35 +178,194 @@ public class Environment {
      */
     
     public void define(Procedure function) {
-        first().define(function.getName(), function);
+        Node previous = first().resolve(function.symbol());
+        if (!previous.type().equals(NodeType.PROCEDURE) || previous.toProcedureDef().getArity() != function.getArity()) {
+            arityVersion = ARITIES.incrementAndGet();
+        }
+        first().define(function.symbol(), function);
+        definitions = STAMPS.incrementAndGet();
     }
 
     public Boolean defined(String name) {
+        return defined(Symbol.of(name));
+    }
+
+    public Boolean defined(Symbol name) {
         return first().defined(name);
     }
     
     public Procedure procedure(String name) {
+        return procedure(Symbol.of(name));
+    }
+
+    public Procedure procedure(Symbol name) {
         return first().resolve(name).toProcedureDef();
     }
 
+    /**
+     * Resolves the procedure a call dispatches to, using the procedure cached
+     * at the call site while no definition has changed since.
+     */
+    public Procedure procedure(Call call) {
+        Procedure procedure = call.dispatch(definitions);
+        if (procedure == null) {
+            Node definition = first().resolve(call.symbol());
+            if (!definition.type().equals(NodeType.PROCEDURE)) {
+                throw new FunctionNotFoundException(call.getName());
+            }
+            procedure = definition.toProcedureDef();
+            call.dispatch(definitions, procedure);
+        }
+        return procedure;
+    }
+
     public void alias(String original, String alias) {
-        if (!(first().defined(original))) {
+        Symbol originalName = Symbol.of(original);
+        if (!(first().defined(originalName))) {
             throw new FunctionNotFoundException(original);
         }
 
-        first().define(alias, first().resolve(original));
+        first().define(Symbol.of(alias), first().resolve(originalName));
+        arityVersion = ARITIES.incrementAndGet();
+        definitions = STAMPS.incrementAndGet();
+    }
+
+    /**
+     * Copies the variables of the procedure scopes visible now, the
+     * innermost definition of a name winning. Values are not copied.
+     *
+     * @return the visible local names and their values
+     */
+    public Map<Symbol, Node> locals() {
+        Map<Symbol, Node> visible = new HashMap<>();
+        for (int i = 1; i < size; i++) {
+            scopes[i].collect(visible);
+        }
+        return visible;
+    }
+
+    /**
+     * Property lists
+     */
+
+    public Map<Symbol, Node> plist(Symbol name) {
+        Map<Symbol, Node> plist = plists.get(name);
+        return plist == null ? Collections.emptyMap() : Collections.unmodifiableMap(plist);
+    }
+
+    public void pprop(Symbol name, Symbol property, Node value) {
+        ownPlists();
+        plists.computeIfAbsent(name, k -> new LinkedHashMap<>()).put(property, value);
+    }
+
+    public void remprop(Symbol name, Symbol property) {
+        Map<Symbol, Node> plist = plists.get(name);
+        if (plist == null || !plist.containsKey(property)) {
+            return;
+        }
+        ownPlists();
+        plist = plists.get(name);
+        plist.remove(property);
+        if (plist.isEmpty()) {
+            plists.remove(name);
+        }
+    }
+
+    private void ownPlists() {
+        if (plistsShared) {
+            Map<Symbol, Map<Symbol, Node>> copy = new HashMap<>();
+            for (Map.Entry<Symbol, Map<Symbol, Node>> plist : plists.entrySet()) {
+                copy.put(plist.getKey(), new LinkedHashMap<>(plist.getValue()));
+            }
+            plists = copy;
+            plistsShared = false;
+        }
+    }
+
+    /**
+     * Snapshots
+     */
+
+    /**
+     * Takes the global variables, procedures and property lists as they are
+     * now. The snapshot shares them with this environment until either side
+     * changes them, so it costs next to nothing. Values are not copied, a
+     * list or dictionary changed in place changes in the snapshot as well.
+     *
+     * @return the global state
+     */
+    public Snapshot snapshot() {
+        plistsShared = true;
+        return new Snapshot(first().share(), plists, arityVersion, definitions);
+    }
+
+    /**
+     * Replaces the global state with that of a snapshot. Scopes of running
+     * procedures are kept.
+     *
+     * @param snapshot the global state to go back to
+     */
+    public void restore(Snapshot snapshot) {
+        scopes[0] = snapshot.global.share();
+        plists = snapshot.plists;
+        plistsShared = true;
+        arityVersion = snapshot.arityVersion;
+        definitions = snapshot.definitions;
+    }
+
+    /**
+     * Defines everything a snapshot defines, replacing definitions of the
+     * same names. An environment with nothing defined yet shares the global
+     * scope of the snapshot instead of copying it.
+     *
+     * @param snapshot the definitions to add
+     */
+    public void load(Snapshot snapshot) {
+        if (first().members().isEmpty() && plists.isEmpty()) {
+            restore(snapshot);
+            return;
+        }
+
+        for (Map.Entry<Symbol, Node> member : snapshot.global.members().entrySet()) {
+            first().define(member.getKey(), member.getValue());
+        }
+        for (Map.Entry<Symbol, Map<Symbol, Node>> plist : snapshot.plists.entrySet()) {
+            for (Map.Entry<Symbol, Node> property : plist.getValue().entrySet()) {
+                pprop(plist.getKey(), property.getKey(), property.getValue());
+            }
+        }
+        arityVersion = ARITIES.incrementAndGet();
+        definitions = STAMPS.incrementAndGet();
+    }
+
+    public Environment fork() {
+        return new Environment(snapshot());
+    }
+
+    public int arityVersion() {
+        return arityVersion;
+    }
+
+    /**
+     * Identifies the current procedure definitions. Changes whenever a
+     * procedure is defined, aliased or overwritten.
+     *
+     * @return the definitions stamp
+     */
+    public long stamp() {
+        return definitions;
     }
     
     public String trace() {
         StringBuilder sb = new StringBuilder();
         
-        for(Scope s: scopes) {
-            sb.append(s.getScopeName()).append("\n");
+        for (int i = 0; i < size; i++) {
+            sb.append(scopes[i].getScopeName()).append("\n");
         }
         return sb.toString();
     }
 
     public Integer size() {
-        return scopes.size();
+        return size;
     }
 }
@@ -17,6 +17,9 @@ package ch.uprisesoft.yali.scope;
 
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.lexer.Symbol;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,10 +29,20 @@ import java.util.Map;
  */
 public class Scope {
 
+    private static final Node[] NO_SLOTS = new Node[0];
+
     private String scopeName = "";
-    private Map<String, Node> members = new HashMap<>();
+    // Created on the first definition, most scopes of calls stay empty
+    private Map<Symbol, Node> members = Collections.emptyMap();
+    // Members are shared with another scope and copied before they change
+    private boolean shared = false;
     
-    private Node code = Node.nil();
+    private Node code;
+
+    // Parameters and locals of the procedure owning this scope. A null slot
+    // is not defined in this scope.
+    private Procedure owner;
+    private Node[] slots = NO_SLOTS;
 
     public Scope(String scopeName) {
         this.scopeName = scopeName;
@@ -40,36 +53,122 @@ public class Scope {
         this.scopeName = scopeName;
     }
 
+    public Scope(Procedure owner) {
+        this.scopeName = owner.getName();
+        this.owner = owner;
+        this.slots = new Node[owner.slotCount()];
+    }
+
     public String getScopeName() {
         return scopeName;
     }
 
     public Node getCode() {
-        return code;
+        return code == null ? Node.nil() : code;
     }
     
-    protected Map<String, Node> members() {
+    protected Map<Symbol, Node> members() {
         return members;
     }
 
+    public Procedure owner() {
+        return owner;
+    }
+
+    public Node slot(int slot) {
+        return slots[slot];
+    }
+
+    public void slot(int slot, Node value) {
+        slots[slot] = value;
+    }
+
+    private int slotOf(Symbol name) {
+        if (owner == null) {
+            return -1;
+        }
+        int slot = owner.slot(name);
+        return slot < slots.length ? slot : -1;
+    }
+
     public Node resolve(String name) {
-        if (members.containsKey(name.toLowerCase())) {
-            return members.get(name.toLowerCase());
+        return resolve(Symbol.of(name));
+    }
+
+    public Node resolve(Symbol name) {
+        int slot = slotOf(name);
+        if (slot >= 0 && slots[slot] != null) {
+            return slots[slot];
+        }
+
+        Node value = members.get(name);
+        if (value != null) {
+            return value;
         } 
 
         return Node.none();
     }
 
     public void define(String name, Node value) {
-        members.put(name.toLowerCase(), value);
+        define(Symbol.of(name), value);
+    }
+
+    public void define(Symbol name, Node value) {
+        int slot = slotOf(name);
+        if (slot >= 0) {
+            slots[slot] = value;
+        } else {
+            if (shared || members.isEmpty()) {
+                members = new HashMap<>(members);
+                shared = false;
+            }
+            members.put(name, value);
+        }
     }
 
     public void local(String name) {
-        members.put(name.toLowerCase(), Node.none());
+        local(Symbol.of(name));
+    }
+
+    public void local(Symbol name) {
+        define(name, Node.none());
     }
 
     public boolean defined(String name) {
+        return defined(Symbol.of(name));
+    }
+
+    public boolean defined(Symbol name) {
+        int slot = slotOf(name);
+        if (slot >= 0 && slots[slot] != null) {
+            return true;
+        }
         return members.containsKey(name);
     }
 
+    /**
+     * A scope with the same members, sharing them until either scope
+     * defines a name. Values are not copied.
+     */
+    Scope share() {
+        Scope copy = new Scope(scopeName);
+        copy.members = members;
+        copy.shared = true;
+        shared = true;
+        return copy;
+    }
+
+    // Adds everything defined in this scope to a map
+    void collect(Map<Symbol, Node> into) {
+        into.putAll(members);
+        if (owner != null) {
+            for (Symbol name : owner.slotNames()) {
+                int slot = slotOf(name);
+                if (slot >= 0 && slots[slot] != null) {
+                    into.put(name, slots[slot]);
+                }
+            }
+        }
+    }
+
 }
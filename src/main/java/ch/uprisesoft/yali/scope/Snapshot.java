@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.scope;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.lexer.Symbol;
+import java.util.Map;
+
+/**
+ * The global variables, procedures and property lists of an environment at
+ * one point, see Environment.snapshot. Nothing changes them, so any number
+ * of environments on any threads can be created from one snapshot.
+ *
+ * @author rma
+ */
+public final class Snapshot {
+
+    final Scope global;
+    final Map<Symbol, Map<Symbol, Node>> plists;
+    final int arityVersion;
+    final long definitions;
+
+    Snapshot(Scope global, Map<Symbol, Map<Symbol, Node>> plists, int arityVersion, long definitions) {
+        this.global = global;
+        this.plists = plists;
+        this.arityVersion = arityVersion;
+        this.definitions = definitions;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 rmaire.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the lexer on a large generated source, and parsing of
+ * deeply nested list literals.
+ *
+ * @author rmaire
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LexerBenchmark {
+
+    private String source;
+    private String nested;
+    private Interpreter it;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("to proc").append(i).append(" :a :b\n")
+                    .append("ifelse :a < :b [output :a * 2] [output (sum :a :b 3.5)]\n")
+                    .append("make \"x_").append(i).append(" [alpha beta [gamma delta] \"quoted]\n")
+                    .append("end\n");
+        }
+        source = sb.toString();
+
+        sb = new StringBuilder("make \"deep ");
+        for (int i = 0; i < 400; i++) {
+            sb.append("[x ");
+        }
+        for (int i = 0; i < 400; i++) {
+            sb.append("]");
+        }
+        nested = sb.append("\n").toString();
+
+        it = new Interpreter();
+    }
+
+    @Benchmark
+    public Tokens tokenize() {
+        return new Lexer().tokenize(source);
+    }
+
+    @Benchmark
+    public Node nestedLists() {
+        return it.read(nested);
+    }
+}
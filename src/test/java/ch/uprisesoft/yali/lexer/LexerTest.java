@@ -263,4 +263,76 @@ public class LexerTest {
         assertThat(tokens.get(0).getLexeme(), is("?abc"));
     }
 
+    @Test
+    public void testSymbols() {
+        String testInput = "Print :COUNT \"count";
+
+        Lexer tokenizer = new Lexer();
+        List<Token> tokens = tokenizer.scan(testInput);
+
+        assertThat(tokens.get(0).symbol(), is(sameInstance(Symbol.of("print"))));
+        assertThat(tokens.get(0).symbol().name(), is("print"));
+        assertThat(tokens.get(1).symbol(), is(sameInstance(Symbol.of("count"))));
+        assertThat(tokens.get(2).symbol(), is(sameInstance(tokens.get(1).symbol())));
+    }
+
+    @Test
+    public void testUnusedSymbolsAreDropped() throws InterruptedException {
+        int before = Symbol.interned();
+        for (int i = 0; i < 10000; i++) {
+            Symbol.of("Computed" + i);
+        }
+
+        for (int i = 0; i < 50 && Symbol.interned() > before + 1000; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(Symbol.interned() < before + 1000, is(true));
+        assertThat(Symbol.of("Computed1"), is(sameInstance(Symbol.of("computed1"))));
+    }
+
+    @Test
+    public void testListTokensAsCode() {
+        String testInput = "[fd :len (1 + 2) \"x [a (b]]";
+
+        Lexer tokenizer = new Lexer();
+        List<Token> listTokens = tokenizer.scan(testInput);
+        List<Token> tokens = tokenizer.scan(listTokens.subList(0, listTokens.size() - 1));
+
+        assertThat(tokens.size(), is(13));
+        assertThat(tokens.get(0).type(), is(TokenType.SYMBOL));
+        assertThat(tokens.get(1).type(), is(TokenType.REFERENCE));
+        assertThat(tokens.get(2).type(), is(TokenType.LEFT_PAREN));
+        assertThat(tokens.get(3).type(), is(TokenType.NUMBER));
+        assertThat(tokens.get(3).getPos(), is(10));
+        assertThat(tokens.get(3).getAbsolute(), is(10));
+        assertThat(tokens.get(4).type(), is(TokenType.PLUS));
+        assertThat(tokens.get(6).type(), is(TokenType.RIGHT_PAREN));
+        assertThat(tokens.get(7).type(), is(TokenType.QUOTE));
+        assertThat(tokens.get(9).getLexeme(), is("a"));
+        assertThat(tokens.get(10).type(), is(TokenType.SYMBOL));
+        assertThat(tokens.get(10).getLexeme(), is("(b"));
+        assertThat(tokens.get(11).type(), is(TokenType.RIGHT_BRACKET));
+        assertThat(tokens.get(12).type(), is(TokenType.EOF));
+    }
+
+    @Test
+    public void testTokensAreRegionsOfTheSource() {
+        String testInput = "make \"x [a [b c]]\nEND";
+
+        Tokens tokens = new Lexer().tokenize(testInput);
+
+        assertThat(tokens.size(), is(12));
+        assertThat(tokens.type(1), is(TokenType.QUOTE));
+        assertThat(tokens.start(1), is(5));
+        assertThat(tokens.end(1), is(7));
+        assertThat(tokens.symbol(1), is(sameInstance(Symbol.of("x"))));
+        assertThat(tokens.type(4), is(TokenType.LEFT_BRACKET));
+        assertThat(tokens.span(2, 8).toString(), is("[a [b c]]"));
+        assertThat(tokens.span(4, 7).source(), is(sameInstance(testInput)));
+        assertThat(tokens.type(10), is(TokenType.END));
+        assertThat(tokens.line(10), is(2));
+        assertThat(tokens.absolute(10), is(18));
+    }
 }
@@ -22,6 +22,7 @@ import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.lexer.Lexer;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import org.junit.jupiter.api.Test;
 import static org.hamcrest.CoreMatchers.*;
@@ -116,6 +117,34 @@ public class ParserTest {
         assertThat(result.getChildren().get(0).toBooleanWord().getBoolean(), is(true));
     }
 
+    @Test
+    public void testConstantsAreShared() {
+        Node result = parse("true 7 [a b a] [b]");
+
+        assertThat(result.getChildren().get(0), sameInstance(Node.bool(true)));
+        assertThat(result.getChildren().get(1), sameInstance(Node.integer(7)));
+
+        Node first = result.getChildren().get(2);
+        Node second = result.getChildren().get(3);
+        assertThat(first.getChildren().get(0), sameInstance(first.getChildren().get(2)));
+        assertThat(first.getChildren().get(1), sameInstance(second.getChildren().get(0)));
+        assertThat(first.getChildren().get(1).toString(), is("b"));
+    }
+
+    @Test
+    public void testUnusedAtomsAreDropped() throws InterruptedException {
+        Node result = parse("[unusedatom]");
+        WeakReference<Node> atom = new WeakReference<>(result.getChildren().get(0).getChildren().get(0));
+        result = null;
+
+        for (int i = 0; i < 50 && atom.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(atom.get(), is(nullValue()));
+    }
+
     @Test
     public void testBooleanTrueLower() {
         Node result = parse("true");
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 rmaire.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.functions.builtin;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.math.BigInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ *
+ * @author rmaire
+ */
+public class ArithmeticTest {
+
+    private Interpreter it;
+
+    @BeforeEach
+    public void setUp() {
+        OutputObserver o = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+            }
+        };
+
+        it = new ObjectMother(o).getInterpreter();
+    }
+
+    @Test
+    public void testLongArithmetic() {
+        Node res = it.run(it.read("3000000000 * 3"));
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toIntegerWord().longValue(), is(9000000000L));
+    }
+
+    @Test
+    public void testOverflowPromotesToBigInteger() {
+        Node res = it.run(it.read("9223372036854775807 + 1"));
+
+        assertThat(res.type(), is(NodeType.BIGINTEGER));
+        assertThat(res.toString(), is("9223372036854775808"));
+    }
+
+    @Test
+    public void testBigIntegerShrinksToLong() {
+        Node res = it.run(it.read("(9223372036854775807 + 1) - 1"));
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toIntegerWord().longValue(), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testFactorial() {
+        it.run(it.read("to fact :n\nifelse :n < 2 [output 1] [output :n * (fact :n - 1)]\nend\n"));
+
+        Node res = it.run(it.read("fact 30"));
+
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 2; i <= 30; i++) {
+            expected = expected.multiply(BigInteger.valueOf(i));
+        }
+        assertThat(res.toBigIntegerWord().bigValue(), is(expected));
+    }
+
+    @Test
+    public void testBigIntegerLiteralsAndComparison() {
+        assertThat(it.run(it.read("100000000000000000000 > 99999999999999999999")).toBooleanWord().getBoolean(), is(true));
+        assertThat(it.run(it.read("100000000000000000000 = 100000000000000000000")).toBooleanWord().getBoolean(), is(true));
+        assertThat(it.run(it.read("100000000000000000000 > 1.5")).toBooleanWord().getBoolean(), is(true));
+        assertThat(it.run(it.read("mod 100000000000000000001 10")).toIntegerWord().longValue(), is(1L));
+    }
+
+    @Test
+    public void testBigIntegerIsNumberAndWord() {
+        assertThat(it.run(it.read("number? 99999999999999999999")).toString(), is("true"));
+        assertThat(it.run(it.read("number? (9223372036854775807 + 1)")).toString(), is("true"));
+        assertThat(it.run(it.read("word? 99999999999999999999")).toString(), is("true"));
+        assertThat(it.run(it.read("word? (9223372036854775807 + 1)")).toString(), is("true"));
+    }
+
+    @Test
+    public void testMixedFloat() {
+        Node res = it.run(it.read("3000000000 * 0.5"));
+
+        assertThat(res.type(), is(NodeType.FLOAT));
+        assertThat(res.toFloatWord().getFloat(), is(1.5E9));
+    }
+}
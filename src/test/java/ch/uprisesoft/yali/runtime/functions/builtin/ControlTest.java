@@ -18,6 +18,7 @@ package ch.uprisesoft.yali.runtime.functions.builtin;
 import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
@@ -25,6 +26,7 @@ import ch.uprisesoft.yali.runtime.io.OutputObserver;
 import java.util.ArrayList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -164,6 +166,19 @@ public class ControlTest {
         assertThat(res.toList().getChildren().get(1).toIntegerWord().getInteger(), is(100));
     }
 
+    @Test
+    public void testRepeatCountRange() {
+        // Paused after the first time, the count has been accepted
+        it.run(it.read("make \"n 0\nrepeat 2147483647 [make \"n :n + 1 pause]\n"));
+        it.stop();
+        assertThat(it.env().thing("n").toString(), is("1"));
+
+        assertThrows(NodeTypeException.class, () -> it.run(it.read("repeat 2147483648 [make \"n :n + 1]\n")));
+        it.stop();
+        assertThrows(NodeTypeException.class, () -> it.run(it.read("repeat 4294967297 [make \"n :n + 1]\n")));
+        assertThat(it.env().thing("n").toString(), is("1"));
+    }
+
     @Test
     public void testRepeatAndMake() {
         StringBuilder sb = new StringBuilder();
@@ -518,4 +533,56 @@ public class ControlTest {
         assertThat(outputs.get(1), is("two\n"));
     }
 
+    @Test
+    public void testRepeatStoredBlock() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"count 0").append("\n");
+        sb.append("make \"block [make \"count :count + 1]").append("\n");
+        sb.append("repeat 3 :block").append("\n");
+        sb.append("run :block").append("\n");
+        sb.append("if true :block").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(it.env().thing("count").toIntegerWord().getInteger(), is(5));
+    }
+
+    @Test
+    public void testBlockReadAgainAfterArityChange() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to f").append("\n");
+        sb.append("print \"x").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"block [print \"a f print \"b]").append("\n");
+        sb.append("run :block").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs.size(), is(3));
+        assertThat(outputs.get(1), is("x\n"));
+        assertThat(outputs.get(2), is("b\n"));
+
+        sb = new StringBuilder();
+        sb.append("to f :v").append("\n");
+        sb.append("print \"y").append("\n");
+        sb.append("end").append("\n");
+        sb.append("run :block").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs.size(), is(6));
+        assertThat(outputs.get(4), is("b\n"));
+        assertThat(outputs.get(5), is("y\n"));
+    }
+
+    @Test
+    public void testRunBuiltList() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"w first [\"a[b]").append("\n");
+        sb.append("run list \"print :w").append("\n");
+        sb.append("run fput \"print fput :w []").append("\n");
+        sb.append("run fput \"repeat fput 2 fput fput \"print fput :w [] []").append("\n");
+        sb.append("run fput \"print fput [[x y] z] []").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs, is(java.util.Arrays.asList("a[b\n", "a[b\n", "a[b\n", "a[b\n", "x y z\n")));
+    }
+
 }
@@ -17,6 +17,7 @@ package ch.uprisesoft.yali.runtime.functions.builtin;
 
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
@@ -24,6 +25,7 @@ import ch.uprisesoft.yali.runtime.io.OutputObserver;
 import java.util.ArrayList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -164,4 +166,217 @@ public class DataTest {
         assertThat(res.getChildren().get(3).type(), is(NodeType.SYMBOL));
         assertThat(res.getChildren().get(3).toString(), is("4"));
     }
+    
+    @Test
+    public void testPutsDoNotShareElements() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"base butfirst [0 1 2 3]").append("\n");
+        sb.append("make \"a lput 4 :base").append("\n");
+        sb.append("make \"b lput 5 :base").append("\n");
+        sb.append("make \"c fput 6 :base").append("\n");
+        sb.append("make \"d fput 7 :base").append("\n");
+        sb.append("(list :base :a :b :c :d)").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.getChildren().get(0).toString(), is("[1 2 3]"));
+        assertThat(res.getChildren().get(1).toString(), is("[1 2 3 4]"));
+        assertThat(res.getChildren().get(2).toString(), is("[1 2 3 5]"));
+        assertThat(res.getChildren().get(3).toString(), is("[6 1 2 3]"));
+        assertThat(res.getChildren().get(4).toString(), is("[7 1 2 3]"));
+    }
+    
+    @Test
+    public void testButfirstAndButlast() {
+        Node res = it.run(it.read("butfirst [1 2 3]\n"));
+        assertThat(res.type(), is(NodeType.LIST));
+        assertThat(res.toString(), is("[2 3]"));
+
+        res = it.run(it.read("butlast [1 2 3]\n"));
+        assertThat(res.toString(), is("[1 2]"));
+
+        res = it.run(it.read("butlast butfirst [1 2]\n"));
+        assertThat(res.getChildren().size(), is(0));
+    }
+    
+    @Test
+    public void testSharedListsAreNotMutated() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"a [1 2 3]").append("\n");
+        sb.append("make \"b butfirst :a").append("\n");
+        sb.append("make \"r reverse :a").append("\n");
+        sb.append("setitem 1 :b 9").append("\n");
+        sb.append("(list :a :b :r)").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.getChildren().get(0).toString(), is("[1 2 3]"));
+        assertThat(res.getChildren().get(1).toString(), is("[9 3]"));
+        assertThat(res.getChildren().get(2).toString(), is("[3 2 1]"));
+    }
+    
+    @Test
+    public void testEqualpComparesStructure() {
+        Node res = it.run(it.read("equal? [1 [a b] 2.5] [1 [a b] 2.5]\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+
+        res = it.run(it.read("equal? [1 [a b] 2] [1 [a c] 2]\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(false));
+
+        res = it.run(it.read("equal? \"3 3\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+
+        res = it.run(it.read("equal? \"true \"false\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(false));
+
+        res = it.run(it.read("equal? [a] \"a\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(false));
+    }
+    
+    @Test
+    public void testEqualpAfterSetitem() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"a [[1 2] 3]").append("\n");
+        sb.append("make \"b [[1 2] 3]").append("\n");
+        sb.append("equal? :a :b").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+
+        res = it.run(it.read("setitem 1 item 1 :a 9\nequal? :a :b\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(false));
+
+        res = it.run(it.read("equal? :a [[9 2] 3]\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+    }
+    
+    @Test
+    public void testMemberp() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"l [[1 2] [3 4] [5 6]]").append("\n");
+        sb.append("member? [3 4] :l").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+
+        res = it.run(it.read("member? [4 3] :l\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(false));
+
+        res = it.run(it.read("member? 3 [1 2 3]\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+
+        res = it.run(it.read("member? \"3 [1 2 3]\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+    }
+    
+    @Test
+    public void testMemberpAfterSetitem() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"l [[1 2] [3 4]]").append("\n");
+        sb.append("make \"found member? [3 4] :l").append("\n");
+        sb.append("setitem 2 item 2 :l 5").append("\n");
+        sb.append(":found").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+
+        res = it.run(it.read("member? [3 4] :l\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(false));
+
+        res = it.run(it.read("member? [3 5] :l\n"));
+        assertThat(res.toBooleanWord().getBoolean(), is(true));
+    }
+    
+    @Test
+    public void testArray() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"a array 3").append("\n");
+        sb.append("setitem 2 :a \"x").append("\n");
+        sb.append(":a").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.type(), is(NodeType.ARRAY));
+        assertThat(res.toString(), is("{[] x []}"));
+        assertThat(it.run(it.read("item 2 :a\n")).toString(), is("x"));
+        assertThat(it.run(it.read("count :a\n")).toString(), is("3"));
+        assertThat(it.run(it.read("array? :a\n")).toString(), is("true"));
+        assertThat(it.run(it.read("array? [1 2 3]\n")).toString(), is("false"));
+    }
+    
+    @Test
+    public void testArrayOrigin() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"a (listtoarray [a b c] 0)").append("\n");
+        sb.append("setitem 0 :a \"z").append("\n");
+        sb.append(":a").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.toString(), is("{z b c}@0"));
+        assertThat(it.run(it.read("item 2 :a\n")).toString(), is("c"));
+        assertThat(it.run(it.read("arraytolist :a\n")).toString(), is("[z b c]"));
+    }
+    
+    @Test
+    public void testArrayErrors() {
+        NodeTypeException nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("array -1\n")));
+        assertThat(nte.getNode().toString(), is("-1"));
+        it.stop();
+
+        nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("mdarray [2 -3]\n")));
+        assertThat(nte.getNode().toString(), is("-3"));
+        it.stop();
+
+        nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("setitem 1 (mdarray [2 3]) 5\n")));
+        assertThat(nte.getReceived(), is(NodeType.ARRAY));
+        assertThat(nte.getNode().toString(), is("{{[] [] []} {[] [] []}}"));
+        it.stop();
+
+        it.run(it.read("make \"a array 3\nmake \"g mdarray [2 3]\n"));
+        for (String index : new String[]{"0", "4"}) {
+            nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("item " + index + " :a\n")));
+            assertThat(nte.getNode().toString(), is(index));
+            it.stop();
+
+            nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("setitem " + index + " :a 1\n")));
+            assertThat(nte.getNode().toString(), is(index));
+            it.stop();
+        }
+
+        nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("mditem [2 4] :g\n")));
+        assertThat(nte.getNode().toString(), is("[2 4]"));
+        it.stop();
+
+        nte = assertThrows(NodeTypeException.class, () -> it.run(it.read("mdsetitem [0 1] :g 1\n")));
+        assertThat(nte.getNode().toString(), is("[0 1]"));
+        it.stop();
+
+        assertThat(it.run(it.read(":a\n")).toString(), is("{[] [] []}"));
+    }
+
+    @Test
+    public void testIndexRange() {
+        it.run(it.read("make \"l [a b]\nmake \"a (listtoarray [a b c] 2147483645)\n"));
+
+        assertThat(it.run(it.read("item 2147483647 :a\n")).toString(), is("c"));
+        fails("item 2147483648 :a\n");
+        fails("item 2147483649 :l\n");
+        fails("item 4294967297 :l\n");
+        fails("setitem 4294967297 :l \"x\n");
+        assertThat(it.run(it.read(":l\n")).toString(), is("[a b]"));
+    }
+
+    private void fails(String source) {
+        assertThrows(NodeTypeException.class, () -> it.run(it.read(source)));
+        it.stop();
+    }
+
+    @Test
+    public void testMdArray() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"grid mdarray [2 3]").append("\n");
+        sb.append("mdsetitem [2 3] :grid 1").append("\n");
+        sb.append("setitem 1 item 1 :grid 2").append("\n");
+        sb.append(":grid").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.toString(), is("{{2 [] []} {[] [] 1}}"));
+        assertThat(it.run(it.read("mditem [2 3] :grid\n")).toString(), is("1"));
+        assertThat(it.run(it.read("item 3 item 2 :grid\n")).toString(), is("1"));
+        assertThat(it.run(it.read("count item 1 :grid\n")).toString(), is("3"));
+    }
 }
@@ -0,0 +1,138 @@
+/* 
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.functions.builtin;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayList;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author uprisesoft@gmail.com
+ */
+public class LookupTest {
+    
+    Interpreter it;
+    private OutputObserver oo;
+    private InputGenerator ig;
+    private java.util.List<String> outputs;
+
+    public LookupTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        oo = new OutputObserver() {
+            
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+        
+        ig = new InputGenerator() {
+            
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+        
+        ObjectMother om = new ObjectMother(oo, ig);
+        
+        it = om.getInterpreter();
+        
+        outputs = new ArrayList<>();
+    }
+
+    @Test
+    public void testPropertyList() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("pprop \"turtle \"color \"red").append("\n");
+        sb.append("pprop \"turtle \"size 3").append("\n");
+        sb.append("pprop \"Turtle \"Color \"blue").append("\n");
+        sb.append("gprop \"turtle \"color").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.toString(), is("blue"));
+        assertThat(it.run(it.read("plist \"turtle\n")).toString(), is("[color blue size 3]"));
+
+        it.run(it.read("remprop \"turtle \"color\n"));
+        res = it.run(it.read("gprop \"turtle \"color\n"));
+        assertThat(res.type(), is(NodeType.LIST));
+        assertThat(res.getChildren().isEmpty(), is(true));
+        assertThat(it.run(it.read("plist \"turtle\n")).toString(), is("[size 3]"));
+        assertThat(it.run(it.read("plist \"nothing\n")).toString(), is("[]"));
+    }
+
+    @Test
+    public void testDictionary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"d dictionary").append("\n");
+        sb.append("setvalue \"a :d 1").append("\n");
+        sb.append("setvalue [1 2] :d \"pair").append("\n");
+        sb.append("setvalue 3 :d \"three").append("\n");
+        sb.append(":d").append("\n");
+        Node res = it.run(it.read(sb.toString()));
+
+        assertThat(res.type(), is(NodeType.DICTIONARY));
+        assertThat(res.toString(), is("{a: 1, [1 2]: pair, 3: three}"));
+        assertThat(it.run(it.read("getvalue \"a :d\n")).toString(), is("1"));
+        assertThat(it.run(it.read("getvalue (list 1 2) :d\n")).toString(), is("pair"));
+        assertThat(it.run(it.read("getvalue \"3 :d\n")).toString(), is("three"));
+        assertThat(it.run(it.read("key? \"b :d\n")).toString(), is("false"));
+        assertThat(it.run(it.read("count :d\n")).toString(), is("3"));
+        assertThat(it.run(it.read("dictionary? :d\n")).toString(), is("true"));
+
+        it.run(it.read("remvalue \"a :d\n"));
+        assertThat(it.run(it.read("keys :d\n")).toString(), is("[[1 2] 3]"));
+        assertThat(it.run(it.read("getvalue \"a :d\n")).toString(), is("[]"));
+    }
+
+    @Test
+    public void testDictionaryListKeyChanged() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"d dictionary").append("\n");
+        sb.append("make \"k [1 2]").append("\n");
+        sb.append("setvalue :k :d \"v").append("\n");
+        sb.append("setitem 1 :k 9").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(it.run(it.read(":k\n")).toString(), is("[9 2]"));
+        assertThat(it.run(it.read("key? :k :d\n")).toString(), is("false"));
+        assertThat(it.run(it.read("getvalue [9 2] :d\n")).toString(), is("[]"));
+        assertThat(it.run(it.read("key? [1 2] :d\n")).toString(), is("true"));
+        assertThat(it.run(it.read("getvalue [1 2] :d\n")).toString(), is("v"));
+
+        // Nor can the keys handed out change the entry
+        it.run(it.read("setitem 1 first keys :d 7\n"));
+        assertThat(it.run(it.read("keys :d\n")).toString(), is("[[1 2]]"));
+        assertThat(it.run(it.read("getvalue [1 2] :d\n")).toString(), is("v"));
+    }
+}
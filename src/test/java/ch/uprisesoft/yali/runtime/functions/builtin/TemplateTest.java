@@ -24,10 +24,13 @@ import ch.uprisesoft.yali.parser.Parser;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.exception.NodeTypeException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 
@@ -85,12 +88,12 @@ public class TemplateTest {
         Node result = it.run(it.read("map [? * ?] [1 2 3]"));
         
         assertThat(result.getChildren().size(), is(3));
-        assertThat(result.getChildren().get(0).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(0).toSymbolWord().getSymbol(), is("1"));
-        assertThat(result.getChildren().get(1).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(1).toSymbolWord().getSymbol(), is("4"));
-        assertThat(result.getChildren().get(2).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(2).toSymbolWord().getSymbol(), is("9"));
+        assertThat(result.getChildren().get(0).type(), is(NodeType.INTEGER));
+        assertThat(result.getChildren().get(0).toIntegerWord().getInteger(), is(1));
+        assertThat(result.getChildren().get(1).type(), is(NodeType.INTEGER));
+        assertThat(result.getChildren().get(1).toIntegerWord().getInteger(), is(4));
+        assertThat(result.getChildren().get(2).type(), is(NodeType.INTEGER));
+        assertThat(result.getChildren().get(2).toIntegerWord().getInteger(), is(9));
     }
     
     @Test
@@ -98,14 +101,14 @@ public class TemplateTest {
         Node result = it.run(it.read("map [equal? (mod ? 2) 1] [1 2 3 4]"));
         
         assertThat(result.getChildren().size(), is(4));
-        assertThat(result.getChildren().get(0).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(0).toSymbolWord().getSymbol(), is("true"));
-        assertThat(result.getChildren().get(1).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(1).toSymbolWord().getSymbol(), is("false"));
-        assertThat(result.getChildren().get(2).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(2).toSymbolWord().getSymbol(), is("true"));
-        assertThat(result.getChildren().get(3).type(), is(NodeType.SYMBOL));
-        assertThat(result.getChildren().get(3).toSymbolWord().getSymbol(), is("false"));
+        assertThat(result.getChildren().get(0).type(), is(NodeType.BOOLEAN));
+        assertThat(result.getChildren().get(0).toBooleanWord().getBoolean(), is(true));
+        assertThat(result.getChildren().get(1).type(), is(NodeType.BOOLEAN));
+        assertThat(result.getChildren().get(1).toBooleanWord().getBoolean(), is(false));
+        assertThat(result.getChildren().get(2).type(), is(NodeType.BOOLEAN));
+        assertThat(result.getChildren().get(2).toBooleanWord().getBoolean(), is(true));
+        assertThat(result.getChildren().get(3).type(), is(NodeType.BOOLEAN));
+        assertThat(result.getChildren().get(3).toBooleanWord().getBoolean(), is(false));
     }
     
      @Test
@@ -148,4 +151,159 @@ public class TemplateTest {
         
         assertThat(result.toQuotedWord().getQuote(), is("b"));
     }
+    
+    @Test
+    public void testMapNested() {
+        Node result = it.run(it.read("map [map [? + 1] ?] [[1 2] [3 4]]"));
+        
+        assertThat(result.toString(), is("[[2 3] [4 5]]"));
+    }
+    
+    @Test
+    public void testMapWords() {
+        Node result = it.run(it.read("map [uppercase ?] [a b]"));
+        
+        assertThat(result.toString(), is("[A B]"));
+    }
+    
+    @Test
+    public void testFindStopsAtFirstMatch() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"n 0").append("\n");
+        sb.append("make \"found find [make \"n :n + 1 equal? ? 2] [1 2 3 4]").append("\n");
+        sb.append(":n").append("\n");
+        Node result = it.run(it.read(sb.toString()));
+        
+        assertThat(result.toIntegerWord().getInteger(), is(2));
+    }
+    
+    @Test
+    public void testReduce() {
+        Node result = it.run(it.read("reduce [?1 + ?2] [1 2 3 4]"));
+        
+        assertThat(result.toIntegerWord().getInteger(), is(10));
+        
+        result = it.run(it.read("reduce [sentence ?1 ?2] [a [b] c]"));
+        
+        assertThat(result.toString(), is("[a b c]"));
+    }
+    
+    @Test
+    public void testReduceEmpty() {
+        NodeTypeException e = assertThrows(NodeTypeException.class, () -> it.run(it.read("reduce [?1 + ?2] []")));
+        it.stop();
+        
+        assertThat(e.getReceived(), is(NodeType.NIL));
+        assertThat(e.getExpected(), is(Arrays.asList(NodeType.LIST)));
+    }
+    
+    @Test
+    public void testPreduceEmpty() {
+        NodeTypeException e = assertThrows(NodeTypeException.class, () -> it.run(it.read("preduce [?1 + ?2] []")));
+        it.stop();
+        
+        assertThat(e.getReceived(), is(NodeType.NIL));
+    }
+    
+    @Test
+    public void testPmap() {
+        String values = numbers(5000);
+        Node parallel = it.run(it.read("pmap [? * ?] " + values));
+        Node sequential = it.run(it.read("map [? * ?] " + values));
+        
+        assertThat(parallel.getChildren().size(), is(5000));
+        assertThat(parallel.getChildren().get(4999).toIntegerWord().getInteger(), is(4999 * 4999));
+        assertThat(parallel, is(sequential));
+    }
+    
+    @Test
+    public void testPfilter() {
+        String values = numbers(5000);
+        Node parallel = it.run(it.read("pfilter [equal? (mod ? 1000) 0] " + values));
+        
+        assertThat(parallel.toString(), is("[0 1000 2000 3000 4000]"));
+    }
+    
+    @Test
+    public void testPreduce() {
+        Node result = it.run(it.read("preduce [?1 + ?2] " + numbers(5000)));
+        
+        assertThat(result.toIntegerWord().getInteger(), is(4999 * 5000 / 2));
+    }
+    
+    @Test
+    public void testParallelSeesCaller() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"factor 3").append("\n");
+        sb.append("to scaled :x").append("\n");
+        sb.append("output :x * :factor").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to shifted :values").append("\n");
+        sb.append("localmake \"offset 1").append("\n");
+        sb.append("output pmap [(scaled ?) + :offset] :values").append("\n");
+        sb.append("end").append("\n");
+        sb.append("shifted " + numbers(5000)).append("\n");
+        Node result = it.run(it.read(sb.toString()));
+        
+        assertThat(result.getChildren().size(), is(5000));
+        assertThat(result.getChildren().get(10).toIntegerWord().getInteger(), is(31));
+    }
+    
+    @Test
+    public void testParallelChangesStayInWorkers() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"n 0").append("\n");
+        sb.append("make \"values pmap [make \"n :n + 1 ?] " + numbers(5000)).append("\n");
+        sb.append(":n").append("\n");
+        Node result = it.run(it.read(sb.toString()));
+        
+        assertThat(result.toIntegerWord().getInteger(), is(0));
+    }
+    
+    @Test
+    public void testParallelIgnoresRedefinition() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to map :template :values").append("\n");
+        sb.append("output []").append("\n");
+        sb.append("end").append("\n");
+        sb.append("pmap [? + 1] " + numbers(5000)).append("\n");
+        Node result = it.run(it.read(sb.toString()));
+        
+        assertThat(result.getChildren().size(), is(5000));
+        assertThat(result.getChildren().get(4999).toIntegerWord().getInteger(), is(5000));
+    }
+    
+    @Test
+    public void testParallelLocalsStayLocal() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"n 0").append("\n");
+        sb.append("to counted :values").append("\n");
+        sb.append("localmake \"n 100").append("\n");
+        sb.append("output pmap [:n + ?] :values").append("\n");
+        sb.append("end").append("\n");
+        sb.append("counted " + numbers(5000)).append("\n");
+        Node result = it.run(it.read(sb.toString()));
+        
+        assertThat(result.getChildren().get(1).toIntegerWord().getInteger(), is(101));
+        assertThat(it.run(it.read(":n\n")).toIntegerWord().getInteger(), is(0));
+    }
+    
+    @Test
+    public void testParallelOutputInOrder() {
+        Node result = it.run(it.read("pmap [print ? ?] " + numbers(5000)));
+        
+        assertThat(result.getChildren().size(), is(5000));
+        assertThat(outputs.size(), is(5000));
+        for (int i = 0; i < 5000; i++) {
+            assertThat(outputs.get(i), is(i + "\n"));
+        }
+    }
+    
+    private String numbers(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            sb.append(i).append(" ");
+        }
+        return sb.append("]").toString();
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ *
+ * @author rma
+ */
+public class CompilerTest {
+
+    private Interpreter it;
+
+    @BeforeEach
+    public void setUp() {
+        it = new ObjectMother().getInterpreter();
+    }
+
+    @Test
+    public void testCall() {
+        Call call = it.read("print 1 + 2\n").getChildren().get(0).toProcedureCall();
+
+        Code code = Compiler.call(call);
+
+        assertThat(code.ops, is(new int[]{
+            Code.PUSH, 0,
+            Code.PUSH, 1,
+            Code.CALL, 2,
+            Code.CALL, 3,
+            Code.RESULT,
+            Code.RETURN}));
+        assertThat(code.constants[3], is(sameInstance(call)));
+    }
+
+    @Test
+    public void testParametersAreLoadedFromSlots() {
+        it.run(it.read("to inc :n\noutput :n + 1\nend\n"));
+        Procedure inc = it.env().procedure("inc");
+
+        Code code = Compiler.statements(inc.getChildren());
+
+        assertThat(code.ops[0], is(Code.LOAD));
+        assertThat(code.ops[1], is(0));
+        assertThat(code.ops[code.ops.length - 1], is(Code.RETURN));
+    }
+}
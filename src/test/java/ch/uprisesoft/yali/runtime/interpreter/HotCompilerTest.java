@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author rma
+ */
+public class HotCompilerTest {
+
+    private java.util.List<String> outputs;
+    private Interpreter it;
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        OutputObserver oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        InputGenerator ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+
+        it = new ObjectMother(oo, ig).getInterpreter();
+        it.hotThreshold(10);
+    }
+
+    @Test
+    public void testHotProcedureIsCompiled() {
+        it.run(it.read("to fib :n\nifelse (:n < 2) [output :n] [output (fib :n - 1) + (fib :n - 2)]\nend\n"));
+
+        Node res = it.run(it.read("fib 15\n"));
+
+        assertThat(res.toIntegerWord().getInteger(), is(610));
+        assertThat(it.env().procedure("fib").compiled().compilable(), is(true));
+    }
+
+    @Test
+    public void testLoopWithLocals() {
+        it.run(it.read("to sum :n\nlocalmake \"s 0\nrepeat :n [make \"s :s + 1]\noutput :s\nend\n"));
+
+        Node res = Node.none();
+        for (int i = 0; i < 20; i++) {
+            res = it.run(it.read("sum 100\n"));
+        }
+
+        assertThat(res.toIntegerWord().getInteger(), is(100));
+        assertThat(it.env().procedure("sum").compiled().compilable(), is(true));
+    }
+
+    @Test
+    public void testTemplateInHotProcedure() {
+        it.run(it.read("to scaled :n\noutput map [? * :n] [1 2 3]\nend\n"));
+
+        Node res = Node.none();
+        for (int i = 0; i < 20; i++) {
+            res = it.run(it.read("scaled 2\n"));
+        }
+
+        assertThat(res.toString(), is("[2 4 6]"));
+        assertThat(it.env().procedure("scaled").compiled().compilable(), is(true));
+    }
+
+    @Test
+    public void testRedefinitionDeoptimizes() {
+        it.run(it.read("to greet\noutput \"hello\nend\n"));
+        it.run(it.read("to twice\noutput word greet greet\nend\n"));
+        for (int i = 0; i < 20; i++) {
+            it.run(it.read("twice\n"));
+        }
+
+        it.run(it.read("to greet\noutput \"bye\nend\n"));
+        Node res = it.run(it.read("twice\n"));
+
+        assertThat(res.toString(), is("byebye"));
+    }
+
+    @Test
+    public void testPausingProcedureIsInterpreted() {
+        it.run(it.read("to stepper\npause\nprint \"step\nend\n"));
+
+        for (int i = 0; i < 20; i++) {
+            it.run(it.read("stepper\n"));
+            assertThat(it.paused(), is(true));
+            it.resume();
+        }
+
+        assertThat(outputs.size(), is(20));
+        assertThat(it.env().procedure("stepper").compiled().compilable(), is(false));
+    }
+
+    @Test
+    public void testOperatorSitesSeeOtherTypes() {
+        it.run(it.read("to f :a :b\noutput :a * :b + :a\nend\n"));
+
+        // Interpreted first, compiled after ten calls
+        for (int i = 0; i < 20; i++) {
+            assertThat(it.run(it.read("f 2 3\n")).toIntegerWord().getInteger(), is(8));
+            assertThat(it.run(it.read("f 0.5 3\n")).toFloatWord().getFloat(), is(2.0));
+            assertThat(it.run(it.read("f 2 0.5\n")).toFloatWord().getFloat(), is(3.0));
+            assertThat(it.run(it.read("(f 2 3) < 8.5\n")).toBooleanWord().getBoolean(), is(true));
+        }
+
+        assertThat(it.env().procedure("f").compiled().compilable(), is(true));
+        assertThrows(NodeTypeException.class, () -> it.run(it.read("f 2 \"x\n")));
+    }
+
+    @Test
+    public void testForkDoesNotRunCompiledCodeOfParent() {
+        it.run(it.read("make \"x 1\nto f :n\noutput :n + :x\nend\n"));
+        for (int i = 0; i < 20; i++) {
+            it.run(it.read("f 1\n"));
+        }
+        assertThat(it.env().procedure("f").compiled().compilable(), is(true));
+
+        Interpreter fork = it.fork();
+        fork.run(fork.read("make \"x 10\n"));
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(fork.run(fork.read("f 1\n")).toIntegerWord().getInteger(), is(11));
+            assertThat(it.run(it.read("f 1\n")).toIntegerWord().getInteger(), is(2));
+        }
+    }
+
+    @Test
+    public void testDeepRecursion() {
+        it.run(it.read("to down :i\nif (:i > 0) [down :i - 1]\nend\n"));
+
+        it.run(it.read("down 100000\nprint \"done\n"));
+
+        assertThat(outputs.get(0), is("done\n"));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the runtime stacks: many top level statements and deep
+ * recursion.
+ *
+ * @author rma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InterpreterBenchmark {
+
+    private Interpreter it;
+    private Node statements;
+    private Node recursion;
+
+    @Setup
+    public void setUp() {
+        it = new Interpreter();
+        it.loadStdLib(output -> {
+        });
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append("make \"x ").append(i).append("\n");
+        }
+        statements = it.read(sb.toString());
+
+        it.run(it.read("to down :i\nif (:i > 0) [down :i - 1]\nend\n"));
+        recursion = it.read("down 10000\n");
+    }
+
+    @Benchmark
+    public Node topLevelStatements() {
+        return it.run(statements);
+    }
+
+    @Benchmark
+    public Node deepRecursion() {
+        return it.run(recursion);
+    }
+}
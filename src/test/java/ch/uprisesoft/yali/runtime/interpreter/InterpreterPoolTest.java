@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ *
+ * @author rma
+ */
+public class InterpreterPoolTest {
+
+    private java.util.List<String> outputs;
+    private OutputObserver oo;
+    private InputGenerator ig;
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+    }
+
+    @Test
+    public void testStdLibIsShared() {
+        Interpreter first = new Interpreter().loadStdLib(oo, ig);
+        Interpreter second = new Interpreter().loadStdLib(oo, ig);
+
+        assertThat(first.env().procedure("print") == second.env().procedure("print"), is(true));
+        assertThat(first.env().procedure("map") == second.env().procedure("map"), is(true));
+
+        first.run(first.read("to print :x\noutput :x\nend\n"));
+        second.run(second.read("print \"hello"));
+
+        assertThat(first.env().procedure("print").isNative(), is(false));
+        assertThat(outputs.size(), is(1));
+        assertThat(outputs.get(0), is("hello\n"));
+    }
+
+    @Test
+    public void testReleasedInterpreterIsReset() {
+        InterpreterPool pool = new InterpreterPool(1);
+        assertThat(pool.idle(), is(1));
+
+        Interpreter it = pool.acquire(oo, ig);
+        assertThat(pool.idle(), is(0));
+        it.run(it.read("make \"x 1\nto f\noutput 2\nend\npprop \"p \"a 3\nprint readword"));
+        assertThat(outputs.get(0), is("requestedinputline\n"));
+        pool.release(it);
+
+        Interpreter again = pool.acquire();
+        assertThat(again == it, is(true));
+        assertThat(again.env().thingable("x"), is(false));
+        assertThat(again.env().defined("f"), is(false));
+        assertThat(again.run(again.read("plist \"p")).toString(), is("[]"));
+
+        again.run(again.read("print 4"));
+        assertThat(outputs.size(), is(1));
+    }
+
+    @Test
+    public void testReleasedInterpreterDropsTracers() {
+        InterpreterPool pool = new InterpreterPool(1);
+        Interpreter it = pool.acquire(oo, ig);
+        InterpreterTest.RecordingTracer tracer = new InterpreterTest.RecordingTracer();
+        it.addTracer(tracer);
+        it.hotThreshold(10);
+        pool.release(it);
+
+        Interpreter again = pool.acquire();
+        assertThat(again == it, is(true));
+        assertThat(again.tracers().isEmpty(), is(true));
+        assertThat(again.tracing(), is(false));
+        assertThat(again.hotThreshold(), is(0));
+
+        again.run(again.read("make \"x 1\n:x"));
+        assertThat(tracer.events.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testPoolFromImage() {
+        Interpreter prelude = new Interpreter().loadStdLib(oo, ig);
+        prelude.run(prelude.read("to twice :x\noutput :x * 2\nend\n"));
+        InterpreterPool pool = new InterpreterPool(prelude.snapshot(), 2);
+
+        Interpreter first = pool.acquire();
+        Interpreter second = pool.acquire();
+        Interpreter third = pool.acquire();
+        first.run(first.read("to twice :x\noutput :x\nend\n"));
+
+        assertThat(first.run(first.read("twice 4")).toString(), is("4"));
+        assertThat(second.run(second.read("twice 4")).toString(), is("8"));
+        assertThat(third.run(third.read("twice 4")).toString(), is("8"));
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertThat(pool.idle(), is(2));
+
+        Interpreter reused = pool.acquire();
+        assertThat(reused.run(reused.read("twice 4")).toString(), is("8"));
+    }
+}
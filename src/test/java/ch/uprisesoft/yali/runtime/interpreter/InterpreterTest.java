@@ -15,12 +15,19 @@
  */
 package ch.uprisesoft.yali.runtime.interpreter;
 
+import ch.uprisesoft.yali.ast.node.Call;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.scope.Environment;
+import ch.uprisesoft.yali.scope.Snapshot;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import org.junit.jupiter.api.Test;
 import static org.hamcrest.CoreMatchers.*;
@@ -108,6 +115,20 @@ public class InterpreterTest {
 
     }
     
+    @Test
+    public void testOperandNotANumber() {
+        String input = "print 1 + \"abc";
+
+        NodeTypeException nte = assertThrows(NodeTypeException.class, () -> it.run(it.read(input)));
+
+        assertThat(nte.getExpected().get(0), is(NodeType.NUMBER));
+        assertThat(nte.getReceived(), is(NodeType.QUOTE));
+        assertThat(nte.getNode().toString(), is("abc"));
+        assertThat(nte.getNode().getLine(), is(1));
+        assertThat(nte.getNode().getCol(), is(10));
+        assertThat(nte.getMessage(), is("+: Expected node of type NUMBER, but received node of type QUOTE"));
+    }
+
     @Test
     public void testRecursion2() {
         String input = "to recurse :i\n"
@@ -141,4 +162,273 @@ public class InterpreterTest {
         assertThat(outputs.get(1), is("yes\n"));
     }
 
+    @Test
+    public void testDeepRecursion() {
+        String input = "to down :i\n"
+                + "if (:i > 0) [down :i - 1]\n"
+                + "end\n"
+                + "\n"
+                + "down 100000\n"
+                + "print \"done\n";
+
+        it.run(it.read(input));
+
+        assertThat(outputs.size(), is(1));
+        assertThat(outputs.get(0), is("done\n"));
+    }
+
+    @Test
+    public void testRedefinedProcedureCalledFromSameSite() {
+        it.run(it.read("to greet\nprint \"hello\nend\n"));
+        it.run(it.read("to twice\ngreet\ngreet\nend\n"));
+
+        Node program = it.read("twice\n");
+        it.run(program);
+        it.run(it.read("to greet\nprint \"bye\nend\n"));
+        it.run(program);
+
+        assertThat(outputs.size(), is(4));
+        assertThat(outputs.get(1), is("hello\n"));
+        assertThat(outputs.get(2), is("bye\n"));
+        assertThat(outputs.get(3), is("bye\n"));
+    }
+
+    @Test
+    public void testAttachedTracerSeesEvents() {
+        RecordingTracer tracer = new RecordingTracer();
+        it.addTracer(tracer);
+
+        it.run(it.read("to inc :n\noutput :n + 1\nend\nmake \"x inc 1\nprint :x\n"));
+
+        assertThat(it.tracing(), is(true));
+        assertThat(tracer.events, hasItems("schedule inc", "make n", "thing n", "make x", "thing x"));
+        assertThat(outputs.get(0), is("2\n"));
+    }
+
+    @Test
+    public void testTickByTick() {
+        it.run(it.read("to fib :n\nifelse (:n < 2) [output :n] [output (fib :n - 1) + (fib :n - 2)]\nend\n"));
+        it.load(it.read("print fib 10\n"));
+
+        int ticks = 0;
+        while (it.tick()) {
+            ticks++;
+        }
+
+        assertThat(ticks > 100, is(true));
+        assertThat(outputs.get(0), is("55\n"));
+    }
+
+    @Test
+    public void testRecursiveResults() {
+        String input = "to fib :n\n"
+                + "ifelse (:n < 2) [output :n] [output (fib :n - 1) + (fib :n - 2)]\n"
+                + "end\n"
+                + "\n"
+                + "fib 15\n";
+
+        Node res = it.run(it.read(input));
+
+        assertThat(res.toIntegerWord().getInteger(), is(610));
+    }
+
+    @Test
+    public void testNestedRepeat() {
+        String input = "make \"count 0\n"
+                + "repeat 3 [repeat 4 [make \"count :count + 1]]\n";
+
+        it.run(it.read(input));
+
+        assertThat(it.env().thing("count").toIntegerWord().getInteger(), is(12));
+    }
+
+    @Test
+    public void testStreamedForwardReferences() {
+        String input = "greet \"world\n"
+                + "repeat 2 [twice]\n"
+                + "to greet :name\n"
+                + "print :name\n"
+                + "end\n"
+                + "to twice\n"
+                + "greet \"a\n"
+                + "greet \"b\n"
+                + "end\n"
+                + "print \"done\n";
+
+        it.run(new StringReader(input));
+
+        assertThat(outputs.size(), is(6));
+        assertThat(outputs.get(0), is("world\n"));
+        assertThat(outputs.get(1), is("a\n"));
+        assertThat(outputs.get(4), is("b\n"));
+        assertThat(outputs.get(5), is("done\n"));
+    }
+
+    @Test
+    public void testStreamedStatementsRunWhileReading() {
+        StringBuilder input = new StringBuilder("print \"first\n");
+        for (int i = 0; i < 10000; i++) {
+            input.append("make \"x [").append(i).append("]\n");
+        }
+        input.append("to last\noutput :x\nend\nlast\n");
+
+        int[] printedWhenRead = {-1};
+        Reader reader = new FilterReader(new StringReader(input.toString())) {
+            int reads = 0;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                // The first read fills the buffer, later reads are only
+                // needed once the first statements have run
+                if (++reads == 2) {
+                    printedWhenRead[0] = outputs.size();
+                }
+                return super.read(buffer, offset, Math.min(length, 1024));
+            }
+        };
+
+        Node result = it.run(reader);
+
+        assertThat(printedWhenRead[0], is(1));
+        assertThat(result.toString(), is("[9999]"));
+    }
+
+    @Test
+    public void testForkSharesDefinitions() {
+        String input = "to double :x\n"
+                + "output :x * 2\n"
+                + "end\n"
+                + "make \"base 21\n"
+                + "pprop \"config \"mode \"fast\n";
+        it.run(it.read(input));
+
+        Interpreter fork = it.fork();
+
+        assertThat(fork.run(fork.read("double :base")).toIntegerWord().getInteger(), is(42));
+        assertThat(fork.run(fork.read("gprop \"config \"mode")).toString(), is("fast"));
+
+        fork.run(fork.read("print :base"));
+        assertThat(outputs.get(0), is("21\n"));
+    }
+
+    @Test
+    public void testForkChangesStaySeparate() {
+        it.run(it.read("make \"x 1\npprop \"p \"a 1"));
+        Interpreter fork = it.fork();
+
+        fork.run(fork.read("make \"x 2\nmake \"y 3\npprop \"p \"a 2\nto g\noutput 4\nend"));
+        it.run(it.read("make \"x 5"));
+
+        assertThat(it.run(it.read(":x")).toString(), is("5"));
+        assertThat(it.env().thingable("y"), is(false));
+        assertThat(it.env().defined("g"), is(false));
+        assertThat(it.run(it.read("gprop \"p \"a")).toString(), is("1"));
+
+        assertThat(fork.run(fork.read("gprop \"p \"a")).toString(), is("2"));
+        assertThat(fork.run(fork.read("g")).toString(), is("4"));
+        assertThat(fork.run(fork.read(":x")).toString(), is("2"));
+    }
+
+    @Test
+    public void testSnapshotRestore() {
+        it.run(it.read("make \"x 1\nto f\noutput 1\nend"));
+        Snapshot snapshot = it.snapshot();
+
+        it.run(it.read("make \"x 2\nto f\noutput 2\nend\npprop \"p \"a 1"));
+        assertThat(it.run(it.read("f")).toString(), is("2"));
+
+        it.restore(snapshot);
+
+        assertThat(it.run(it.read(":x")).toString(), is("1"));
+        assertThat(it.run(it.read("f")).toString(), is("1"));
+        assertThat(it.run(it.read("plist \"p")).toString(), is("[]"));
+
+        Interpreter other = new Interpreter(snapshot);
+        assertThat(other.run(other.read("(f) + :x")).toString(), is("2"));
+    }
+
+    static class RecordingTracer implements Tracer {
+
+        final java.util.List<String> events = new ArrayList<>();
+
+        @Override
+        public void parse(String source) {
+        }
+
+        @Override
+        public void start(Node node) {
+        }
+
+        @Override
+        public void callPrimitive(String name, java.util.List<Node> args, Environment env) {
+        }
+
+        @Override
+        public void call(String name, java.util.List<Node> args, Environment env) {
+        }
+
+        @Override
+        public void schedule(String name, Call call, Environment env) {
+            events.add("schedule " + name);
+        }
+
+        @Override
+        public void unschedule(String name, Call call, Environment env) {
+        }
+
+        @Override
+        public void arg(String name, Node val, Environment env) {
+        }
+
+        @Override
+        public void make(String name, Node val, Environment env) {
+            events.add("make " + name);
+        }
+
+        @Override
+        public void thing(String name, Node val, Environment env) {
+            events.add("thing " + name);
+        }
+
+        @Override
+        public void local(String name, Environment env) {
+        }
+
+        @Override
+        public void scope(String name, Environment env) {
+        }
+
+        @Override
+        public void unscope(String name, Environment env) {
+        }
+
+        @Override
+        public void run(Node val) {
+        }
+
+        @Override
+        public void load(Node val) {
+        }
+
+        @Override
+        public void tick(Node val) {
+        }
+
+        @Override
+        public void returnTick(Node val, String pos) {
+        }
+
+        @Override
+        public void apply(Node val) {
+        }
+
+        @Override
+        public void pause(Node val) {
+        }
+
+        @Override
+        public void resume(Node val) {
+        }
+    }
+
 }
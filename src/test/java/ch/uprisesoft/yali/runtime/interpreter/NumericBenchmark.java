@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Numeric loops, interpreted and compiled by the second tier: integer and
+ * float arithmetic and comparisons.
+ *
+ * @author rma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NumericBenchmark {
+
+    private Interpreter it;
+    private Node intLoop;
+    private Node floatLoop;
+    private Node compareLoop;
+
+    private Interpreter hot;
+    private Node hotFib;
+    private Node hotFloats;
+
+    @Setup
+    public void setUp() {
+        it = new Interpreter();
+        it.loadStdLib(output -> {
+        });
+
+        intLoop = it.read("make \"x 0\nrepeat 100000 [make \"x :x + 1]\n");
+        floatLoop = it.read("make \"f 0.5\nrepeat 100000 [make \"f :f * 0.5 + 1.25]\n");
+        compareLoop = it.read("make \"y 0\nrepeat 100000 [if :y < 50000 [make \"y :y + 1]]\n");
+
+        hot = new Interpreter();
+        hot.loadStdLib(output -> {
+        });
+        hot.hotThreshold(10);
+        hot.run(hot.read("to fib :n\nifelse (:n < 2) [output :n] [output (fib :n - 1) + (fib :n - 2)]\nend\n"));
+        hot.run(hot.read("to floats :n\nlocalmake \"s 0.5\nrepeat :n [make \"s :s * 0.5 + :n]\noutput :s\nend\n"));
+        hotFib = hot.read("fib 20\n");
+        hotFloats = hot.read("floats 100000\n");
+    }
+
+    @Benchmark
+    public Node intLoop() {
+        return it.run(intLoop);
+    }
+
+    @Benchmark
+    public Node floatLoop() {
+        return it.run(floatLoop);
+    }
+
+    @Benchmark
+    public Node compareLoop() {
+        return it.run(compareLoop);
+    }
+
+    @Benchmark
+    public Node hotFib() {
+        return hot.run(hotFib);
+    }
+
+    @Benchmark
+    public Node hotFloats() {
+        return hot.run(hotFloats);
+    }
+}
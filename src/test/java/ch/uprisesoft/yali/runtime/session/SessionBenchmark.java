@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.session;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.InterpreterPool;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Load test of the session manager: many sessions computing a little and
+ * waiting for a line of input, on a few carrier threads. Time per round
+ * divided by sessions shows what a session costs, comparing carriers shows
+ * how sessions per core scale. On Java 21, add -p threads=carriers,virtual
+ * to compare with virtual threads.
+ *
+ * @author rma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SessionBenchmark {
+
+    private static final String PROGRAM = "make \"x 0\nrepeat 100 [make \"x :x + 1]\nprint readword\n:x\n";
+
+    @Param({"100", "1000", "10000"})
+    public int sessions;
+
+    @Param({"1", "2", "4"})
+    public int carriers;
+
+    @Param({"carriers"})
+    public String threads;
+
+    private SessionManager manager;
+    private List<Session> open;
+
+    @Setup
+    public void setUp() {
+        if ("virtual".equals(threads)) {
+            manager = SessionManager.virtual(new InterpreterPool(carriers));
+        } else {
+            manager = new SessionManager(carriers);
+        }
+        open = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            open.add(manager.open(output -> {
+            }));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public int round() throws Exception {
+        List<CompletableFuture<Node>> results = new ArrayList<>();
+        for (Session session : open) {
+            results.add(session.submit(PROGRAM));
+        }
+        // Sessions waiting for their line hold no thread
+        for (Session session : open) {
+            session.input("done");
+        }
+
+        int total = 0;
+        for (CompletableFuture<Node> result : results) {
+            total += result.get().toIntegerWord().getInteger();
+        }
+        return total;
+    }
+}
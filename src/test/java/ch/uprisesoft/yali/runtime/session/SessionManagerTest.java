@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.session;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.InterpreterPool;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ *
+ * @author rma
+ */
+public class SessionManagerTest {
+
+    private SessionManager manager;
+    private ExecutorService executor;
+
+    @AfterEach
+    public void tearDown() {
+        if (manager != null) {
+            manager.close();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRunsPrograms() throws Exception {
+        manager = new SessionManager(2);
+        java.util.List<String> outputs = outputs();
+        Session session = manager.open(outputs::add);
+
+        session.submit("to double :x\noutput :x * 2\nend\n");
+        Node result = session.submit("print \"hello\ndouble 21\n").get(5, TimeUnit.SECONDS);
+
+        assertThat(result.toString(), is("42"));
+        assertThat(outputs, is(java.util.Arrays.asList("hello\n")));
+    }
+
+    @Test
+    public void testInputParksSession() throws Exception {
+        // A single carrier, kept free while the first session waits
+        manager = new SessionManager(1);
+        java.util.List<String> outputs = outputs();
+        Session reading = manager.open(outputs::add);
+        Session other = manager.open(outputs::add);
+
+        CompletableFuture<Node> read = reading.submit("print readword\nprint readlist\n");
+        await(reading::waiting);
+
+        other.submit("print \"other").get(5, TimeUnit.SECONDS);
+        assertThat(read.isDone(), is(false));
+
+        reading.input("first");
+        await(reading::waiting);
+        reading.input("second line");
+        read.get(5, TimeUnit.SECONDS);
+
+        assertThat(outputs, is(java.util.Arrays.asList("other\n", "first\n", "second line\n")));
+    }
+
+    @Test
+    public void testInputAheadOfTime() throws Exception {
+        manager = new SessionManager(1);
+        java.util.List<String> outputs = outputs();
+        Session session = manager.open(outputs::add);
+
+        session.input("one");
+        session.input("two");
+        session.submit("print readword\nprint readword\n").get(5, TimeUnit.SECONDS);
+
+        assertThat(outputs, is(java.util.Arrays.asList("one\n", "two\n")));
+    }
+
+    @Test
+    public void testSessionsTakeTurns() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        manager = new SessionManager(new InterpreterPool(2), executor, 10);
+        Session busy = manager.open(output -> {
+        });
+        Session quick = manager.open(output -> {
+        });
+
+        CompletableFuture<Node> loop = busy.submit("make \"x 0\nrepeat 100000 [make \"x :x + 1]\n:x\n");
+        quick.submit("print \"quick").get(5, TimeUnit.SECONDS);
+
+        assertThat(loop.isDone(), is(false));
+        assertThat(loop.get(30, TimeUnit.SECONDS).toString(), is("100000"));
+    }
+
+    @Test
+    public void testTemplatesTakeTurns() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        manager = new SessionManager(new InterpreterPool(2), executor, 10);
+        java.util.List<String> outputs = outputs();
+        Session busy = manager.open(outputs::add);
+        Session quick = manager.open(output -> {
+        });
+
+        StringBuilder values = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            values.append(i).append(" ");
+        }
+        values.append("]");
+        CompletableFuture<Node> mapped = busy.submit("make \"x map [print ? ? * 2] " + values + "\nmake \"x pmap [? + 1] :x\ncount :x\n");
+        quick.submit("print \"quick").get(5, TimeUnit.SECONDS);
+
+        // The other session got its turn in the middle of the map
+        int printed = outputs.size();
+        assertThat(printed > 0 && printed < 5000, is(true));
+        assertThat(mapped.get(30, TimeUnit.SECONDS).toString(), is("5000"));
+        assertThat(outputs.size(), is(5000));
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        manager = new SessionManager(1);
+        java.util.List<String> outputs = outputs();
+        Session session = manager.open(outputs::add);
+
+        CompletableFuture<Node> program = session.submit("print \"one\npause\nprint \"two\n");
+        await(session::paused);
+        assertThat(outputs, is(java.util.Arrays.asList("one\n")));
+
+        session.resume();
+        program.get(5, TimeUnit.SECONDS);
+        assertThat(outputs, is(java.util.Arrays.asList("one\n", "two\n")));
+    }
+
+    @Test
+    public void testFailedProgramKeepsDefinitions() throws Exception {
+        manager = new SessionManager(1);
+        java.util.List<String> outputs = outputs();
+        Session session = manager.open(outputs::add);
+
+        session.submit("make \"greeting \"hello\n");
+        CompletableFuture<Node> failed = session.submit("print :undefined\n");
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+
+        session.submit("print :greeting\n").get(5, TimeUnit.SECONDS);
+        assertThat(outputs, is(java.util.Arrays.asList("hello\n")));
+    }
+
+    @Test
+    public void testCloseWaitingSession() throws Exception {
+        InterpreterPool pool = new InterpreterPool(1);
+        executor = Executors.newSingleThreadExecutor();
+        manager = new SessionManager(pool, executor, SessionManager.SLICE);
+        Session session = manager.open(output -> {
+        });
+        assertThat(pool.idle(), is(0));
+
+        CompletableFuture<Node> read = session.submit("print readword\n");
+        CompletableFuture<Node> next = session.submit("print \"next\n");
+        await(session::waiting);
+        session.close();
+
+        assertThat(read.isCancelled(), is(true));
+        assertThat(next.isCancelled(), is(true));
+        assertThat(session.submit("print \"late\n").isCompletedExceptionally(), is(true));
+        assertThat(manager.sessions(), is(0));
+        assertThat(pool.idle(), is(1));
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        // The java21 profile requires them, otherwise they are optional
+        if (!Boolean.getBoolean("yali.virtualthreads")) {
+            assumeTrue(SessionManager.hasVirtualThreads());
+        }
+
+        manager = SessionManager.virtual(new InterpreterPool(1));
+        java.util.List<String> outputs = outputs();
+        Session session = manager.open(outputs::add);
+
+        CompletableFuture<Node> read = session.submit("print readword\n");
+        await(session::waiting);
+        session.input("virtual");
+        read.get(5, TimeUnit.SECONDS);
+
+        assertThat(outputs, is(java.util.Arrays.asList("virtual\n")));
+    }
+
+    private java.util.List<String> outputs() {
+        return Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() < deadline, is(true));
+            Thread.sleep(1);
+        }
+    }
+}
@@ -178,4 +178,73 @@ public class ScopingTest {
         assertThat(outputs.get(0), is("10\n"));
         assertThat(outputs.get(1), is("10\n"));
     }
+
+    @Test
+    public void testLocalMakeInBlockOfProcedure() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"testvar 20").append("\n");
+        sb.append("to makeinproc").append("\n");
+        sb.append("print :testvar").append("\n");
+        sb.append("if true [localmake \"testvar 10]").append("\n");
+        sb.append("print :testvar").append("\n");
+        sb.append("end").append("\n");
+        sb.append("makeinproc").append("\n");
+        sb.append("print :testvar").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs.size(), is(3));
+        assertThat(outputs.get(0), is("20\n"));
+        assertThat(outputs.get(1), is("10\n"));
+        assertThat(outputs.get(2), is("20\n"));
+    }
+
+    @Test
+    public void testCalleeSeesLocalOfCaller() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"testvar 20").append("\n");
+        sb.append("to inner").append("\n");
+        sb.append("print :testvar").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to outer :testvar").append("\n");
+        sb.append("inner").append("\n");
+        sb.append("end").append("\n");
+        sb.append("outer 10").append("\n");
+        sb.append("inner").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs.size(), is(2));
+        assertThat(outputs.get(0), is("10\n"));
+        assertThat(outputs.get(1), is("20\n"));
+    }
+
+    @Test
+    public void testMakeParameter() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to inc :val").append("\n");
+        sb.append("make \"val :val + 1").append("\n");
+        sb.append("print :val").append("\n");
+        sb.append("end").append("\n");
+        sb.append("inc 1").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs.size(), is(1));
+        assertThat(outputs.get(0), is("2\n"));
+        assertThat(it.env().thingable("val"), is(false));
+    }
+
+    @Test
+    public void testBlockRunInOtherProcedure() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to runit :block").append("\n");
+        sb.append("run :block").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to outer :testvar").append("\n");
+        sb.append("runit [print :testvar]").append("\n");
+        sb.append("end").append("\n");
+        sb.append("outer 10").append("\n");
+        it.run(it.read(sb.toString()));
+
+        assertThat(outputs.size(), is(1));
+        assertThat(outputs.get(0), is("10\n"));
+    }
 }